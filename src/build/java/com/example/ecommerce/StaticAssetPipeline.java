@@ -0,0 +1,289 @@
+package com.example.ecommerce;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Static Asset Pipeline - build step run on the processed resources (target/classes/static), see pom.xml
+// 1. pulls the inline <style>/<script> out of index.html into /assets/app.<hash>.css|js
+// 2. minifies html, css and js (whitespace and comments only, nothing is renamed)
+// 3. writes .gz and .br next to every text asset for EncodedResourceResolver
+// 4. deletes the app.<hash>.* files of earlier runs that index.html no longer points at
+// Launched as a single-file program (java StaticAssetPipeline.java <dir>), so it is not packaged into the app.
+// The JDK has no brotli encoder: the brotli CLI is used when installed, otherwise node's zlib, otherwise .br is skipped.
+public class StaticAssetPipeline {
+
+    private static final Set<String> COMPRESSIBLE = Set.of("html", "css", "js", "json", "svg", "txt");
+    private static final int MIN_COMPRESS_BYTES = 1024;
+
+    private static final Pattern INLINE_STYLE = Pattern.compile("<style>(.*?)</style>", Pattern.DOTALL);
+    private static final Pattern INLINE_SCRIPT = Pattern.compile("<script>(.*?)</script>", Pattern.DOTALL);
+    private static final Pattern HTML_COMMENT = Pattern.compile("<!--(?!\\[if).*?-->", Pattern.DOTALL);
+    private static final Pattern FINGERPRINTED = Pattern.compile("(app\\.[0-9a-f]{12}\\.(css|js))(\\.gz|\\.br)?");
+
+    private final Path staticDir;
+    private final Path assetsDir;
+    private String brotliEncoder;
+
+    StaticAssetPipeline(Path staticDir) {
+        this.staticDir = staticDir;
+        this.assetsDir = staticDir.resolve("assets");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Path.of(args.length > 0 ? args[0] : "target/classes/static");
+        if (!Files.isDirectory(dir)) {
+            System.out.println("[assets] " + dir + " not found, nothing to do");
+            return;
+        }
+        new StaticAssetPipeline(dir).run();
+    }
+
+    void run() throws IOException, InterruptedException {
+        Files.createDirectories(assetsDir);
+
+        Path index = staticDir.resolve("index.html");
+        if (Files.exists(index)) {
+            extractInlineAssets(index);
+            // only after extracting: on an incremental build index.html may already be the processed copy
+            // that points at the assets of the previous run, those are kept
+            deleteStaleAssets(read(index));
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(staticDir)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        long before = 0;
+        long after = 0;
+        for (Path file : files) {
+            String ext = extension(file);
+            if (ext.equals("html")) {
+                write(file, minifyHtml(read(file)));
+            }
+            if (COMPRESSIBLE.contains(ext) && Files.size(file) >= MIN_COMPRESS_BYTES) {
+                before += Files.size(file);
+                after += compress(file);
+            }
+        }
+        System.out.printf("[assets] %d text bytes -> %d smallest encoded bytes (brotli: %s)%n",
+                before, after, brotliEncoder != null ? brotliEncoder : "unavailable");
+    }
+
+    // the page keeps working without this step (dev runs straight from src), it just ships everything inline
+    private void extractInlineAssets(Path index) throws IOException {
+        String html = read(index);
+
+        Matcher style = INLINE_STYLE.matcher(html);
+        if (style.find()) {
+            String name = fingerprint("app", "css", minifyCss(style.group(1)));
+            html = html.substring(0, style.start())
+                    + "<link rel=\"stylesheet\" href=\"/assets/" + name + "\">"
+                    + html.substring(style.end());
+        }
+
+        // an external classic script still runs at the same point of the parse as the inline one did
+        Matcher script = INLINE_SCRIPT.matcher(html);
+        if (script.find()) {
+            String name = fingerprint("app", "js", minifyJs(script.group(1)));
+            html = html.substring(0, script.start())
+                    + "<script src=\"/assets/" + name + "\"></script>"
+                    + html.substring(script.end());
+        }
+
+        write(index, html);
+    }
+
+    private void deleteStaleAssets(String html) throws IOException {
+        List<Path> stale;
+        try (Stream<Path> list = Files.list(assetsDir)) {
+            stale = list.filter(file -> {
+                Matcher name = FINGERPRINTED.matcher(file.getFileName().toString());
+                return name.matches() && !html.contains("/assets/" + name.group(1));
+            }).toList();
+        }
+        for (Path file : stale) {
+            Files.delete(file);
+        }
+        if (!stale.isEmpty()) {
+            System.out.println("[assets] deleted " + stale.size() + " stale fingerprinted file(s)");
+        }
+    }
+
+    private String fingerprint(String base, String ext, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String name = base + "." + hash(bytes) + "." + ext;
+        Files.write(assetsDir.resolve(name), bytes);
+        return name;
+    }
+
+    static String minifyHtml(String html) {
+        html = HTML_COMMENT.matcher(html).replaceAll("");
+        StringBuilder out = new StringBuilder(html.length());
+        for (String line : html.split("\n")) {
+            String trimmed = line.strip();
+            if (!trimmed.isEmpty()) {
+                out.append(trimmed).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    // strips comments and collapses whitespace, quoted strings (data: urls, content:) are copied as is
+    static String minifyCss(String css) {
+        StringBuilder out = new StringBuilder(css.length());
+        int i = 0;
+        while (i < css.length()) {
+            char c = css.charAt(i);
+            if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                i = end < 0 ? css.length() : end + 2;
+            } else if (c == '"' || c == '\'') {
+                int end = i + 1;
+                while (end < css.length() && css.charAt(end) != c) {
+                    end += css.charAt(end) == '\\' ? 2 : 1;
+                }
+                end = Math.min(end + 1, css.length());
+                out.append(css, i, end);
+                i = end;
+            } else if (Character.isWhitespace(c)) {
+                while (i < css.length() && Character.isWhitespace(css.charAt(i))) {
+                    i++;
+                }
+                char prev = out.length() > 0 ? out.charAt(out.length() - 1) : '{';
+                char next = i < css.length() ? css.charAt(i) : '}';
+                if ("{};,".indexOf(prev) < 0 && "{};,".indexOf(next) < 0) {
+                    out.append(' ');
+                }
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    // line based on purpose: no joining (ASI) and no touching of code, only indentation,
+    // blank lines and whole-line // comments go
+    static String minifyJs(String js) {
+        StringBuilder out = new StringBuilder(js.length());
+        for (String line : js.split("\n")) {
+            String trimmed = line.strip();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("//")) {
+                out.append(trimmed).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    // returns the size of the smallest variant that was kept
+    private long compress(Path file) throws IOException, InterruptedException {
+        long original = Files.size(file);
+        long smallest = original;
+
+        Path gz = sibling(file, ".gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz)) {
+            { def.setLevel(Deflater.BEST_COMPRESSION); }
+        }) {
+            Files.copy(file, out);
+        }
+        smallest = Math.min(smallest, keepIfSmaller(gz, original));
+
+        Path br = sibling(file, ".br");
+        if (brotli(file, br)) {
+            smallest = Math.min(smallest, keepIfSmaller(br, original));
+        }
+        return smallest;
+    }
+
+    private static long keepIfSmaller(Path encoded, long original) throws IOException {
+        long size = Files.size(encoded);
+        if (size >= original) {
+            Files.delete(encoded);
+            return original;
+        }
+        return size;
+    }
+
+    private boolean brotli(Path in, Path out) throws IOException, InterruptedException {
+        if (brotliEncoder == null) {
+            brotliEncoder = detectBrotli();
+            if (brotliEncoder == null) {
+                brotliEncoder = "";
+            }
+        }
+        List<String> command = new ArrayList<>();
+        switch (brotliEncoder) {
+            case "brotli" -> command.addAll(List.of("brotli", "-q", "11", "-f", "-o", out.toString(), in.toString()));
+            case "node" -> command.addAll(List.of("node", "-e",
+                    "const z=require('zlib'),fs=require('fs');"
+                            + "fs.writeFileSync(process.argv[2],z.brotliCompressSync(fs.readFileSync(process.argv[1]),"
+                            + "{params:{[z.constants.BROTLI_PARAM_QUALITY]:11}}))",
+                    in.toString(), out.toString()));
+            default -> {
+                return false;
+            }
+        }
+        return exec(command) && Files.exists(out);
+    }
+
+    private static String detectBrotli() throws InterruptedException {
+        if (exec(List.of("brotli", "--version"))) {
+            return "brotli";
+        }
+        if (exec(List.of("node", "-e", "require('zlib').brotliCompressSync('')"))) {
+            return "node";
+        }
+        return null;
+    }
+
+    private static boolean exec(List<String> command) throws InterruptedException {
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            return process.waitFor(60, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Path sibling(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes)).substring(0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String read(Path file) throws IOException {
+        return Files.readString(file, StandardCharsets.UTF_8);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.ecommerce;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// Synthetic catalog shared by the benchmarks
+// fixed seed and timestamp so every run (and every fork) sees exactly the same data
+final class CatalogFixtures {
+
+    static final long SEED = 42L;
+    static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private static final String[] CATEGORIES = { "Electronics", "Fashion", "Home", "Beauty", "Sports", "Books" };
+    private static final String[] ADJECTIVES = { "Classic", "Wireless", "Organic", "Premium", "Compact", "Smart" };
+    private static final String[] NOUNS = { "Headphones", "Sneakers", "Lamp", "Serum", "Backpack", "Novel", "Kettle" };
+
+    private CatalogFixtures() {
+    }
+
+    static List<Products> products(int count) {
+        Random random = new Random(SEED);
+        List<Products> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + i;
+
+            Products product = new Products();
+            product.setId((long) i + 1);
+            product.setName(name);
+            product.setDescription("A " + name.toLowerCase(Locale.ROOT) + " from our " + category + " range");
+            product.setPrice(BigDecimal.valueOf(100 + random.nextInt(50_000), 2).setScale(2, RoundingMode.HALF_UP));
+            product.setOldPrice(product.getPrice().add(BigDecimal.TEN));
+            product.setCategoryId((long) (i % CATEGORIES.length) + 1);
+            product.setCategory(category);
+            product.setImageUrl("/images/products/" + (i + 1) + ".jpg");
+            product.setStockQuantity(random.nextInt(200));
+            product.setIsActive(random.nextInt(10) != 0);
+            product.setCreatedAt(NOW.minusDays(i));
+            product.setUpdatedAt(NOW);
+            products.add(product);
+        }
+        return products;
+    }
+
+    static Cart cart(List<CartItem> items) {
+        Cart cart = new Cart();
+        cart.setId(1L);
+        cart.setSessionId("bench-session");
+        cart.setCartItems(items);
+        cart.setCreatedAt(NOW);
+        cart.setUpdatedAt(NOW);
+        return cart;
+    }
+
+    static List<CartItem> cartItems(List<Products> products) {
+        Random random = new Random(SEED);
+        List<CartItem> items = new ArrayList<>(products.size());
+        for (Products product : products) {
+            CartItem item = new CartItem();
+            item.setId(product.getId());
+            item.setProduct(product);
+            item.setQuantity(1 + random.nextInt(5));
+            item.setPrice(product.getPrice());
+            item.setCreatedAt(NOW);
+            item.setUpdatedAt(NOW);
+            items.add(item);
+        }
+        return items;
+    }
+
+    static List<OrderConfirmationRequest.CartItemData> orderLines(int count) {
+        Random random = new Random(SEED);
+        List<OrderConfirmationRequest.CartItemData> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            OrderConfirmationRequest.CartItemData line = new OrderConfirmationRequest.CartItemData();
+            line.setId((long) i + 1);
+            line.setName("Product " + (i + 1));
+            line.setPrice((100 + random.nextInt(50_000)) / 100.0);
+            line.setQuantity(1 + random.nextInt(5));
+            line.setImage("/images/products/" + (i + 1) + ".jpg");
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * ProductsRepository backed by a list. searchListings applies the same case-insensitive
+     * name/description/category match as the JPQL query, everything else is unsupported.
+     */
+    static ProductsRepository inMemoryRepository(List<Products> catalog) {
+        return (ProductsRepository) Proxy.newProxyInstance(
+                ProductsRepository.class.getClassLoader(),
+                new Class<?>[] { ProductsRepository.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findActiveListings":
+                            return catalog.stream().filter(Products::getIsActive).map(CatalogFixtures::listing).toList();
+                        case "searchListings":
+                            String term = ((String) args[0]).toLowerCase(Locale.ROOT);
+                            return catalog.stream()
+                                    .filter(Products::getIsActive)
+                                    .filter(p -> contains(p.getName(), term)
+                                            || contains(p.getDescription(), term)
+                                            || contains(p.getCategory(), term))
+                                    .map(CatalogFixtures::listing)
+                                    .toList();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static ProductListing listing(Products p) {
+        return new ProductListing(p.getId(), p.getName(), p.getPrice(), p.getOldPrice(), p.getImageUrl(),
+                p.getStockQuantity(), p.getStockStatus(), p.getCategory());
+    }
+
+    private static boolean contains(String value, String lowerCaseTerm) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(lowerCaseTerm);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.ecommerce;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Entity -> DTO mapping on the catalog and cart read paths, plus the cart total reduction
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@State(Scope.Benchmark)
+public class ConversionBenchmark {
+
+    @Param({ "12", "100", "1000" })
+    int size;
+
+    private ProductService productService;
+    private CartService cartService;
+    private List<Products> products;
+    private Cart cart;
+    private List<CartItem> cartItems;
+    private List<CartItemDTO> cartItemDTOs;
+
+    @Setup
+    public void setUp() {
+        productService = new ProductService(null, null);
+        cartService = new CartService(null, null, null, productService, null);
+        products = CatalogFixtures.products(size);
+        cartItems = CatalogFixtures.cartItems(products);
+        cart = CatalogFixtures.cart(cartItems);
+        cartItemDTOs = new ArrayList<>(cartService.toDTO(cart, cartItems).getCartItems());
+    }
+
+    @Benchmark
+    public List<ProductDTO> productConvertToDTO() {
+        List<ProductDTO> dtos = new ArrayList<>(products.size());
+        for (Products product : products) {
+            dtos.add(productService.convertToDTO(product));
+        }
+        return dtos;
+    }
+
+    @Benchmark
+    public CartDTO cartConvertToDTO() {
+        return cartService.toDTO(cart, cartItems);
+    }
+
+    @Benchmark
+    public BigDecimal cartTotal() {
+        return CartService.totalOf(cartItemDTOs);
+    }
+}
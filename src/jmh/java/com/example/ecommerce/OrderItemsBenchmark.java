@@ -0,0 +1,41 @@
+package com.example.ecommerce;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// OrderService item building for a confirmed checkout (Double -> BigDecimal price and subtotal)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@State(Scope.Benchmark)
+public class OrderItemsBenchmark {
+
+    @Param({ "1", "5", "50" })
+    int lines;
+
+    private List<OrderConfirmationRequest.CartItemData> items;
+
+    @Setup
+    public void setUp() {
+        items = CatalogFixtures.orderLines(lines);
+    }
+
+    @Benchmark
+    public List<OrderItem> buildOrderItems() {
+        return OrderService.buildOrderItems(1L, items);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.ecommerce;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ProductService.searchProducts over a synthetic catalog
+// the repository is in-memory, so this measures matching + DTO mapping, not the database
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({ "1000", "10000" })
+    int catalogSize;
+
+    // broad (category), narrow (one product), and no match
+    @Param({ "electronics", "wireless lamp 7", "zzz" })
+    String term;
+
+    private ProductService productService;
+
+    @Setup
+    public void setUp() {
+        productService = new ProductService(CatalogFixtures.inMemoryRepository(CatalogFixtures.products(catalogSize)), null);
+    }
+
+    @Benchmark
+    public List<ProductDTO> searchProducts() {
+        return productService.searchProducts(term);
+    }
+}
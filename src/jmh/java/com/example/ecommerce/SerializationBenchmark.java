@@ -0,0 +1,90 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Jackson serialization of the two largest response bodies
+// the ObjectMapper is built like Boot's (ISO dates, JavaTimeModule) so the bytes match the API
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({ "12", "100", "1000" })
+    int size;
+
+    private ObjectMapper objectMapper;
+    private ApiResponse<List<ProductDTO>> productsResponse;
+    private OrderDTO order;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        ProductService productService = new ProductService(null, null);
+        List<ProductDTO> products = CatalogFixtures.products(size).stream()
+                .map(productService::convertToDTO)
+                .collect(Collectors.toList());
+        productsResponse = ApiResponse.success("Products retrieved successfully", products);
+        productsResponse.setTimestamp(CatalogFixtures.NOW);
+
+        order = new OrderDTO();
+        order.setId(1L);
+        order.setApiRef("ORDER-bench");
+        order.setIntasendCheckoutId("CHK-bench");
+        order.setCurrency("KES");
+        order.setPaymentStatus("COMPLETED");
+        order.setCustomerFirstName("Jane");
+        order.setCustomerLastName("Doe");
+        order.setCustomerEmail("jane@example.com");
+        order.setCustomerPhone("0700000000");
+        order.setCreatedAt(CatalogFixtures.NOW);
+        order.setUpdatedAt(CatalogFixtures.NOW);
+        List<OrderItemDTO> items = OrderService.buildOrderItems(1L, CatalogFixtures.orderLines(size)).stream()
+                .map(item -> {
+                    OrderItemDTO dto = new OrderItemDTO();
+                    dto.setId(item.getProductId());
+                    dto.setOrderId(item.getOrderId());
+                    dto.setProductId(item.getProductId());
+                    dto.setProductName(item.getProductName());
+                    dto.setPrice(item.getPrice());
+                    dto.setQuantity(item.getQuantity());
+                    dto.setSubtotal(item.getSubtotal());
+                    dto.setCreatedAt(CatalogFixtures.NOW);
+                    return dto;
+                })
+                .collect(Collectors.toList());
+        order.setOrderItems(items);
+        order.setTotalAmount(items.stream().map(OrderItemDTO::getSubtotal).reduce(BigDecimal.ZERO, BigDecimal::add));
+    }
+
+    @Benchmark
+    public byte[] productListResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(productsResponse);
+    }
+
+    @Benchmark
+    public byte[] orderDTO() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(order);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process IntaSend stand-in for the load test: POST /api/v1/checkout/ answers like the real API
+// Latency (base + up to 50% jitter) and a failure rate can be injected to exercise the gateway breaker
+@Slf4j
+class IntaSendStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long latencyMs;
+    private final double failureRate;
+
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+
+    IntaSendStub(long latencyMs, double failureRate) throws IOException {
+        this.latencyMs = latencyMs;
+        this.failureRate = failureRate;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        server.createContext("/api/v1/checkout/", this::checkout);
+        server.setExecutor(executor);
+        server.start();
+        log.info("IntaSend stub listening on {} ({} ms latency, {} failure rate)", baseUrl(), latencyMs, failureRate);
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1";
+    }
+
+    long getCheckouts() {
+        return checkouts.get();
+    }
+
+    long getInjectedFailures() {
+        return injectedFailures.get();
+    }
+
+    private void checkout(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, Map.of("detail", "Method not allowed"));
+                return;
+            }
+            Map<?, ?> request = objectMapper.readValue(body, Map.class);
+            checkouts.incrementAndGet();
+            sleep();
+
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                injectedFailures.incrementAndGet();
+                respond(exchange, 500, Map.of("detail", "Injected failure"));
+                return;
+            }
+            String id = "CHK-" + UUID.randomUUID();
+            respond(exchange, 200, Map.of(
+                    "id", id,
+                    "url", "https://payment.intasend.local/checkout/" + id + "/express/",
+                    "api_ref", String.valueOf(request.get("api_ref")),
+                    "state", "PENDING"));
+        }
+    }
+
+    private void sleep() {
+        if (latencyMs <= 0) {
+            return;
+        }
+        long jitter = ThreadLocalRandom.current().nextLong(latencyMs / 2 + 1);
+        try {
+            Thread.sleep(latencyMs + jitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Storefront load test: embedded Postgres + in-process IntaSend stub + the real app, driven at a fixed
+ * journey rate (open model). Reports per-endpoint throughput and p50/p99/p999 latency, and Hikari pool
+ * saturation. Run with mvn -Ploadtest -DskipTests verify, all knobs are -Dloadtest.* properties.
+ */
+@Slf4j
+public class LoadTestHarness {
+
+    public static void main(String[] args) throws Exception {
+        // devtools would relaunch main() in a restart classloader and start a second database
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        LoadTestConfig config = new LoadTestConfig();
+        log.info("Load test config: {}", config.describe());
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+             IntaSendStub stub = new IntaSendStub(config.stubLatencyMs, config.stubFailureRate)) {
+
+            ConfigurableApplicationContext app = new SpringApplicationBuilder(EcommerceApplication.class)
+                    .run(appArguments(config, postgres.getJdbcUrl("postgres", "postgres"), stub.baseUrl()));
+            try {
+                Map<String, Object> report = new LoadTestHarness().run(config, app, stub);
+                print(report);
+                File out = new File(config.reportFile);
+                out.getParentFile().mkdirs();
+                new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, report);
+                log.info("Report written to {}", out.getAbsolutePath());
+            } finally {
+                app.close();
+            }
+        }
+    }
+
+    // command line args outrank application.properties
+    private static String[] appArguments(LoadTestConfig config, String jdbcUrl, String intaSendUrl) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--spring.jpa.show-sql=false",
+                "--intasend.api.url=" + intaSendUrl,
+                "--webhook.queue.type=memory",
+                "--outbox.relay.enabled=false",
+                // every virtual user comes from 127.0.0.1, the harness measures the app, not the rate limits
+                "--rate-limit.enabled=false",
+                "--logging.level.com.example.ecommerce=WARN"));
+        if (config.poolSize > 0) {
+            arguments.add("--spring.datasource.hikari.maximum-pool-size=" + config.poolSize);
+        }
+        if ("virtual".equals(config.threads)) {
+            if (Runtime.version().feature() < 21) {
+                log.warn("loadtest.threads=virtual needs Java 21+, running on {} will use platform threads",
+                        Runtime.version());
+            }
+            arguments.add("--spring.profiles.active=virtual");
+        }
+        return arguments.toArray(new String[0]);
+    }
+
+    private Map<String, Object> run(LoadTestConfig config, ConfigurableApplicationContext app, IntaSendStub stub)
+            throws InterruptedException {
+        String baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+        List<Long> categoryIds = new ArrayList<>();
+        List<Products> catalog = seed(app, config.catalogSize, categoryIds);
+
+        LatencyRecorder recorder = new LatencyRecorder();
+        ExecutorService clients = Executors.newCachedThreadPool();
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(clients)
+                .build();
+        StorefrontJourneys journeys = new StorefrontJourneys(httpClient, baseUrl, catalog, categoryIds, recorder);
+
+        HikariDataSource hikari = unwrapHikari(app.getBean(DataSource.class));
+        PoolSampler pool = new PoolSampler(hikari.getHikariPoolMXBean(), hikari.getMaximumPoolSize());
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(pool::sample, 0, 50, TimeUnit.MILLISECONDS);
+
+        Semaphore inFlight = new Semaphore(config.maxInFlight);
+        AtomicLong dropped = new AtomicLong();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / config.rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        boolean measuring = config.warmupSeconds == 0;
+        log.info("Driving {} journeys/s for {}s warmup + {}s against {}", config.rate, config.warmupSeconds,
+                config.durationSeconds, baseUrl);
+
+        for (long i = 0; ; i++) {
+            long scheduledAt = start + i * intervalNanos;
+            if (scheduledAt >= end) {
+                break;
+            }
+            if (!measuring && scheduledAt >= measureFrom) {
+                recorder.reset();
+                pool.reset();
+                dropped.set(0);
+                measuring = true;
+            }
+            long wait = scheduledAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // past max-in-flight the client itself is the bottleneck, count it instead of queueing forever
+            if (!inFlight.tryAcquire()) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            String journey = config.pickJourney();
+            clients.execute(() -> {
+                try {
+                    journeys.run(journey, scheduledAt);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        // let in-flight journeys finish so their latencies are counted
+        if (!inFlight.tryAcquire(config.maxInFlight, 60, TimeUnit.SECONDS)) {
+            log.warn("{} journeys still in flight after 60s", config.maxInFlight - inFlight.availablePermits());
+        }
+        double seconds = (System.nanoTime() - (config.warmupSeconds == 0 ? start : measureFrom)) / 1e9;
+        sampler.shutdownNow();
+        clients.shutdownNow();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config.describe());
+        report.put("measuredSeconds", Math.round(seconds * 10) / 10.0);
+        report.put("droppedJourneys", dropped.get());
+        report.put("endpoints", recorder.summarize(seconds));
+        report.put("connectionPool", pool.summarize());
+        app.getBeanProvider(DbAdmissionBulkhead.class).ifAvailable(bulkhead -> report.put("dbAdmission", Map.of(
+                "availablePermits", bulkhead.getAvailablePermits(),
+                "rejected", bulkhead.getRejected())));
+        report.put("intaSendGateway", app.getBean(IntaSendGateway.class).snapshot());
+        report.put("intaSendStub", Map.of("checkouts", stub.getCheckouts(), "injectedFailures", stub.getInjectedFailures()));
+        return report;
+    }
+
+    // deep stock so the run measures contention on hot product rows, not sold-out errors
+    private static List<Products> seed(ConfigurableApplicationContext app, int catalogSize, List<Long> categoryIds) {
+        String[] names = { "Electronics", "Fashion", "Home", "Beauty", "Sports", "Books" };
+        CategoryRepository categoryRepository = app.getBean(CategoryRepository.class);
+        List<Category> categories = new ArrayList<>();
+        for (String name : names) {
+            Category category = new Category();
+            category.setName(name);
+            category.setDescription(name + " (load test)");
+            categories.add(categoryRepository.save(category));
+            categoryIds.add(category.getId());
+        }
+
+        String[] adjectives = { "Classic", "Wireless", "Organic", "Premium", "Compact", "Smart" };
+        String[] nouns = { "Headphones", "Sneakers", "Lamp", "Serum", "Backpack", "Novel", "Kettle" };
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Products> products = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            Category category = categories.get(i % categories.size());
+            Products product = new Products();
+            product.setName(adjectives[random.nextInt(adjectives.length)] + " " + nouns[random.nextInt(nouns.length)] + " " + i);
+            product.setDescription("Load test product " + i);
+            product.setPrice(BigDecimal.valueOf(100 + random.nextInt(50_000), 2));
+            product.setCategoryId(category.getId());
+            product.setCategory(category.getName());
+            product.setImageUrl("/images/products/" + i + ".jpg");
+            product.setStockQuantity(10_000_000);
+            products.add(product);
+        }
+        List<Products> saved = app.getBean(ProductsRepository.class).saveAll(products);
+        log.info("Seeded {} categories and {} products", categories.size(), saved.size());
+        return saved;
+    }
+
+    private static HikariDataSource unwrapHikari(DataSource dataSource) {
+        try {
+            return dataSource.unwrap(HikariDataSource.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Load test expects a Hikari pool", e);
+        }
+    }
+
+    private static void print(Map<String, Object> report) {
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> endpoints = (Map<String, Map<String, Object>>) report.get("endpoints");
+        System.out.printf("%n%-36s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        endpoints.forEach((endpoint, s) -> System.out.printf("%-36s %9s %7s %9s %9s %9s %9s %9s%n",
+                endpoint, s.get("requests"), s.get("errors"), s.get("throughputPerSec"),
+                s.get("p50Ms"), s.get("p99Ms"), s.get("p999Ms"), s.get("maxMs")));
+        System.out.printf("%nconnection pool: %s%ndropped journeys: %s%n%n",
+                report.get("connectionPool"), report.get("droppedJourneys"));
+    }
+}
+
+// -Dloadtest.* knobs, defaults give a short smoke run
+final class LoadTestConfig {
+
+    final int rate = Integer.getInteger("loadtest.rate", 50);
+    final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+    final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+    final int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 1000);
+    final int catalogSize = Integer.getInteger("loadtest.catalog-size", 500);
+    final int poolSize = Integer.getInteger("loadtest.pool-size", 0);
+    final String threads = System.getProperty("loadtest.threads", "platform");
+    final String mix = System.getProperty("loadtest.mix",
+            "browse:45,search:20,cart:20,create-pending:5,checkout:5,update-status:5");
+    final long stubLatencyMs = Long.getLong("loadtest.stub.latency-ms", 150);
+    final double stubFailureRate = Double.parseDouble(System.getProperty("loadtest.stub.failure-rate", "0"));
+    final String reportFile = System.getProperty("loadtest.report", "target/loadtest-report.json");
+
+    private final List<String> journeys = new ArrayList<>();
+    private final int[] cumulativeWeights;
+
+    LoadTestConfig() {
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || !StorefrontJourneys.NAMES.contains(parts[0])) {
+                throw new IllegalArgumentException("Bad loadtest.mix entry '" + entry + "', journeys are "
+                        + StorefrontJourneys.NAMES);
+            }
+            total += Integer.parseInt(parts[1]);
+            journeys.add(parts[0]);
+            cumulative.add(total);
+        }
+        if (total <= 0 || rate <= 0) {
+            throw new IllegalArgumentException("loadtest.mix weights and loadtest.rate must be positive");
+        }
+        cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    String pickJourney() {
+        int ticket = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return journeys.get(i);
+            }
+        }
+        return journeys.get(journeys.size() - 1);
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("rate", rate);
+        description.put("durationSeconds", durationSeconds);
+        description.put("warmupSeconds", warmupSeconds);
+        description.put("mix", mix);
+        description.put("threads", threads);
+        description.put("javaVersion", Runtime.version().toString());
+        description.put("poolSize", poolSize > 0 ? poolSize : "default");
+        description.put("catalogSize", catalogSize);
+        description.put("stubLatencyMs", stubLatencyMs);
+        description.put("stubFailureRate", stubFailureRate);
+        return description;
+    }
+}
+
+// Samples the Hikari pool: how often every connection was busy and how many threads queued for one
+class PoolSampler {
+
+    private final HikariPoolMXBean pool;
+    private final int maximumPoolSize;
+
+    private long samples;
+    private long activeSum;
+    private int maxActive;
+    private long saturatedSamples;
+    private long waitingSum;
+    private int maxWaiting;
+
+    PoolSampler(HikariPoolMXBean pool, int maximumPoolSize) {
+        this.pool = pool;
+        this.maximumPoolSize = maximumPoolSize;
+    }
+
+    synchronized void sample() {
+        int active = pool.getActiveConnections();
+        int waiting = pool.getThreadsAwaitingConnection();
+        samples++;
+        activeSum += active;
+        maxActive = Math.max(maxActive, active);
+        waitingSum += waiting;
+        maxWaiting = Math.max(maxWaiting, waiting);
+        if (active >= maximumPoolSize) {
+            saturatedSamples++;
+        }
+    }
+
+    synchronized void reset() {
+        samples = activeSum = saturatedSamples = waitingSum = 0;
+        maxActive = maxWaiting = 0;
+    }
+
+    synchronized Map<String, Object> summarize() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("maximumPoolSize", maximumPoolSize);
+        summary.put("avgActive", samples == 0 ? 0 : Math.round(activeSum * 100.0 / samples) / 100.0);
+        summary.put("maxActive", maxActive);
+        summary.put("saturatedPercent", samples == 0 ? 0 : Math.round(saturatedSamples * 1000.0 / samples) / 10.0);
+        summary.put("avgThreadsWaiting", samples == 0 ? 0 : Math.round(waitingSum * 100.0 / samples) / 100.0);
+        summary.put("maxThreadsWaiting", maxWaiting);
+        return summary;
+    }
+}
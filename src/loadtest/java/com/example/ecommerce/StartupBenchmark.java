@@ -0,0 +1,240 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Startup benchmark: launches the packaged app as a child JVM in each packaging mode and measures the time
+ * from process start to the first 200 from GET /api/products, the resident set size at that point and the
+ * "Started ... in" time Spring reports. All modes share one embedded Postgres with a seeded catalog.
+ * Run with mvn -Pfast-startup,startup-benchmark -DskipTests verify, modes whose artifacts are missing are skipped.
+ */
+@Slf4j
+public class StartupBenchmark {
+
+    private static final Pattern STARTED = Pattern.compile("Started EcommerceApplication in ([0-9.]+) seconds");
+    private static final long TIMEOUT_MS = 180_000;
+
+    private final Path jar = Path.of(System.getProperty("startup.jar", "target/ecommerce-0.0.1-SNAPSHOT.jar"));
+    private final Path explodedDir = Path.of(System.getProperty("startup.exploded-dir", "target/fast-startup"));
+    private final int runs = Integer.getInteger("startup.runs", 3);
+    private final String reportFile = System.getProperty("startup.report", "target/startup-report.json");
+    private final Path logDir = Path.of(reportFile).toAbsolutePath().getParent().resolve("startup-logs");
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(200))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        new StartupBenchmark().run();
+    }
+
+    void run() throws Exception {
+        Files.createDirectories(logDir);
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            String jdbcUrl = postgres.getJdbcUrl("postgres", "postgres");
+            // first launch creates the schema (ddl-auto=update) and seeds the catalog, it is not measured
+            seed(jdbcUrl);
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("javaVersion", Runtime.version().toString());
+            report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+            report.put("runsPerMode", runs);
+            Map<String, Object> modes = new LinkedHashMap<>();
+            for (Mode mode : modes()) {
+                List<Sample> samples = new ArrayList<>();
+                for (int i = 1; i <= runs; i++) {
+                    Sample sample = launch(mode, jdbcUrl, mode.name + "-" + i, null);
+                    log.info("{} run {}: first /api/products after {} ms, RSS {} MB", mode.name, i,
+                            sample.firstResponseMs, sample.rssKb / 1024);
+                    samples.add(sample);
+                }
+                modes.put(mode.name, summarize(mode, samples));
+            }
+            report.put("modes", modes);
+
+            print(modes);
+            File out = new File(reportFile);
+            out.getParentFile().mkdirs();
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, report);
+            log.info("Report written to {}", out.getAbsolutePath());
+        }
+    }
+
+    // jar: the fat jar as built; extracted: same classes, unpacked jar + lib/;
+    // aot: extracted with the build-time bean definitions; aot-cds: plus the trained class-data archive
+    private List<Mode> modes() {
+        List<Mode> modes = new ArrayList<>();
+        modes.add(new Mode("jar", jar, List.of()));
+        Path extracted = explodedDir.resolve(jar.getFileName());
+        if (!Files.exists(extracted)) {
+            log.warn("{} not found, only the plain jar is measured (build with -Pfast-startup)", extracted);
+            return modes;
+        }
+        modes.add(new Mode("extracted", extracted, List.of()));
+        modes.add(new Mode("aot", extracted, List.of("-Dspring.aot.enabled=true")));
+        Path archive = explodedDir.resolve("application.jsa");
+        if (Files.exists(archive)) {
+            modes.add(new Mode("aot-cds", extracted,
+                    List.of("-XX:SharedArchiveFile=" + archive.toAbsolutePath(), "-Dspring.aot.enabled=true")));
+        }
+        return modes;
+    }
+
+    private void seed(String jdbcUrl) throws Exception {
+        launch(new Mode("jar", jar, List.of()), jdbcUrl, "seed", port -> {
+            for (int i = 0; i < 50; i++) {
+                String body = "{\"name\":\"Startup product " + i + "\",\"price\":" + (100 + i)
+                        + ",\"category\":\"Electronics\",\"stockQuantity\":100,\"isActive\":true}";
+                HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(
+                                URI.create("http://127.0.0.1:" + port + "/api/products"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 201) {
+                    throw new IllegalStateException("Seeding failed: " + response.statusCode() + " " + response.body());
+                }
+            }
+        });
+    }
+
+    private Sample launch(Mode mode, String jdbcUrl, String label, Seeder seeder) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(mode.jvmArgs);
+        command.addAll(List.of("-jar", mode.jar.toAbsolutePath().toString(),
+                "--server.port=" + port,
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.ecommerce.EcommerceApplication=INFO"));
+        Path logFile = logDir.resolve(label + ".log");
+        Process process = new ProcessBuilder(command)
+                .directory(mode.jar.toAbsolutePath().getParent().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        long startNanos = System.nanoTime();
+        try {
+            long firstResponseMs = waitForProducts(process, port, startNanos, logFile);
+            long rssKb = residentKb(process.pid());
+            if (seeder != null) {
+                seeder.seed(port);
+            }
+            return new Sample(firstResponseMs, rssKb, reportedStartupMs(logFile));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private long waitForProducts(Process process, int port, long startNanos, Path logFile) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/products"))
+                .timeout(Duration.ofSeconds(5))
+                .GET().build();
+        while (true) {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            if (!process.isAlive()) {
+                throw new IllegalStateException("App exited with " + process.exitValue() + ", see " + logFile);
+            }
+            if (elapsedMs > TIMEOUT_MS) {
+                throw new IllegalStateException("No successful /api/products within " + TIMEOUT_MS + " ms, see " + logFile);
+            }
+            try {
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // VmRSS from procfs, -1 where there is none (macOS, Windows)
+    private static long residentKb(long pid) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not available on this platform
+        }
+        return -1;
+    }
+
+    private static long reportedStartupMs(Path logFile) throws IOException {
+        Matcher matcher = STARTED.matcher(Files.readString(logFile));
+        return matcher.find() ? Math.round(Double.parseDouble(matcher.group(1)) * 1000) : -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Map<String, Object> summarize(Mode mode, List<Sample> samples) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("jvmArgs", mode.jvmArgs);
+        summary.put("firstResponseMsMedian", median(samples.stream().mapToLong(s -> s.firstResponseMs).toArray()));
+        summary.put("firstResponseMsMin", samples.stream().mapToLong(s -> s.firstResponseMs).min().orElse(-1));
+        summary.put("springStartedMsMedian", median(samples.stream().mapToLong(s -> s.springStartedMs).toArray()));
+        summary.put("rssMbMedian", median(samples.stream().mapToLong(s -> s.rssKb).toArray()) / 1024);
+        summary.put("samples", samples);
+        return summary;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        java.util.Arrays.sort(sorted);
+        return sorted.length == 0 ? -1 : sorted[sorted.length / 2];
+    }
+
+    private static void print(Map<String, Object> modes) {
+        System.out.printf("%n%-10s %22s %18s %14s%n", "mode", "first /api/products ms", "spring started ms", "RSS MB");
+        modes.forEach((name, value) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> s = (Map<String, Object>) value;
+            System.out.printf("%-10s %22s %18s %14s%n", name, s.get("firstResponseMsMedian"),
+                    s.get("springStartedMsMedian"), s.get("rssMbMedian"));
+        });
+        System.out.println();
+    }
+
+    private record Mode(String name, Path jar, List<String> jvmArgs) {
+    }
+
+    record Sample(long firstResponseMs, long rssKb, long springStartedMs) {
+    }
+
+    private interface Seeder {
+        void seed(int port) throws Exception;
+    }
+}
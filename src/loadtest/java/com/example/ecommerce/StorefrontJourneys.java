@@ -0,0 +1,263 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Storefront journeys replayed by LoadTestHarness, each one is the request sequence the frontend sends
+// The first request of a journey is timed from its scheduled start, so client-side queueing under
+// overload shows up in the percentiles instead of being hidden (coordinated omission)
+class StorefrontJourneys {
+
+    static final List<String> NAMES = List.of("browse", "search", "cart", "create-pending", "checkout", "update-status");
+
+    private static final String[] SEARCH_TERMS = { "wireless", "organic", "lamp", "premium", "sneakers", "kettle", "zzz" };
+    private static final int CUSTOMERS = 5_000;
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final List<Products> catalog;
+    private final List<Long> categoryIds;
+    private final LatencyRecorder recorder;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    StorefrontJourneys(HttpClient client, String baseUrl, List<Products> catalog, List<Long> categoryIds,
+                       LatencyRecorder recorder) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.catalog = catalog;
+        this.categoryIds = categoryIds;
+        this.recorder = recorder;
+    }
+
+    void run(String journey, long scheduledAtNanos) {
+        Step step = new Step(scheduledAtNanos);
+        switch (journey) {
+            case "browse" -> browse(step);
+            case "search" -> step.get("GET /api/products/search",
+                    "/api/products/search?term=" + URLEncoder.encode(pick(SEARCH_TERMS), StandardCharsets.UTF_8));
+            case "cart" -> cart(step);
+            case "create-pending" -> createPending(step, newApiRef());
+            case "checkout" -> {
+                String apiRef = newApiRef();
+                if (createPending(step, apiRef)) {
+                    checkout(step, apiRef);
+                }
+            }
+            case "update-status" -> {
+                String apiRef = newApiRef();
+                if (createPending(step, apiRef)) {
+                    String checkoutId = checkout(step, apiRef);
+                    if (checkoutId != null) {
+                        step.send("PUT /api/orders/update-status", "PUT", "/api/orders/update-status", Map.of(
+                                "apiRef", apiRef,
+                                "intasendCheckoutId", checkoutId,
+                                "intasendTrackingId", "TRK-" + checkoutId,
+                                "paymentStatus", "COMPLETED"));
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown journey: " + journey);
+        }
+    }
+
+    private void browse(Step step) {
+        step.get("GET /api/products/featured", "/api/products/featured");
+        step.get("GET /api/categories", "/api/categories");
+        step.get("GET /api/products?categoryId", "/api/products?categoryId=" + pick(categoryIds));
+        step.get("GET /api/products/{id}", "/api/products/" + pick(catalog).getId());
+    }
+
+    private void cart(Step step) {
+        String sessionId = "lt-" + UUID.randomUUID();
+        for (int i = 0; i < 2; i++) {
+            step.send("POST /api/cart/add", "POST", "/api/cart/add", Map.of(
+                    "productId", pick(catalog).getId(),
+                    "quantity", 1,
+                    "sessionId", sessionId));
+        }
+        step.get("GET /api/cart/{sessionId}", "/api/cart/" + sessionId);
+        step.get("GET /api/cart/{sessionId}/count", "/api/cart/" + sessionId + "/count");
+    }
+
+    private boolean createPending(Step step, String apiRef) {
+        int customer = ThreadLocalRandom.current().nextInt(CUSTOMERS);
+        List<Map<String, Object>> items = new ArrayList<>();
+        double amount = 0;
+        for (int i = 0, lines = 1 + ThreadLocalRandom.current().nextInt(3); i < lines; i++) {
+            Products product = pick(catalog);
+            int quantity = 1 + ThreadLocalRandom.current().nextInt(2);
+            items.add(Map.of(
+                    "id", product.getId(),
+                    "name", product.getName(),
+                    "price", product.getPrice().doubleValue(),
+                    "quantity", quantity,
+                    "image", product.getImageUrl()));
+            amount += product.getPrice().doubleValue() * quantity;
+        }
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("apiRef", apiRef);
+        request.put("amount", amount);
+        request.put("currency", "KES");
+        request.put("customerEmail", "customer" + customer + "@loadtest.local");
+        request.put("customerPhone", "0700" + String.format("%06d", customer));
+        request.put("items", items);
+        request.put("customerInfo", Map.of(
+                "firstName", "Load",
+                "lastName", "Tester" + customer,
+                "email", "customer" + customer + "@loadtest.local",
+                "phoneNumber", "0700" + String.format("%06d", customer)));
+        return step.send("POST /api/orders/create-pending", "POST", "/api/orders/create-pending", request) != null;
+    }
+
+    // returns the IntaSend checkout id, or null if the checkout failed
+    private String checkout(Step step, String apiRef) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("first_name", "Load");
+        request.put("last_name", "Tester");
+        request.put("email", "checkout@loadtest.local");
+        request.put("phone_number", "0700000000");
+        request.put("amount", 1000);
+        request.put("currency", "KES");
+        request.put("api_ref", apiRef);
+        request.put("redirect_url", baseUrl + "/");
+        JsonNode response = step.send("POST /api/orders/checkout", "POST", "/api/orders/checkout", request);
+        return response == null ? null : response.path("data").path("id").asText(null);
+    }
+
+    private static String newApiRef() {
+        return "LT-" + UUID.randomUUID();
+    }
+
+    private static <T> T pick(List<T> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+
+    private static <T> T pick(T[] values) {
+        return pick(Arrays.asList(values));
+    }
+
+    // one journey's requests, sequential like a single browser tab
+    private class Step {
+
+        private long startNanos;
+
+        Step(long scheduledAtNanos) {
+            this.startNanos = scheduledAtNanos;
+        }
+
+        JsonNode get(String endpoint, String path) {
+            return send(endpoint, HttpRequest.newBuilder(URI.create(baseUrl + path)).GET());
+        }
+
+        JsonNode send(String endpoint, String method, String path, Object body) {
+            try {
+                return send(endpoint, HttpRequest.newBuilder(URI.create(baseUrl + path))
+                        .header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body))));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // returns the parsed body of a 2xx response, null otherwise
+        private JsonNode send(String endpoint, HttpRequest.Builder request) {
+            long start = startNanos != 0 ? startNanos : System.nanoTime();
+            startNanos = 0;
+            try {
+                HttpResponse<byte[]> response = client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                        HttpResponse.BodyHandlers.ofByteArray());
+                boolean ok = response.statusCode() / 100 == 2;
+                recorder.record(endpoint, System.nanoTime() - start, ok ? null : "HTTP " + response.statusCode());
+                return ok ? objectMapper.readTree(response.body()) : null;
+            } catch (Exception e) {
+                recorder.record(endpoint, System.nanoTime() - start, e.getClass().getSimpleName());
+                return null;
+            }
+        }
+    }
+}
+
+// Per-endpoint latency samples (nanoseconds). Exact percentiles from the sorted samples,
+// fine for the few million requests a run produces
+class LatencyRecorder {
+
+    private final Map<String, Series> series = new LinkedHashMap<>();
+
+    synchronized void record(String endpoint, long nanos, String error) {
+        series.computeIfAbsent(endpoint, e -> new Series()).add(nanos, error);
+    }
+
+    synchronized void reset() {
+        series.clear();
+    }
+
+    synchronized Map<String, Map<String, Object>> summarize(double seconds) {
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<>();
+        series.forEach((endpoint, s) -> summary.put(endpoint, s.summarize(seconds)));
+        return summary;
+    }
+
+    private static class Series {
+        private long[] samples = new long[1024];
+        private int count;
+        private long errors;
+        private final Map<String, Long> errorKinds = new LinkedHashMap<>();
+
+        void add(long nanos, String error) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+            if (error != null) {
+                errors++;
+                errorKinds.merge(error, 1L, Long::sum);
+            }
+        }
+
+        Map<String, Object> summarize(double seconds) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", count);
+            summary.put("errors", errors);
+            summary.put("throughputPerSec", round(count / seconds));
+            summary.put("p50Ms", millis(percentile(sorted, 0.50)));
+            summary.put("p99Ms", millis(percentile(sorted, 0.99)));
+            summary.put("p999Ms", millis(percentile(sorted, 0.999)));
+            summary.put("maxMs", millis(count == 0 ? 0 : sorted[count - 1]));
+            summary.put("errorKinds", new LinkedHashMap<>(errorKinds));
+            return summary;
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        private static double millis(long nanos) {
+            return round(nanos / 1_000_000.0);
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.function.ToDoubleFunction;
+
+// Application Metrics - shared helpers for the MeterBinder our components implement to publish the counters they keep
+// Spring Boot binds every MeterBinder bean, so an optional feature's metrics only exist while its bean does.
+// Everything is read at scrape time, nothing extra on the request path.
+// HTTP, repository, Hikari and Hibernate metrics come from Spring Boot (see management.* in application.properties)
+final class ApplicationMetrics {
+
+    private ApplicationMetrics() {
+    }
+
+    static <T> void counter(MeterRegistry registry, String name, T source, ToDoubleFunction<T> count, String... tags) {
+        FunctionCounter.builder(name, source, count).tags(tags).register(registry);
+    }
+
+    // same names as Micrometer's own cache binders
+    static <T> void cache(MeterRegistry registry, String cache, T source,
+                          ToDoubleFunction<T> hits, ToDoubleFunction<T> misses, ToDoubleFunction<T> size) {
+        counter(registry, "cache.gets", source, hits, "cache", cache, "result", "hit");
+        counter(registry, "cache.gets", source, misses, "cache", cache, "result", "miss");
+        Gauge.builder("cache.size", source, size).tag("cache", cache).register(registry);
+    }
+}
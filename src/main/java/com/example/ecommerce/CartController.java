@@ -22,7 +22,8 @@ public class CartController {
             CartDTO cart = cartService.addToCart(request);
             return ResponseEntity.ok(ApiResponse.success("Item added to cart successfully", cart));
         } catch (RuntimeException e) {
-            log.error("Error adding to cart: {}", e.getMessage(), e);
+            // out of stock, inactive product... expected, no stack trace
+            log.warn("Add to cart rejected: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
@@ -62,7 +63,7 @@ public class CartController {
             CartDTO cart = cartService.updateCartItem(request);
             return ResponseEntity.ok(ApiResponse.success("Cart item updated successfully", cart));
         } catch (RuntimeException e) {
-            log.error("Error updating cart item: {}", e.getMessage(), e);
+            log.warn("Cart update rejected: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
@@ -0,0 +1,127 @@
+package com.example.ecommerce;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Catalog Cache Region Factory - in-process second-level cache for Hibernate (hibernate.cache.region.factory_class)
+// Hibernate keeps the concurrency strategy (READ_WRITE soft locks, query cache timestamps), this class only
+// stores the entries: a bounded LRU map per entity/query region whose entries expire after ttl_seconds.
+// The cache is per JVM. Writes made by this instance update it at commit, writes made by other instances
+// are seen here after at most ttl_seconds, which is why the stock decrement in OrderService reads with a lock.
+@Slf4j
+public class CatalogCacheRegionFactory extends RegionFactoryTemplate {
+
+    public static final String MAX_ENTRIES = "hibernate.cache.local.max_entries";
+    public static final String TTL_SECONDS = "hibernate.cache.local.ttl_seconds";
+
+    private int maxEntries;
+    private long ttlNanos;
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        maxEntries = ConfigurationHelper.getInt(MAX_ENTRIES, configValues, 10_000);
+        ttlNanos = TimeUnit.SECONDS.toNanos(ConfigurationHelper.getInt(TTL_SECONDS, configValues, 300));
+        log.info("Second-level cache: max {} entries per region, {} s ttl", maxEntries,
+                TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        // regions release their own storage when the session factory closes
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(
+            DomainDataRegionConfig regionConfig, DomainDataRegionBuildingContext buildingContext) {
+        return new BoundedStorageAccess(maxEntries, ttlNanos);
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new BoundedStorageAccess(maxEntries, ttlNanos);
+    }
+
+    // never evicted: a lost timestamp would let the query cache return results older than the last table update
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new BoundedStorageAccess(Integer.MAX_VALUE, 0);
+    }
+}
+
+// LRU by access, optional expiry by write time (ttlNanos = 0 keeps entries until evicted)
+class BoundedStorageAccess implements DomainDataStorageAccess {
+
+    private final LinkedHashMap<Object, Entry> entries;
+    private final long ttlNanos;
+
+    BoundedStorageAccess(int maxEntries, long ttlNanos) {
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (ttlNanos > 0 && System.nanoTime() - entry.writtenAt() > ttlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value();
+        }
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        synchronized (entries) {
+            entries.put(key, new Entry(value, System.nanoTime()));
+        }
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return getFromCache(key, null) != null;
+    }
+
+    @Override
+    public void evictData() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public void evictData(Object key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    @Override
+    public void release() {
+        evictData();
+    }
+
+    private record Entry(Object value, long writtenAt) {
+    }
+}
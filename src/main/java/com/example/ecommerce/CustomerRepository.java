@@ -1,11 +1,31 @@
 package com.example.ecommerce;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     Optional<Customer> findByCustomerEmail(String email);
-}
\ No newline at end of file
+
+    /**
+     * Insert the customer or refresh their details, in one statement on the caller's connection.
+     * No find-then-insert race on the unique email.
+     */
+    @Transactional
+    @Query(value = "INSERT INTO customers (customer_first_name, customer_last_name, customer_email, customer_phone, created_at) " +
+                   "VALUES (:firstName, :lastName, :email, :phone, now()) " +
+                   "ON CONFLICT (customer_email) DO UPDATE SET " +
+                   "customer_first_name = COALESCE(EXCLUDED.customer_first_name, customers.customer_first_name), " +
+                   "customer_last_name = COALESCE(EXCLUDED.customer_last_name, customers.customer_last_name), " +
+                   "customer_phone = COALESCE(EXCLUDED.customer_phone, customers.customer_phone) " +
+                   "RETURNING id", nativeQuery = true)
+    Long upsertCustomer(@Param("firstName") String firstName,
+                        @Param("lastName") String lastName,
+                        @Param("email") String email,
+                        @Param("phone") String phone);
+}
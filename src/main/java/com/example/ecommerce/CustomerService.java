@@ -1,37 +1,108 @@
 package com.example.ecommerce;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static com.example.ecommerce.ApplicationMetrics.cache;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
-public class CustomerService {
+public class CustomerService implements MeterBinder {
     
     private final CustomerRepository customerRepository;
     
+    // email -> customer id and the details last written, repeat buyers with unchanged details skip the upsert
+    private final LruCache<String, CachedCustomer> customersByEmail;
+    
+    public CustomerService(CustomerRepository customerRepository,
+                           @Value("${customers.cache.max-entries:50000}") int maxEntries) {
+        this.customerRepository = customerRepository;
+        this.customersByEmail = new LruCache<>(maxEntries);
+    }
     
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    /**
+     * Resolve the customer inside the caller's transaction (one connection per checkout).
+     * Returns a detached Customer carrying the id, which is all an Order needs for its foreign key.
+     */
+    @Transactional
     public Customer findOrCreateCustomer(String firstName, String lastName, String email, String phone) {
-        log.info("Finding or creating customer with email: {}", email);
+        CachedCustomer cached = email != null ? customersByEmail.get(email) : null;
+        Long customerId;
+        
+        if (cached != null && cached.matches(firstName, lastName, phone)) {
+            customerId = cached.id();
+        } else {
+            customerId = customerRepository.upsertCustomer(firstName, lastName, email, phone);
+            log.debug("Upserted customer ID: {}", customerId);
+            if (email != null) {
+                cacheAfterCommit(email, CachedCustomer.merge(customerId, cached, firstName, lastName, phone));
+            }
+        }
+        
+        Customer customer = new Customer();
+        customer.setId(customerId);
+        customer.setCustomerFirstName(firstName);
+        customer.setCustomerLastName(lastName);
+        customer.setCustomerEmail(email);
+        customer.setCustomerPhone(phone);
+        return customer;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache(registry, "customers", this, s -> s.getCacheHits(), s -> s.getCacheMisses(), s -> s.getCacheSize());
+    }
+    
+    public long getCacheHits() {
+        return customersByEmail.getHits();
+    }
+    
+    public long getCacheMisses() {
+        return customersByEmail.getMisses();
+    }
+    
+    public int getCacheSize() {
+        return customersByEmail.size();
+    }
+    
+    // a rolled back insert must not leave a dangling id in the cache
+    private void cacheAfterCommit(String email, CachedCustomer customer) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            customersByEmail.put(email, customer);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                customersByEmail.put(email, customer);
+            }
+        });
+    }
+    
+    // the upsert keeps the stored value for a null field (COALESCE), so only a non-null one can change it
+    private record CachedCustomer(Long id, String firstName, String lastName, String phone) {
+        
+        boolean matches(String firstName, String lastName, String phone) {
+            return unchanged(this.firstName, firstName) && unchanged(this.lastName, lastName)
+                    && unchanged(this.phone, phone);
+        }
         
-        return customerRepository.findByCustomerEmail(email)
-                .orElseGet(() -> {
-                    // Create new customer if not found
-                    Customer newCustomer = new Customer();
-                    newCustomer.setCustomerFirstName(firstName);
-                    newCustomer.setCustomerLastName(lastName);
-                    newCustomer.setCustomerEmail(email);
-                    newCustomer.setCustomerPhone(phone);
-                    
-                    
-                    Customer saved = customerRepository.saveAndFlush(newCustomer);
-                    
-                    log.info("Created and committed new customer with email: {} and ID: {}", email, saved.getId());
-                    return saved;
-                });
+        static CachedCustomer merge(Long id, CachedCustomer previous, String firstName, String lastName, String phone) {
+            if (previous == null) {
+                return new CachedCustomer(id, firstName, lastName, phone);
             }
-}
\ No newline at end of file
+            return new CachedCustomer(id, firstName != null ? firstName : previous.firstName,
+                    lastName != null ? lastName : previous.lastName, phone != null ? phone : previous.phone);
+        }
+        
+        private static boolean unchanged(String stored, String given) {
+            return given == null || given.equals(stored);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// DB Admission Bulkhead - caps how many threads may hold or wait for a JDBC connection
+// With virtual threads thousands of requests can reach the pool at once. A fair semaphore sized
+// to the Hikari pool admits them in order and fails fast after max-wait instead of letting them pile up.
+// Every physical pool gets its own semaphore: the primary DataSource bean is wrapped before ReadReplicaRouting
+// puts its lazy proxy in front (Ordered), and the routing gates each replica pool it creates, sized to that pool.
+// A permit is therefore only taken when a physical connection is fetched, not per transaction.
+@Component
+@ConditionalOnProperty(name = "db.admission.enabled", havingValue = "true")
+@Slf4j
+public class DbAdmissionBulkhead implements BeanPostProcessor, Ordered, MeterBinder {
+
+    private final int maxConcurrent;
+    private final long maxWaitMs;
+    private final List<AdmissionControlledDataSource> gates = new CopyOnWriteArrayList<>();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public DbAdmissionBulkhead(
+            @Value("${db.admission.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrent,
+            @Value("${db.admission.max-wait-ms:2000}") long maxWaitMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMs = maxWaitMs;
+        log.info("DB admission bulkhead enabled: {} permits, {} ms max wait", maxConcurrent, maxWaitMs);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof AdmissionControlledDataSource)
+                && !(bean instanceof LazyConnectionDataSourceProxy)) {
+            return gate(dataSource, maxConcurrent);
+        }
+        return bean;
+    }
+
+    // before ReadReplicaRouting, so the primary pool is wrapped and not the routing proxy in front of it
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    /**
+     * Admission for a pool that is not a bean (the replica pools), with its own permits
+     */
+    public DataSource gate(DataSource pool, int poolSize) {
+        AdmissionControlledDataSource gated = new AdmissionControlledDataSource(pool, poolSize);
+        gates.add(gated);
+        return gated;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("db.admission.available", this, b -> b.getAvailablePermits()).register(registry);
+        Gauge.builder("db.admission.waiting", this, b -> b.getQueueLength()).register(registry);
+        counter(registry, "db.admission.rejected", this, b -> b.getRejected());
+    }
+
+    // summed over all pools
+    public int getAvailablePermits() {
+        return gates.stream().mapToInt(gate -> gate.permits.availablePermits()).sum();
+    }
+
+    public int getQueueLength() {
+        return gates.stream().mapToInt(gate -> gate.permits.getQueueLength()).sum();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private static Connection admit(Connection connection, Semaphore permits) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                    if ("unwrap".equals(method.getName()) && ((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    class AdmissionControlledDataSource extends DelegatingDataSource {
+
+        private final Semaphore permits;
+
+        AdmissionControlledDataSource(DataSource target, int maxConcurrent) {
+            super(target);
+            this.permits = new Semaphore(maxConcurrent, true);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            try {
+                return admit(super.getConnection(), permits);
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            try {
+                return admit(super.getConnection(username, password), permits);
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private void acquire() throws SQLException {
+            try {
+                if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                    rejected.incrementAndGet();
+                    throw new SQLTransientConnectionException(
+                            "DB admission limit reached, no connection within " + maxWaitMs + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted waiting for DB admission", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Claim on an idempotency key, then the stored result of the request that held it
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    static final int IN_PROGRESS = 0;
+
+    // scope + ":" + key, e.g. "confirm:ORDER-1712345"
+    @Id
+    @Column(name = "idempotency_key", length = 255)
+    private String idempotencyKey;
+
+    // SHA-256 of the request body, a key reused for a different request is refused instead of replayed
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    // IN_PROGRESS while the claiming request runs, then the status of its response
+    @Column(name = "status_code", nullable = false)
+    private Integer statusCode;
+
+    // random per claim, only the claimant completes or releases the row
+    @Column(name = "claimed_by", length = 36)
+    private String claimedBy;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    boolean isInProgress() {
+        return statusCode != null && statusCode == IN_PROGRESS;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ecommerce;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // 1 when this caller now holds the key, 0 when someone else already does (or did)
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, request_hash, status_code, claimed_by, created_at) "
+            + "VALUES (:key, :requestHash, " + IdempotencyRecord.IN_PROGRESS + ", :claim, :now) "
+            + "ON CONFLICT (idempotency_key) DO NOTHING", nativeQuery = true)
+    int claim(@Param("key") String key, @Param("requestHash") String requestHash,
+              @Param("claim") String claim, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.statusCode = :statusCode, r.responseBody = :responseBody "
+            + "WHERE r.idempotencyKey = :key AND r.claimedBy = :claim AND r.statusCode = " + IdempotencyRecord.IN_PROGRESS)
+    int complete(@Param("key") String key, @Param("claim") String claim,
+                 @Param("statusCode") int statusCode, @Param("responseBody") String responseBody);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r "
+            + "WHERE r.idempotencyKey = :key AND r.claimedBy = :claim AND r.statusCode = " + IdempotencyRecord.IN_PROGRESS)
+    int release(@Param("key") String key, @Param("claim") String claim);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,280 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static com.example.ecommerce.ApplicationMetrics.cache;
+
+// Idempotency Service - replays the first completed response for a repeated key
+// lookup order: recent-key cache -> in-flight request -> idempotency_keys table -> run the request
+// Before running, the key is claimed with an "in progress" row, so a duplicate on another instance waits for that
+// row to complete instead of running the request a second time. A claim older than claim-ttl-ms is presumed dead
+// (its instance went away mid-request) and can be taken over.
+// Every step compares a hash of the request body: a key reused for a different request gets a 422, so a changed
+// cart is not answered with the old order and an apiRef alone is not enough to read the order back.
+@Service
+@Slf4j
+public class IdempotencyService implements MeterBinder {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // how often a duplicate re-reads a key claimed by another instance
+    private static final long CLAIM_POLL_MS = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final LruCache<String, IdempotencyRecord> recentKeys;
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final long waitTimeoutMs;
+    private final long claimTtlMs;
+    private final long retentionHours;
+
+    public IdempotencyService(
+            IdempotencyRecordRepository idempotencyRecordRepository,
+            ObjectMapper objectMapper,
+            @Value("${idempotency.cache.max-entries:10000}") int maxEntries,
+            @Value("${idempotency.wait-timeout-ms:30000}") long waitTimeoutMs,
+            @Value("${idempotency.claim-ttl-ms:60000}") long claimTtlMs,
+            @Value("${idempotency.retention-hours:48}") long retentionHours) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.recentKeys = new LruCache<>(maxEntries);
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.claimTtlMs = claimTtlMs;
+        this.retentionHours = retentionHours;
+    }
+
+    /**
+     * Runs the request once per (scope, key). Without a key the request just runs.
+     * requestBody is what the request was made with, it is hashed to tell a retry from a reused key.
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object requestBody, Supplier<ResponseEntity<?>> request) {
+        if (key == null || key.isBlank()) {
+            return request.get();
+        }
+        String recordKey = scope + ":" + key.trim();
+        String requestHash = fingerprint(requestBody);
+
+        IdempotencyRecord cached = recentKeys.get(recordKey);
+        if (cached != null) {
+            return sameRequest(cached, requestHash) ? replay(cached) : mismatch(recordKey);
+        }
+
+        InFlight ours = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(recordKey, ours);
+        if (running != null) {
+            if (!running.requestHash().equals(requestHash)) {
+                return mismatch(recordKey);
+            }
+            log.info("Waiting on in-flight request for idempotency key {}", recordKey);
+            return joined(await(running.response(), recordKey));
+        }
+
+        try {
+            ResponseEntity<?> response = claimAndRun(recordKey, requestHash, request);
+            ours.response().complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            ours.response().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(recordKey, ours);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache(registry, "idempotency", this, s -> s.getCacheHits(), s -> s.getCacheMisses(), s -> s.getCacheSize());
+    }
+
+    public long getCacheHits() {
+        return recentKeys.getHits();
+    }
+
+    public long getCacheMisses() {
+        return recentKeys.getMisses();
+    }
+
+    public int getCacheSize() {
+        return recentKeys.size();
+    }
+
+    // drop stored keys once clients can no longer be retrying them
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:3600000}")
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyRecordRepository.deleteOlderThan(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    // runs the request once this instance holds the key's row, otherwise answers from (or waits for) the holder's
+    private ResponseEntity<?> claimAndRun(String recordKey, String requestHash, Supplier<ResponseEntity<?>> request) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+        while (true) {
+            String claim = UUID.randomUUID().toString();
+            if (idempotencyRecordRepository.claim(recordKey, requestHash, claim, LocalDateTime.now()) == 1) {
+                return runAndStore(recordKey, requestHash, claim, request);
+            }
+            IdempotencyRecord stored = idempotencyRecordRepository.findById(recordKey).orElse(null);
+            if (stored == null) {
+                // the holder failed and released the key, claim it again
+                continue;
+            }
+            if (!sameRequest(stored, requestHash)) {
+                return mismatch(recordKey);
+            }
+            if (!stored.isInProgress()) {
+                recentKeys.put(recordKey, stored);
+                return replay(stored);
+            }
+            if (stored.getCreatedAt().isBefore(LocalDateTime.now().minus(claimTtlMs, ChronoUnit.MILLIS))) {
+                log.warn("Taking over idempotency key {}, its claim expired", recordKey);
+                idempotencyRecordRepository.release(recordKey, stored.getClaimedBy());
+                continue;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new RuntimeException("Request " + recordKey + " is still being processed, please retry");
+            }
+            log.info("Waiting on idempotency key {} claimed by another instance", recordKey);
+            sleep(recordKey);
+        }
+    }
+
+    private ResponseEntity<?> runAndStore(String recordKey, String requestHash, String claim,
+                                          Supplier<ResponseEntity<?>> request) {
+        ResponseEntity<?> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            release(recordKey, claim);
+            throw e;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            // failures are not stored so the client can retry them
+            release(recordKey, claim);
+            return response;
+        }
+
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setIdempotencyKey(recordKey);
+        record.setRequestHash(requestHash);
+        record.setStatusCode(response.getStatusCode().value());
+        try {
+            record.setResponseBody(objectMapper.writeValueAsString(response.getBody()));
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize response for idempotency key {}: {}", recordKey, e.getMessage());
+            release(recordKey, claim);
+            return response;
+        }
+
+        if (idempotencyRecordRepository.complete(recordKey, claim, record.getStatusCode(), record.getResponseBody()) == 0) {
+            // our claim expired and another instance took the key over: its stored result is the one clients see
+            IdempotencyRecord stored = idempotencyRecordRepository.findById(recordKey).orElse(null);
+            if (stored != null && !stored.isInProgress()) {
+                log.info("Idempotency key {} was completed by another instance, replaying its response", recordKey);
+                recentKeys.put(recordKey, stored);
+                return replay(stored);
+            }
+            return response;
+        }
+        recentKeys.put(recordKey, record);
+        return response;
+    }
+
+    private void release(String recordKey, String claim) {
+        try {
+            idempotencyRecordRepository.release(recordKey, claim);
+        } catch (RuntimeException e) {
+            // the claim expires after claim-ttl-ms and is taken over then
+            log.warn("Could not release idempotency key {}: {}", recordKey, e.getMessage());
+        }
+    }
+
+    private static void sleep(String recordKey) {
+        try {
+            Thread.sleep(CLAIM_POLL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting on request " + recordKey);
+        }
+    }
+
+    private ResponseEntity<?> await(CompletableFuture<ResponseEntity<?>> running, String recordKey) {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting on request " + recordKey);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Request " + recordKey + " is still being processed, please retry");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new RuntimeException(e.getCause());
+        }
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record) {
+        return ResponseEntity.status(record.getStatusCode())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(record.getResponseBody());
+    }
+
+    private String fingerprint(Object requestBody) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(requestBody);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Could not hash request for idempotency check", e);
+        }
+    }
+
+    // records stored before request hashes were kept have none and match any request
+    private static boolean sameRequest(IdempotencyRecord record, String requestHash) {
+        return record.getRequestHash() == null || record.getRequestHash().equals(requestHash);
+    }
+
+    private static ResponseEntity<?> mismatch(String recordKey) {
+        log.warn("Idempotency key {} reused for a different request", recordKey);
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(Map.of("success", false, "message", "Idempotency key was already used for a different request"));
+    }
+
+    // a duplicate that waited on the in-flight request gets its response, marked like any other replay
+    private static ResponseEntity<?> joined(ResponseEntity<?> response) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    private record InFlight(String requestHash, CompletableFuture<ResponseEntity<?>> response) {
+    }
+}
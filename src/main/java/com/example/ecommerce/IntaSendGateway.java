@@ -0,0 +1,421 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// IntaSend Gateway - every call to IntaSend goes through here
+// bulkhead -> circuit breaker -> (retry for idempotent calls) -> RestTemplate with timeouts
+@Component
+@Slf4j
+public class IntaSendGateway implements MeterBinder {
+
+    private final String apiKey;
+    private final String apiUrl;
+    private final RestTemplate restTemplate;
+
+    private final Semaphore bulkhead;
+    private final long maxWaitMs;
+    private final CircuitBreaker circuitBreaker;
+    private final int retryMaxAttempts;
+    private final long retryBaseBackoffMs;
+    private final MeterRegistry meterRegistry;
+
+    // metrics
+    private final AtomicLong successfulCalls = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong retriedCalls = new AtomicLong();
+    private final AtomicLong rejectedByBulkhead = new AtomicLong();
+    private final AtomicLong rejectedByBreaker = new AtomicLong();
+
+    public IntaSendGateway(
+            @Value("${intasend.api.key}") String apiKey,
+            @Value("${intasend.api.url:https://api.intasend.com/api/v1}") String apiUrl,
+            @Value("${intasend.gateway.connect-timeout-ms:2000}") int connectTimeoutMs,
+            @Value("${intasend.gateway.read-timeout-ms:5000}") int readTimeoutMs,
+            @Value("${intasend.gateway.max-concurrent-calls:20}") int maxConcurrentCalls,
+            @Value("${intasend.gateway.max-wait-ms:100}") long maxWaitMs,
+            @Value("${intasend.gateway.breaker.window-size:20}") int windowSize,
+            @Value("${intasend.gateway.breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${intasend.gateway.breaker.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${intasend.gateway.breaker.open-duration-ms:10000}") long openDurationMs,
+            @Value("${intasend.gateway.breaker.half-open-calls:3}") int halfOpenCalls,
+            @Value("${intasend.gateway.retry.max-attempts:3}") int retryMaxAttempts,
+            @Value("${intasend.gateway.retry.base-backoff-ms:100}") long retryBaseBackoffMs,
+            MeterRegistry meterRegistry) {
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        this.restTemplate = new RestTemplate(requestFactory);
+
+        this.bulkhead = new Semaphore(maxConcurrentCalls, true);
+        this.maxWaitMs = maxWaitMs;
+        this.circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                openDurationMs, halfOpenCalls);
+        this.retryMaxAttempts = Math.max(1, retryMaxAttempts);
+        this.retryBaseBackoffMs = retryBaseBackoffMs;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * POST to IntaSend. Not idempotent, so it is never retried
+     */
+    public Map<String, Object> post(String path, Map<String, Object> payload) {
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers());
+        return call("POST " + path, false, () -> exchange(path, HttpMethod.POST, entity));
+    }
+
+    /**
+     * GET from IntaSend. Idempotent, retried with jittered backoff on transient failures
+     */
+    public Map<String, Object> get(String path) {
+        HttpEntity<Void> entity = new HttpEntity<>(headers());
+        return call("GET " + path, true, () -> exchange(path, HttpMethod.GET, entity));
+    }
+
+    /**
+     * Current breaker state and call counters, for the status endpoint and metrics
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("state", circuitBreaker.getState().name());
+        snapshot.put("failureRate", circuitBreaker.getFailureRate());
+        snapshot.put("availableConcurrentCalls", bulkhead.availablePermits());
+        snapshot.put("successfulCalls", successfulCalls.get());
+        snapshot.put("failedCalls", failedCalls.get());
+        snapshot.put("retriedCalls", retriedCalls.get());
+        snapshot.put("rejectedByBulkhead", rejectedByBulkhead.get());
+        snapshot.put("rejectedByBreaker", rejectedByBreaker.get());
+        snapshot.put("stateTransitions", circuitBreaker.getTransitions());
+        return snapshot;
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    <T> T call(String operation, boolean idempotent, Supplier<T> request) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            rejectedByBreaker.incrementAndGet();
+            throw new GatewayUnavailableException("Payment gateway is temporarily unavailable",
+                    circuitBreaker.getRetryAfterSeconds());
+        }
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            // never reached the gateway, so it does not count against the breaker
+            circuitBreaker.releasePermission();
+            rejectedByBulkhead.incrementAndGet();
+            throw new GatewayUnavailableException("Payment gateway is busy, please retry", 1);
+        }
+
+        try {
+            int attempt = 1;
+            while (true) {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                try {
+                    T result = request.get();
+                    sample.stop(requestTimer(operation, "success"));
+                    circuitBreaker.onSuccess();
+                    successfulCalls.incrementAndGet();
+                    return result;
+                } catch (RuntimeException e) {
+                    sample.stop(requestTimer(operation, outcome(e)));
+                    boolean transientFailure = isTransient(e);
+                    if (idempotent && transientFailure && attempt < retryMaxAttempts
+                            && circuitBreaker.getState() == CircuitBreaker.State.CLOSED) {
+                        retriedCalls.incrementAndGet();
+                        log.warn("IntaSend {} failed (attempt {}), retrying: {}", operation, attempt, e.getMessage());
+                        sleepWithJitter(attempt++);
+                        continue;
+                    }
+                    if (transientFailure) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        // 4xx means the gateway answered, the request was bad
+                        circuitBreaker.onSuccess();
+                    }
+                    failedCalls.incrementAndGet();
+                    throw e;
+                }
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    // one timer per attempt; operation is "METHOD /path" from our own code, so the tag set stays small
+    private Timer requestTimer(String operation, String outcome) {
+        return Timer.builder("intasend.gateway.requests")
+                .description("IntaSend HTTP calls, per attempt")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String outcome(RuntimeException e) {
+        if (e instanceof HttpStatusCodeException statusException) {
+            return statusException.getStatusCode().is4xxClientError() ? "client_error" : "server_error";
+        }
+        return e instanceof ResourceAccessException ? "io_error" : "unknown";
+    }
+
+    // request latency is timed per attempt in requestTimer
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "intasend.gateway.calls", this, g -> g.getSuccessfulCalls(), "result", "success");
+        counter(registry, "intasend.gateway.calls", this, g -> g.getFailedCalls(), "result", "failure");
+        counter(registry, "intasend.gateway.retries", this, g -> g.getRetriedCalls());
+        counter(registry, "intasend.gateway.rejected", this, g -> g.getRejectedByBulkhead(), "reason", "bulkhead");
+        counter(registry, "intasend.gateway.rejected", this, g -> g.getRejectedByBreaker(), "reason", "circuit_open");
+        Gauge.builder("intasend.gateway.available.calls", this, g -> g.getAvailableConcurrentCalls())
+                .register(registry);
+        Gauge.builder("intasend.gateway.breaker.failure.rate", this, g -> g.getCircuitBreaker().getFailureRate())
+                .baseUnit("percent")
+                .register(registry);
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("intasend.gateway.breaker.state", this,
+                            g -> g.getCircuitBreaker().getState() == state ? 1 : 0)
+                    .tag("state", state.name().toLowerCase())
+                    .register(registry);
+        }
+    }
+
+    long getSuccessfulCalls() {
+        return successfulCalls.get();
+    }
+
+    long getFailedCalls() {
+        return failedCalls.get();
+    }
+
+    long getRetriedCalls() {
+        return retriedCalls.get();
+    }
+
+    long getRejectedByBulkhead() {
+        return rejectedByBulkhead.get();
+    }
+
+    long getRejectedByBreaker() {
+        return rejectedByBreaker.get();
+    }
+
+    int getAvailableConcurrentCalls() {
+        return bulkhead.availablePermits();
+    }
+
+    private Map<String, Object> exchange(String path, HttpMethod method, HttpEntity<?> entity) {
+        ResponseEntity<Map> response = restTemplate.exchange(apiUrl + path, method, entity, Map.class);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> body = response.getBody();
+        return body;
+    }
+
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-IntaSend-Public-API-Key", apiKey);
+        return headers;
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        if (e instanceof ResourceAccessException || e instanceof HttpServerErrorException) {
+            return true;
+        }
+        return e instanceof HttpStatusCodeException statusException
+                && statusException.getStatusCode().value() == 429;
+    }
+
+    private void sleepWithJitter(int attempt) {
+        // full jitter: random delay in [0, base * 2^attempt)
+        long cap = retryBaseBackoffMs << Math.min(attempt, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(Math.max(1, cap)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+// Count-based sliding window circuit breaker
+// CLOSED -> OPEN when the failure rate over the last windowSize calls crosses the threshold,
+// OPEN -> HALF_OPEN after openDurationMs, HALF_OPEN lets a few trial calls through
+@Slf4j
+class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationMs;
+    private final int halfOpenCalls;
+
+    private final boolean[] outcomes;
+    private int position;
+    private int recordedCalls;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+
+    private final Map<State, AtomicLong> transitions = new LinkedHashMap<>();
+
+    CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold,
+                   long openDurationMs, int halfOpenCalls) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.outcomes = new boolean[this.windowSize];
+        for (State s : State.values()) {
+            transitions.put(s, new AtomicLong());
+        }
+    }
+
+    synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenInFlight++;
+        }
+        return true;
+    }
+
+    synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && halfOpenInFlight > 0) {
+            halfOpenInFlight--;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (++halfOpenSuccesses >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recordedCalls >= minimumCalls
+                && failures * 100 >= failureRateThreshold * recordedCalls) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    synchronized int getFailureRate() {
+        return recordedCalls == 0 ? 0 : failures * 100 / recordedCalls;
+    }
+
+    synchronized long getRetryAfterSeconds() {
+        long remaining = openDurationMs - (System.currentTimeMillis() - openedAt);
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining + 999));
+    }
+
+    Map<String, Long> getTransitions() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        transitions.forEach((s, count) -> counts.put(s.name(), count.get()));
+        return counts;
+    }
+
+    private void record(boolean failure) {
+        if (recordedCalls == windowSize) {
+            if (outcomes[position]) {
+                failures--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        outcomes[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % windowSize;
+    }
+
+    private void transitionTo(State next) {
+        log.warn("IntaSend circuit breaker {} -> {} (failure rate {}%)", state, next, getFailureRate());
+        state = next;
+        transitions.get(next).incrementAndGet();
+        halfOpenInFlight = 0;
+        halfOpenSuccesses = 0;
+        if (next == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        }
+        if (next == State.CLOSED) {
+            Arrays.fill(outcomes, false);
+            position = 0;
+            recordedCalls = 0;
+            failures = 0;
+        }
+    }
+}
+
+// Thrown without calling IntaSend when the breaker is open or the bulkhead is full
+class GatewayUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    GatewayUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.ecommerce;
+
+import org.springframework.boot.json.JsonWriter;
+import org.springframework.boot.logging.structured.StructuredLoggingJsonMembersCustomizer;
+
+import java.util.regex.Pattern;
+
+// Log Redaction - masks customer emails, phone numbers and IntaSend keys in every string of a JSON log event
+// and caps each string at MAX_LENGTH (stack traces have their own cap, logging.structured.json.stacktrace.max-length). Registered through logging.structured.json.customizer, it runs
+// inside the encoder, i.e. on the async appender's worker thread rather than the request thread.
+public class LogRedaction implements StructuredLoggingJsonMembersCustomizer<Object> {
+
+    static final int MAX_LENGTH = 2048;
+
+    private static final Pattern EMAIL = Pattern.compile("[\\w.+-]+@[\\w-]+(?:\\.[\\w-]+)+");
+    // Kenyan MSISDNs as M-Pesa checkouts send them: 07XXXXXXXX, 2547XXXXXXXX, +2547XXXXXXXX
+    private static final Pattern PHONE = Pattern.compile("(?<!\\d)(?:\\+?254|0)\\d{9}(?!\\d)");
+    private static final Pattern INTASEND_KEY = Pattern.compile("IS(?:Pub|Secret)Key_\\S+");
+
+    @Override
+    public void customize(JsonWriter.Members<Object> members) {
+        members.applyingValueProcessor(JsonWriter.ValueProcessor.<String>of(String.class, LogRedaction::redact)
+                .whenHasPath(path -> !"stack_trace".equals(path.name())));
+        members.applyingValueProcessor(JsonWriter.ValueProcessor.<String>of(String.class, LogRedaction::mask)
+                .whenHasPath(path -> "stack_trace".equals(path.name())));
+    }
+
+    static String redact(String value) {
+        String result = mask(value);
+        if (result != null && result.length() > MAX_LENGTH) {
+            result = result.substring(0, MAX_LENGTH) + "...[truncated " + (result.length() - MAX_LENGTH) + " chars]";
+        }
+        return result;
+    }
+
+    static String mask(String value) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        String result = value;
+        if (result.indexOf('@') >= 0) {
+            result = EMAIL.matcher(result).replaceAll("[email]");
+        }
+        if (result.contains("Key_")) {
+            result = INTASEND_KEY.matcher(result).replaceAll("[intasend-key]");
+        }
+        return PHONE.matcher(result).replaceAll("[phone]");
+    }
+}
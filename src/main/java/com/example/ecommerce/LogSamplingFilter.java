@@ -0,0 +1,69 @@
+package com.example.ecommerce;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Log Sampling Filter - keeps only a fraction of the INFO/DEBUG events from noisy request-path loggers
+// Configured in logback-spring.xml from logging.sampling.rates, e.g. "com.example.ecommerce.OrderService=0.25"
+// WARN and above always pass. Runs on the calling thread, so it only does a map lookup and a random draw.
+public class LogSamplingFilter extends TurboFilter {
+
+    private volatile Map<String, Double> rates = Map.of();
+    private final Map<String, Double> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * Comma separated logger=rate pairs, the longest matching logger name prefix wins
+     */
+    public void setRates(String spec) {
+        Map<String, Double> parsed = new ConcurrentHashMap<>();
+        if (spec != null) {
+            for (String pair : spec.split(",")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    double rate = Double.parseDouble(pair.substring(eq + 1).trim());
+                    parsed.put(pair.substring(0, eq).trim(), Math.max(0.0, Math.min(1.0, rate)));
+                }
+            }
+        }
+        this.rates = parsed;
+        resolved.clear();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // isDebugEnabled() style checks come through with no format, let the level decide those
+        if (!isStarted() || format == null || level.isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        double rate = resolved.computeIfAbsent(logger.getName(), this::rateFor);
+        if (rate >= 1.0) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextDouble() < rate ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private double rateFor(String loggerName) {
+        String name = loggerName;
+        while (true) {
+            Double rate = rates.get(name);
+            if (rate != null) {
+                return rate;
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                return 1.0;
+            }
+            name = name.substring(0, dot);
+        }
+    }
+}
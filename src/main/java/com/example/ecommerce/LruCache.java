@@ -0,0 +1,57 @@
+package com.example.ecommerce;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Small bounded LRU map with hit/miss counters, used for in-memory lookups in front of a table
+class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    LruCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    V get(K key) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    void remove(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+}
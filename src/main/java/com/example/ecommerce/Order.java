@@ -11,7 +11,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_created_at", columnList = "created_at"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
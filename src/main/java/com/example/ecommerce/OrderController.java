@@ -1,12 +1,24 @@
 package com.example.ecommerce;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 import lombok.extern.slf4j.Slf4j;
 
 @RestController
@@ -18,10 +30,40 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private IntaSendGateway intaSendGateway;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private WebhookQueue webhookQueue;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ObjectProvider<OutboxRelay> outboxRelay;
+
+    @Autowired
+    private OrderExportService orderExportService;
+
+    // the challenge set on the IntaSend dashboard, every webhook carries it; unset means webhooks are refused
+    @Value("${intasend.webhook.challenge:}")
+    private String webhookChallenge;
+
+    // Checkout, confirm and create-pending are retried by the frontend on flaky networks,
+    // duplicates keyed by Idempotency-Key (or the order apiRef) replay the first result
     @PostMapping("/checkout")
-public ResponseEntity<?> createCheckout(@RequestBody CheckoutRequest request) {
+public ResponseEntity<?> createCheckout(@RequestBody CheckoutRequest request,
+        @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+    return idempotencyService.execute("checkout", keyOrApiRef(idempotencyKey, request.getApi_ref()), request,
+        () -> doCreateCheckout(request));
+}
+
+private ResponseEntity<?> doCreateCheckout(CheckoutRequest request) {
     try {
-        log.info("Received checkout request for: {}", request.getEmail());
+        log.debug("Received checkout request for api_ref: {}", request.getApi_ref());
         
         CheckoutResponse checkoutData = orderService.createIntaSendCheckout(request);
         
@@ -36,10 +78,18 @@ public ResponseEntity<?> createCheckout(@RequestBody CheckoutRequest request) {
         
         response.put("data", data);
         
-        log.info("Returning checkout URL: {}", checkoutData.getCheckoutUrl());
+        log.debug("Returning checkout URL: {}", checkoutData.getCheckoutUrl());
         
         return ResponseEntity.ok(response);
         
+    } catch (GatewayUnavailableException e) {
+        // fast fail while the gateway is degraded, the client can retry after the hint
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(errorResponse);
     } catch (Exception e) {
         log.error("Checkout failed: {}", e.getMessage(), e);
         Map<String, Object> errorResponse = new HashMap<>();
@@ -50,7 +100,13 @@ public ResponseEntity<?> createCheckout(@RequestBody CheckoutRequest request) {
 }
 
     @PostMapping("/confirm")
-    public ResponseEntity<?> confirmOrder(@RequestBody OrderConfirmationRequest request) {
+    public ResponseEntity<?> confirmOrder(@RequestBody OrderConfirmationRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("confirm", keyOrApiRef(idempotencyKey, request.getApiRef()), request,
+            () -> doConfirmOrder(request));
+    }
+
+    private ResponseEntity<?> doConfirmOrder(OrderConfirmationRequest request) {
         try {
             // Fixed: OrderService returns OrderDTO, not Order
             OrderDTO order = orderService.saveOrder(request);
@@ -89,6 +145,58 @@ public ResponseEntity<?> createCheckout(@RequestBody CheckoutRequest request) {
         }
     }
 
+    // GET /api/orders/export?from=2026-01-01&to=2026-02-01&format=csv  Finance reconciliation export,
+    // orders created in [from, to) streamed straight to the response, gzipped with gzip=true or Accept-Encoding: gzip.
+    // Runs on the request thread (no async timeout), errors after the first byte can only cut the stream short.
+    @GetMapping("/export")
+    public ResponseEntity<?> exportOrders(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException {
+        OrderExportService.ExportFormat exportFormat;
+        try {
+            exportFormat = OrderExportService.ExportFormat.fromParam(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "from must be before to"));
+        }
+        if (!orderExportService.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(Map.of("success", false, "message", "Too many exports running, try again later"));
+        }
+        try {
+            boolean compress = gzip || (acceptEncoding != null && acceptEncoding.contains("gzip"));
+            response.setContentType(exportFormat.getContentType() + ";charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders-" + from + "-" + to
+                + "." + exportFormat.getExtension() + "\"");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            if (compress) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            OutputStream out = compress ? new GZIPOutputStream(response.getOutputStream(), 64 * 1024) : response.getOutputStream();
+            try {
+                orderExportService.export(from.atStartOfDay(), to.atStartOfDay(), exportFormat, out);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Order export {} to {} aborted: {}", from, to, e.getMessage());
+                throw e;
+            }
+            if (out instanceof GZIPOutputStream gzipOut) {
+                gzipOut.finish();
+            }
+            response.flushBuffer();
+            return null;
+        } finally {
+            orderExportService.release();
+        }
+    }
+
     @GetMapping("/order/{id}")
     public ResponseEntity<?> getOrderById(@PathVariable Long id) {
         try {
@@ -109,22 +217,51 @@ public ResponseEntity<?> createCheckout(@RequestBody CheckoutRequest request) {
         }
     }
 
+    // GET /api/orders/gateway/status  Circuit breaker state and IntaSend call counters
+    @GetMapping("/gateway/status")
+    public ResponseEntity<?> getGatewayStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", intaSendGateway.snapshot());
+        return ResponseEntity.ok(response);
+    }
+
+    // GET /api/orders/outbox/status  Outbox relay throughput and lag
+    @GetMapping("/outbox/status")
+    public ResponseEntity<?> getOutboxStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", outboxRelay.getIfAvailable() != null
+            ? outboxRelay.getIfAvailable().snapshot()
+            : Map.of("enabled", false));
+        return ResponseEntity.ok(response);
+    }
+
+   // Webhook is acknowledged as soon as the raw event is on the durable queue,
+   // WebhookEventProcessor applies the status change off the request thread
    @PostMapping("/webhook/intasend")
 @CrossOrigin(origins = "*")
 public ResponseEntity<?> handleWebhook(@RequestBody Map<String, Object> payload) {
-    log.info("=== IntaSend Webhook Received ===");
-    log.info("Full payload: {}", payload);
-    
-    String state = (String) payload.get("state");
-    String checkoutId = (String) payload.get("id");
-    String apiRef = (String) payload.get("api_ref");
+    if (!isValidChallenge(webhookChallenge, payload.get("challenge"))) {
+        log.warn("Rejected IntaSend webhook with a missing or wrong challenge");
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("received", false));
+    }
+    WebhookEvent event = new WebhookEvent();
+    event.setCheckoutId(asString(payload.getOrDefault("id", payload.get("checkout_id"))));
+    event.setApiRef(asString(payload.get("api_ref")));
+    event.setTrackingId(asString(payload.get("invoice_id")));
+    event.setState(asString(payload.get("state")));
+    event.setReceivedAtMillis(System.currentTimeMillis());
+    log.debug("IntaSend webhook received: checkout_id={}, api_ref={}, state={}",
+        event.getCheckoutId(), event.getApiRef(), event.getState());
     
-    if ("COMPLETE".equals(state)) {
-        // Get cart items from database using api_ref or checkout_id
-        // Create OrderConfirmationRequest
-        // Call orderService.saveOrder()
-        
-        log.info("Payment completed: checkout_id={}, api_ref={}", checkoutId, apiRef);
+    try {
+        event.setRawPayload(objectMapper.writeValueAsString(payload));
+        webhookQueue.enqueue(event);
+    } catch (Exception e) {
+        // not acknowledged, IntaSend retries the delivery
+        log.error("Failed to queue webhook for checkout_id={}: {}", event.getCheckoutId(), e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("received", false));
     }
     
     return ResponseEntity.ok(Map.of("received", true));
@@ -132,7 +269,13 @@ public ResponseEntity<?> handleWebhook(@RequestBody Map<String, Object> payload)
 
 
 @PostMapping("/create-pending")
-public ResponseEntity<?> createPendingOrder(@RequestBody OrderConfirmationRequest request) {
+public ResponseEntity<?> createPendingOrder(@RequestBody OrderConfirmationRequest request,
+        @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+    return idempotencyService.execute("create-pending", keyOrApiRef(idempotencyKey, request.getApiRef()), request,
+        () -> doCreatePendingOrder(request));
+}
+
+private ResponseEntity<?> doCreatePendingOrder(OrderConfirmationRequest request) {
     try {
         request.setPaymentStatus("PENDING");
         OrderDTO order = orderService.saveOrder(request);
@@ -152,11 +295,9 @@ public ResponseEntity<?> createPendingOrder(@RequestBody OrderConfirmationReques
     @PutMapping("/update-status")
     public ResponseEntity<?> updateOrderStatus(@RequestBody UpdateOrderStatusRequest request) {
         try {
-            log.info("=== UPDATE ORDER STATUS REQUEST ===");
-            log.info("API Ref: {}", request.getApiRef());
-            log.info("IntaSend Checkout ID: {}", request.getIntasendCheckoutId());
-            log.info("IntaSend Tracking ID: {}", request.getIntasendTrackingId());
-            log.info("Payment Status: {}", request.getPaymentStatus());
+            log.debug("Update order status: api_ref={}, checkout_id={}, tracking_id={}, status={}",
+                request.getApiRef(), request.getIntasendCheckoutId(),
+                request.getIntasendTrackingId(), request.getPaymentStatus());
             
             OrderDTO updatedOrder = orderService.updateOrderStatus(
                 request.getApiRef(),
@@ -185,4 +326,20 @@ public ResponseEntity<?> createPendingOrder(@RequestBody OrderConfirmationReques
                 .body(errorResponse);
         }
     }
+
+    // constant time, so the challenge cannot be guessed from response timings
+    static boolean isValidChallenge(String expected, Object received) {
+        if (expected == null || expected.isBlank() || !(received instanceof String challenge)) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), challenge.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String keyOrApiRef(String idempotencyKey, String apiRef) {
+        return idempotencyKey != null && !idempotencyKey.isBlank() ? idempotencyKey : apiRef;
+    }
+
+    private static String asString(Object value) {
+        return value != null ? String.valueOf(value) : null;
+    }
 }
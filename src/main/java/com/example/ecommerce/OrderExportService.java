@@ -0,0 +1,276 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Order Export Service - streams orders with their items and customer for finance reconciliation
+// Rows come from a forward-only cursor (OrderRepository.streamForExport) and are written as they arrive,
+// at most one order is held in memory, so heap use does not depend on the size of the range.
+// Each export holds a DB connection for its whole duration, max-concurrent keeps them from starving checkout.
+@Service
+@Slf4j
+public class OrderExportService {
+
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+    private final Semaphore permits;
+
+    public OrderExportService(OrderRepository orderRepository, ObjectMapper objectMapper,
+                              @Value("${orders.export.max-concurrent:2}") int maxConcurrent) {
+        this.orderRepository = orderRepository;
+        this.objectMapper = objectMapper;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Writes the orders created in [from, to) to out and returns how many were written.
+     * One read-only transaction: Postgres only serves a fetch-size cursor outside autocommit.
+     */
+    @Transactional(readOnly = true)
+    public long export(LocalDateTime from, LocalDateTime to, ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_CHARS);
+        OrderExportWriter exportWriter = format == ExportFormat.CSV
+                ? new CsvOrderWriter(writer)
+                : new NdjsonOrderWriter(objectMapper.getFactory().createGenerator(writer)
+                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        try (Stream<OrderExportRow> rows = orderRepository.streamForExport(from, to)) {
+            Iterator<OrderExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                exportWriter.write(iterator.next());
+            }
+        }
+        long orders = exportWriter.finish();
+        writer.flush();
+        log.info("Exported {} orders created between {} and {} as {}", orders, from, to, format);
+        return orders;
+    }
+
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static ExportFormat fromParam(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value + " (ndjson or csv)");
+            }
+        }
+    }
+}
+
+// one row per order item, orders without items come through once with null item fields
+record OrderExportRow(Long orderId, String apiRef, LocalDateTime createdAt, String paymentStatus, String currency,
+                      BigDecimal totalAmount, String firstName, String lastName, String email, String phone,
+                      Long productId, String productName, BigDecimal price, Integer quantity, BigDecimal subtotal) {
+}
+
+interface OrderExportWriter {
+
+    void write(OrderExportRow row) throws IOException;
+
+    /**
+     * Writes whatever is still pending and returns the number of orders written
+     */
+    long finish() throws IOException;
+}
+
+// one JSON object per order and line, items nested; rows of an order arrive together (ordered by order)
+class NdjsonOrderWriter implements OrderExportWriter {
+
+    private final JsonGenerator json;
+    private final List<OrderExportRow> current = new ArrayList<>();
+    private long orders;
+
+    NdjsonOrderWriter(JsonGenerator json) {
+        this.json = json;
+    }
+
+    @Override
+    public void write(OrderExportRow row) throws IOException {
+        if (!current.isEmpty() && !current.get(0).orderId().equals(row.orderId())) {
+            flushOrder();
+        }
+        current.add(row);
+    }
+
+    @Override
+    public long finish() throws IOException {
+        if (!current.isEmpty()) {
+            flushOrder();
+        }
+        json.flush();
+        return orders;
+    }
+
+    private void flushOrder() throws IOException {
+        OrderExportRow order = current.get(0);
+        json.writeStartObject();
+        json.writeNumberField("id", order.orderId());
+        json.writeStringField("apiRef", order.apiRef());
+        json.writeStringField("createdAt", order.createdAt() != null ? order.createdAt().toString() : null);
+        json.writeStringField("paymentStatus", order.paymentStatus());
+        json.writeStringField("currency", order.currency());
+        writeAmount("totalAmount", order.totalAmount());
+        json.writeObjectFieldStart("customer");
+        json.writeStringField("firstName", order.firstName());
+        json.writeStringField("lastName", order.lastName());
+        json.writeStringField("email", order.email());
+        json.writeStringField("phone", order.phone());
+        json.writeEndObject();
+        json.writeArrayFieldStart("items");
+        for (OrderExportRow item : current) {
+            if (item.productName() == null) {
+                continue;
+            }
+            json.writeStartObject();
+            if (item.productId() != null) {
+                json.writeNumberField("productId", item.productId());
+            }
+            json.writeStringField("productName", item.productName());
+            writeAmount("price", item.price());
+            json.writeNumberField("quantity", item.quantity());
+            writeAmount("subtotal", item.subtotal());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeRaw('\n');
+        current.clear();
+        orders++;
+    }
+
+    // plain notation, never 1E+3
+    private void writeAmount(String field, BigDecimal value) throws IOException {
+        json.writeFieldName(field);
+        if (value == null) {
+            json.writeNull();
+        } else {
+            json.writeNumber(value.toPlainString());
+        }
+    }
+}
+
+// RFC 4180, one line per order item; text cells that a spreadsheet would run as a formula get a leading '
+// (phone numbers such as +2547... are left alone)
+class CsvOrderWriter implements OrderExportWriter {
+
+    static final String HEADER = "order_id,api_ref,created_at,payment_status,currency,total_amount,"
+            + "customer_first_name,customer_last_name,customer_email,customer_phone,"
+            + "product_id,product_name,price,quantity,subtotal";
+
+    private static final Pattern NUMBER_LIKE = Pattern.compile("[+-]?[0-9 ().]+");
+
+    private final Writer out;
+    private Long lastOrderId;
+    private long orders;
+
+    CsvOrderWriter(Writer out) throws IOException {
+        this.out = out;
+        out.write(HEADER);
+        out.write("\r\n");
+    }
+
+    @Override
+    public void write(OrderExportRow row) throws IOException {
+        if (!row.orderId().equals(lastOrderId)) {
+            lastOrderId = row.orderId();
+            orders++;
+        }
+        out.write(String.valueOf(row.orderId()));
+        text(row.apiRef());
+        value(row.createdAt());
+        text(row.paymentStatus());
+        text(row.currency());
+        amount(row.totalAmount());
+        text(row.firstName());
+        text(row.lastName());
+        text(row.email());
+        text(row.phone());
+        value(row.productId());
+        text(row.productName());
+        amount(row.price());
+        value(row.quantity());
+        amount(row.subtotal());
+        out.write("\r\n");
+    }
+
+    @Override
+    public long finish() {
+        return orders;
+    }
+
+    private void value(Object value) throws IOException {
+        out.write(',');
+        if (value != null) {
+            out.write(value.toString());
+        }
+    }
+
+    private void amount(BigDecimal value) throws IOException {
+        value(value != null ? value.toPlainString() : null);
+    }
+
+    private void text(String value) throws IOException {
+        out.write(',');
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if ("=+-@".indexOf(value.charAt(0)) >= 0 && !NUMBER_LIKE.matcher(value).matches()) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        } else {
+            out.write(value);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.ecommerce;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -10,5 +11,7 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     
     List<OrderItem> findByOrderId(Long orderId);
     
+    List<OrderItem> findByOrderIdIn(Collection<Long> orderIds);
+    
     void deleteByOrderId(Long orderId);
 }
@@ -1,10 +1,21 @@
 package com.example.ecommerce;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -13,8 +24,42 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     
     
     
+    @EntityGraph(attributePaths = "customer")
     List<Order> findAllByOrderByCreatedAtDesc();
     
     List<Order> findByPaymentStatus(String paymentStatus);
+    @EntityGraph(attributePaths = "customer")
    List<Order> findByCustomer_CustomerEmailOrderByCreatedAtDesc(String email);
+
+    // Payment status updates lock the orders they decide on, in id order like checkout locks products: a webhook
+    // batch and /update-status each see the status the other committed, never a stale read they then overwrite
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.apiRef = :apiRef")
+    Optional<Order> findByApiRefForUpdate(@Param("apiRef") String apiRef);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.apiRef IN :apiRefs ORDER BY o.id")
+    List<Order> findByApiRefInForUpdate(@Param("apiRefs") Collection<String> apiRefs);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.intasendCheckoutId IN :checkoutIds ORDER BY o.id")
+    List<Order> findByIntasendCheckoutIdInForUpdate(@Param("checkoutIds") Collection<String> checkoutIds);
+
+    // Order export: a DTO projection (nothing accumulates in the persistence context) read through a
+    // forward-only cursor, 1000 rows per round trip; must be consumed inside a transaction and closed
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.example.ecommerce.OrderExportRow(o.id, o.apiRef, o.createdAt, o.paymentStatus, o.currency, " +
+           "o.totalAmount, c.customerFirstName, c.customerLastName, c.customerEmail, c.customerPhone, " +
+           "i.productId, i.productName, i.price, i.quantity, i.subtotal) " +
+           "FROM Order o JOIN o.customer c LEFT JOIN OrderItem i ON i.orderId = o.id " +
+           "WHERE o.createdAt >= :from AND o.createdAt < :to " +
+           "ORDER BY o.createdAt, o.id, i.id")
+    Stream<OrderExportRow> streamForExport(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 }
\ No newline at end of file
@@ -3,18 +3,19 @@ package com.example.ecommerce;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -31,24 +32,18 @@ public class OrderService {
     private final CustomerRepository customerRepository;
     private final CustomerService customerService;
     
-    @Value("${intasend.api.key}")
-    private String intasendApiKey;
-    
-    @Value("${intasend.api.url:https://api.intasend.com/api/v1}")
-    private String intasendApiUrl;
-    
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final IntaSendGateway intaSendGateway;
+    private final OutboxService outboxService;
+    private final SalesAnalyticsService salesAnalyticsService;
+    private final ProductChangeStream productChangeStream;
     
     /**
      * Creates IntaSend checkout session
+     * Runs outside a transaction so no DB connection is held while waiting on IntaSend
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public CheckoutResponse createIntaSendCheckout(CheckoutRequest request) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("X-IntaSend-Public-API-Key", intasendApiKey);
-            
             Map<String, Object> intasendPayload = new HashMap<>();
             intasendPayload.put("first_name", request.getFirst_name());
             intasendPayload.put("last_name", request.getLast_name());
@@ -59,19 +54,9 @@ public class OrderService {
             intasendPayload.put("api_ref", request.getApi_ref());
             intasendPayload.put("redirect_url", request.getRedirect_url());
             
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(intasendPayload, headers);
+            log.debug("Creating IntaSend checkout for api_ref {}", request.getApi_ref());
             
-            log.info("Sending to IntaSend API: {}", intasendPayload);
-            
-            ResponseEntity<Map> response = restTemplate.exchange(
-                intasendApiUrl + "/checkout/",
-                HttpMethod.POST,
-                entity,
-                Map.class
-            );
-            
-            Map<String, Object> responseBody = response.getBody();
-            log.info("IntaSend response: {}", responseBody);
+            Map<String, Object> responseBody = intaSendGateway.post("/checkout/", intasendPayload);
             
             CheckoutResponse checkoutResponse = new CheckoutResponse();
             checkoutResponse.setId((String) responseBody.get("id"));
@@ -82,6 +67,9 @@ public class OrderService {
             log.info("Checkout created successfully: {}", checkoutResponse.getId());
             return checkoutResponse;
             
+        } catch (GatewayUnavailableException e) {
+            log.warn("IntaSend call rejected: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("IntaSend API error: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to create checkout session: " + e.getMessage());
@@ -98,7 +86,6 @@ public class OrderService {
                 request.getCustomerEmail(),
                 request.getCustomerPhone()
             );
-            log.info("Customer info collected: {}", customer);
             
             // Create order entity
             Order order = new Order();
@@ -114,31 +101,32 @@ public class OrderService {
             order.setPaymentStatus(request.getPaymentStatus());
             
             Order savedOrder = orderRepository.save(order);
-            log.info("Created order: {} for customer: {}", savedOrder.getId(), customer.getCustomerEmail());
+            log.info("Created order: {} for customer: {}", savedOrder.getId(), customer.getId());
             
-            // Save order items
-            List<OrderItem> orderItems = new ArrayList<>();
+            // Save order items, all products loaded (and locked) in one query and reused for the stock update
+            Map<Long, Products> products = new HashMap<>();
+            productsRepository.findAllByIdForUpdate(request.getItems().stream()
+                    .map(OrderConfirmationRequest.CartItemData::getId)
+                    .collect(Collectors.toSet()))
+                .forEach(product -> products.put(product.getId(), product));
             for (OrderConfirmationRequest.CartItemData item : request.getItems()) {
-                Products product = productsRepository.findById(item.getId())
-                    .orElseThrow(() -> new RuntimeException("Product not found with id: " + item.getId()));
-
-                OrderItem orderItem = new OrderItem();
-                orderItem.setOrderId(savedOrder.getId());
-                orderItem.setProductId(item.getId());
-                orderItem.setProductName(item.getName());
-                orderItem.setPrice(BigDecimal.valueOf(item.getPrice()));
-                orderItem.setQuantity(item.getQuantity());
-                orderItem.setSubtotal(BigDecimal.valueOf(item.getPrice() * item.getQuantity()));
-                
-                orderItems.add(orderItemRepository.save(orderItem));
+                if (!products.containsKey(item.getId())) {
+                    throw new RuntimeException("Product not found with id: " + item.getId());
+                }
             }
+            List<OrderItem> orderItems = orderItemRepository.saveAll(buildOrderItems(savedOrder.getId(), request.getItems()));
             
-            log.info("Saved {} order items for order: {}", orderItems.size(), savedOrder.getId());
+            log.debug("Saved {} order items for order: {}", orderItems.size(), savedOrder.getId());
             
             // Updates product stock quantities
-            updateProductStock(request.getItems());
+            updateProductStock(request.getItems(), products);
             
-            return convertToDTO(savedOrder, orderItems);
+            // orders confirmed as already paid count as sold right away
+            salesAnalyticsService.recordPaymentStatusChange(savedOrder, null);
+            
+            OrderDTO dto = convertToDTO(savedOrder, orderItems);
+            outboxService.record(OutboxService.ORDER, savedOrder.getId(), OutboxService.ORDER_CREATED, dto);
+            return dto;
             
         } catch (Exception e) {
             log.error("Failed to save order: {}", e.getMessage());
@@ -146,12 +134,30 @@ public class OrderService {
         }
     }
     
+    /**
+     * Map the confirmed cart lines to order items (no DB access, benchmarked in OrderItemsBenchmark)
+     */
+    static List<OrderItem> buildOrderItems(Long orderId, List<OrderConfirmationRequest.CartItemData> items) {
+        List<OrderItem> orderItems = new ArrayList<>(items.size());
+        for (OrderConfirmationRequest.CartItemData item : items) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setOrderId(orderId);
+            orderItem.setProductId(item.getId());
+            orderItem.setProductName(item.getName());
+            orderItem.setPrice(BigDecimal.valueOf(item.getPrice()));
+            orderItem.setQuantity(item.getQuantity());
+            orderItem.setSubtotal(BigDecimal.valueOf(item.getPrice() * item.getQuantity()));
+            orderItems.add(orderItem);
+        }
+        return orderItems;
+    }
+    
     /**
      * Update product stock after order
      */
-    private void updateProductStock(List<OrderConfirmationRequest.CartItemData> items) {
+    private void updateProductStock(List<OrderConfirmationRequest.CartItemData> items, Map<Long, Products> products) {
         for (OrderConfirmationRequest.CartItemData item : items) {
-            productsRepository.findById(item.getId()).ifPresent(product -> {
+            Optional.ofNullable(products.get(item.getId())).ifPresent(product -> {
                 int newStock = product.getStockQuantity() - item.getQuantity();
                 product.setStockQuantity(Math.max(0, newStock));
                 
@@ -160,7 +166,12 @@ public class OrderService {
                 }
                 
                 productsRepository.save(product);
-                log.info("Updated stock for product {}: {} remaining", product.getName(), newStock);
+                outboxService.record(OutboxService.PRODUCT, product.getId(), OutboxService.STOCK_CHANGED, Map.of(
+                    "productId", product.getId(),
+                    "stockQuantity", product.getStockQuantity(),
+                    "stockStatus", product.getStockStatus()));
+                productChangeStream.publish(product);
+                log.debug("Updated stock for product {}: {} remaining", product.getName(), newStock);
             });
         }
     }
@@ -169,13 +180,7 @@ public class OrderService {
      * Get all orders
      */
     public List<OrderDTO> getAllOrders() {
-        List<Order> orders = orderRepository.findAllByOrderByCreatedAtDesc();
-        return orders.stream()
-                .map(order -> {
-                    List<OrderItem> items = orderItemRepository.findByOrderId(order.getId());
-                    return convertToDTO(order, items);
-                })
-                .collect(Collectors.toList());
+        return convertToDTOs(orderRepository.findAllByOrderByCreatedAtDesc());
     }
     
     /**
@@ -196,12 +201,7 @@ public List<OrderDTO> getOrdersByCustomerEmail(String email) {
     // Directly search by email using the customer relationship
     List<Order> orders = orderRepository.findByCustomer_CustomerEmailOrderByCreatedAtDesc(email);
     
-    return orders.stream()
-            .map(order -> {
-                List<OrderItem> items = orderItemRepository.findByOrderId(order.getId());
-                return convertToDTO(order, items);
-            })
-            .collect(Collectors.toList());
+    return convertToDTOs(orders);
 }
     
     /**
@@ -209,10 +209,12 @@ public List<OrderDTO> getOrdersByCustomerEmail(String email) {
      */
     @Transactional
     public OrderDTO updatePaymentStatus(Long orderId, String status) {
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findByIdForUpdate(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         
+        String previousStatus = order.getPaymentStatus();
         order.setPaymentStatus(status);
+        recordStatusChange(order, previousStatus);
         Order updated = orderRepository.save(order);
         
         List<OrderItem> items = orderItemRepository.findByOrderId(orderId);
@@ -231,18 +233,15 @@ public List<OrderDTO> getOrdersByCustomerEmail(String email) {
             String intasendTrackingId,
             String paymentStatus) {
         
-        log.info("Searching for order with api_ref: {}", apiRef);
+        log.debug("Searching for order with api_ref: {}", apiRef);
         
-        Order order = orderRepository.findByApiRef(apiRef)
+        Order order = orderRepository.findByApiRefForUpdate(apiRef)
             .orElseThrow(() -> new RuntimeException("Order not found with api_ref: " + apiRef));
         
-        log.info("Found order ID: {}, updating status from {} to {}...", 
+        log.debug("Found order ID: {}, updating status from {} to {}...", 
             order.getId(), order.getPaymentStatus(), paymentStatus);
         
-        order.setIntasendCheckoutId(intasendCheckoutId);
-        order.setIntasendTrackingId(intasendTrackingId);
-        order.setPaymentStatus(paymentStatus);
-        order.setUpdatedAt(java.time.LocalDateTime.now());
+        applyPaymentStatus(order, intasendCheckoutId, intasendTrackingId, paymentStatus);
         
         Order savedOrder = orderRepository.save(order);
         log.info("Order {} updated successfully to status: {}", savedOrder.getId(), paymentStatus);
@@ -252,6 +251,113 @@ public List<OrderDTO> getOrdersByCustomerEmail(String email) {
         return convertToDTO(savedOrder, items);
     }
     
+    /**
+     * Apply payment status updates for many orders in one transaction (webhook batches)
+     * Orders are matched by api_ref, or by IntaSend checkout id when the event has no api_ref.
+     * Unknown orders are skipped so one bad event does not roll back the batch.
+     */
+    @Transactional
+    public int applyPaymentUpdates(List<UpdateOrderStatusRequest> updates) {
+        Set<String> apiRefs = new HashSet<>();
+        Set<String> checkoutIds = new HashSet<>();
+        for (UpdateOrderStatusRequest update : updates) {
+            if (update.getApiRef() != null) {
+                apiRefs.add(update.getApiRef());
+            } else if (update.getIntasendCheckoutId() != null) {
+                checkoutIds.add(update.getIntasendCheckoutId());
+            }
+        }
+        
+        Map<String, Order> byApiRef = new HashMap<>();
+        if (!apiRefs.isEmpty()) {
+            orderRepository.findByApiRefInForUpdate(apiRefs).forEach(order -> byApiRef.put(order.getApiRef(), order));
+        }
+        Map<String, Order> byCheckoutId = new HashMap<>();
+        if (!checkoutIds.isEmpty()) {
+            orderRepository.findByIntasendCheckoutIdInForUpdate(checkoutIds)
+                .forEach(order -> byCheckoutId.put(order.getIntasendCheckoutId(), order));
+        }
+        
+        int applied = 0;
+        for (UpdateOrderStatusRequest update : updates) {
+            Order order = update.getApiRef() != null
+                ? byApiRef.get(update.getApiRef())
+                : byCheckoutId.get(update.getIntasendCheckoutId());
+            if (order == null) {
+                log.warn("No order for payment update api_ref={}, checkout_id={}",
+                    update.getApiRef(), update.getIntasendCheckoutId());
+                continue;
+            }
+            if (applyPaymentStatus(order,
+                    update.getIntasendCheckoutId() != null ? update.getIntasendCheckoutId() : order.getIntasendCheckoutId(),
+                    update.getIntasendTrackingId() != null ? update.getIntasendTrackingId() : order.getIntasendTrackingId(),
+                    update.getPaymentStatus())) {
+                applied++;
+            }
+        }
+        
+        // orders are managed, dirty checking writes them all in one flush at commit
+        log.info("Applied {} of {} payment updates", applied, updates.size());
+        return applied;
+    }
+    
+    /**
+     * A COMPLETED payment is final. IntaSend redelivers webhooks and the queue only dedupes within a batch, so a late
+     * PENDING or FAILED for a paid order is ignored instead of reopening it and reversing its sales. A FAILED attempt
+     * is not final: the buyer can retry on the same checkout and the later COMPLETED must still land.
+     * @return whether the order was updated
+     */
+    private boolean applyPaymentStatus(Order order, String intasendCheckoutId, String intasendTrackingId, String paymentStatus) {
+        String previousStatus = order.getPaymentStatus();
+        if (!isForwardTransition(previousStatus, paymentStatus)) {
+            log.info("Ignoring stale payment status {} for order {} already {}", paymentStatus, order.getId(), previousStatus);
+            return false;
+        }
+        order.setIntasendCheckoutId(intasendCheckoutId);
+        order.setIntasendTrackingId(intasendTrackingId);
+        order.setPaymentStatus(paymentStatus);
+        order.setUpdatedAt(java.time.LocalDateTime.now());
+        recordStatusChange(order, previousStatus);
+        return true;
+    }
+    
+    static boolean isForwardTransition(String currentStatus, String newStatus) {
+        if (newStatus == null) {
+            return false;
+        }
+        return !"COMPLETED".equals(currentStatus) || "COMPLETED".equals(newStatus);
+    }
+    
+    private void recordStatusChange(Order order, String previousStatus) {
+        if (java.util.Objects.equals(previousStatus, order.getPaymentStatus())) {
+            return;
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("orderId", order.getId());
+        event.put("apiRef", order.getApiRef());
+        event.put("previousStatus", previousStatus);
+        event.put("paymentStatus", order.getPaymentStatus());
+        event.put("intasendCheckoutId", order.getIntasendCheckoutId());
+        outboxService.record(OutboxService.ORDER, order.getId(), OutboxService.PAYMENT_STATUS_CHANGED, event);
+        salesAnalyticsService.recordPaymentStatusChange(order, previousStatus);
+    }
+    
+    /**
+     * Convert a page of orders, loading all of their items in one query instead of one per order
+     */
+    private List<OrderDTO> convertToDTOs(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, List<OrderItem>> itemsByOrder = orderItemRepository
+                .findByOrderIdIn(orders.stream().map(Order::getId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.groupingBy(OrderItem::getOrderId));
+        return orders.stream()
+                .map(order -> convertToDTO(order, itemsByOrder.getOrDefault(order.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
+    
     /**
      * Convert Order entity to DTO
      * UPDATED: Now gets customer info from customer relationship
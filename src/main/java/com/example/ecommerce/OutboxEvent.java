@@ -0,0 +1,51 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Outbox row, written in the same transaction as the change it describes
+// published_at stays null until the relay has handed the event to the broker
+@Entity
+@Table(name = "outbox_events", indexes = @Index(name = "idx_outbox_pending", columnList = "published_at, id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    // identity, not a pooled sequence: ids handed out in blocks per instance would not follow insert order,
+    // and the relay publishes the events of one order by id
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "aggregate_type", nullable = false, length = 50)
+    private String aggregateType;
+
+    @Column(name = "aggregate_id", nullable = false, length = 100)
+    private String aggregateId;
+
+    @Column(name = "event_type", nullable = false, length = 100)
+    private String eventType;
+
+    @Column(name = "payload", columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
+    // set while a relay is publishing the row, a relay that died mid-batch loses its claim when this passes
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.ecommerce;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // oldest first, so events for one order are published in the order they were written
+    List<OutboxEvent> findByPublishedAtIsNullOrderByIdAsc(Pageable pageable);
+
+    long countByPublishedAtIsNull();
+
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e WHERE e.publishedAt IS NULL")
+    LocalDateTime findOldestPendingCreatedAt();
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.publishedAt = :publishedAt, e.claimedUntil = NULL WHERE e.id IN :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("publishedAt") LocalDateTime publishedAt);
+
+    // a relay is still publishing a batch it claimed
+    boolean existsByPublishedAtIsNullAndClaimedUntilAfter(LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.claimedUntil = :claimedUntil WHERE e.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("claimedUntil") LocalDateTime claimedUntil);
+
+    // only one relay claims at a time, together with the claims this keeps per-order ordering across instances
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:lockKey)", nativeQuery = true)
+    boolean tryRelayLock(@Param("lockKey") long lockKey);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.publishedAt < :cutoff")
+    int deletePublishedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
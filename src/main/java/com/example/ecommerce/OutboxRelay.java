@@ -0,0 +1,247 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// Outbox Relay - publishes pending outbox rows to the ecommerce.events topic exchange in batches
+// at-least-once: a row is marked published only after the broker confirms it, consumers dedupe on messageId.
+// A batch is claimed in one short transaction and marked published in another, so no connection is held while
+// waiting for confirms. The claim expires after claim-ttl-ms, which is when a batch of a relay that died is retried.
+// A send the broker refuses outright (connection down) counts as unconfirmed, so its claim is released right away.
+@Component
+@ConditionalOnProperty(name = "outbox.relay.enabled", havingValue = "true")
+@Slf4j
+public class OutboxRelay implements MeterBinder {
+
+    private static final long RELAY_LOCK_KEY = 0x6f7574626f78L; // "outbox"
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String exchange;
+    private final int batchSize;
+    private final long confirmTimeoutMs;
+    private final long claimTtlMs;
+    private final long retentionHours;
+
+    // metrics
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+    private final AtomicLong lagMs = new AtomicLong();
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       RabbitTemplate rabbitTemplate,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${outbox.exchange:ecommerce.events}") String exchange,
+                       @Value("${outbox.relay.batch-size:200}") int batchSize,
+                       @Value("${outbox.relay.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+                       @Value("${outbox.relay.claim-ttl-ms:60000}") long claimTtlMs,
+                       @Value("${outbox.retention-hours:24}") long retentionHours) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.exchange = exchange;
+        this.batchSize = batchSize;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.claimTtlMs = claimTtlMs;
+        this.retentionHours = retentionHours;
+    }
+
+    @Bean
+    TopicExchange eventsExchange() {
+        return new TopicExchange(exchange, true, false);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:500}")
+    public void relay() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> claimBatch());
+        if (batch == null) {
+            return;
+        }
+        if (!batch.isEmpty()) {
+            List<Long> published = publish(batch);
+            Set<Long> confirmed = new HashSet<>(published);
+            List<Long> unpublished = batch.stream()
+                    .map(OutboxEvent::getId)
+                    .filter(id -> !confirmed.contains(id))
+                    .toList();
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!published.isEmpty()) {
+                    outboxEventRepository.markPublished(published, LocalDateTime.now());
+                }
+                if (!unpublished.isEmpty()) {
+                    outboxEventRepository.claim(unpublished, null);
+                }
+            });
+        }
+
+        LocalDateTime oldest = outboxEventRepository.findOldestPendingCreatedAt();
+        lagMs.set(oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis());
+    }
+
+    // null when another relay holds the lock or is still publishing the batch it claimed
+    private List<OutboxEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        if (!outboxEventRepository.tryRelayLock(RELAY_LOCK_KEY)
+                || outboxEventRepository.existsByPublishedAtIsNullAndClaimedUntilAfter(now)) {
+            return null;
+        }
+        List<OutboxEvent> batch = outboxEventRepository.findByPublishedAtIsNullOrderByIdAsc(PageRequest.of(0, batchSize));
+        if (!batch.isEmpty()) {
+            outboxEventRepository.claim(batch.stream().map(OutboxEvent::getId).toList(),
+                    now.plus(Duration.ofMillis(claimTtlMs)));
+        }
+        return batch;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void purgePublished() {
+        int deleted = outboxEventRepository.deletePublishedBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            log.info("Purged {} published outbox events", deleted);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "outbox.events.published", this, r -> r.getPublishedEvents());
+        counter(registry, "outbox.events.failed", this, r -> r.getFailedEvents());
+        Gauge.builder("outbox.events.pending", this, r -> r.getPendingEvents()).register(registry);
+        Gauge.builder("outbox.lag", this, r -> r.getLagMs()).baseUnit("milliseconds").register(registry);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("publishedEvents", publishedEvents.get());
+        snapshot.put("failedEvents", failedEvents.get());
+        snapshot.put("pendingEvents", getPendingEvents());
+        snapshot.put("lagMs", lagMs.get());
+        return snapshot;
+    }
+
+    long getPublishedEvents() {
+        return publishedEvents.get();
+    }
+
+    long getFailedEvents() {
+        return failedEvents.get();
+    }
+
+    // counted when asked (metrics scrape, stats endpoint) instead of on every relay tick, a backlog makes it slow
+    long getPendingEvents() {
+        return outboxEventRepository.countByPublishedAtIsNull();
+    }
+
+    long getLagMs() {
+        return lagMs.get();
+    }
+
+    /**
+     * Sends the batch in rounds of at most one event per aggregate: the next event of an order is only sent once
+     * the broker confirmed the previous one, so a nacked or timed out event holds back the later events of its
+     * order while the other orders go ahead.
+     * @return ids of the confirmed events
+     */
+    List<Long> publish(List<OutboxEvent> batch) {
+        Map<String, Deque<OutboxEvent>> byAggregate = new LinkedHashMap<>();
+        for (OutboxEvent event : batch) {
+            byAggregate.computeIfAbsent(event.getAggregateType() + ":" + event.getAggregateId(),
+                    aggregate -> new ArrayDeque<>()).add(event);
+        }
+
+        List<Long> published = new ArrayList<>(batch.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        while (!byAggregate.isEmpty() && deadline - System.nanoTime() > 0) {
+            Map<String, CorrelationData> round = new LinkedHashMap<>();
+            byAggregate.forEach((aggregate, events) -> {
+                OutboxEvent event = events.peek();
+                CorrelationData correlation = new CorrelationData(String.valueOf(event.getId()));
+                try {
+                    rabbitTemplate.send(exchange, event.getEventType(), toMessage(event), correlation);
+                } catch (AmqpException e) {
+                    log.debug("Outbox relay: could not send event {}: {}", event.getId(), e.getMessage());
+                    correlation.getFuture().complete(new CorrelationData.Confirm(false, e.getMessage()));
+                }
+                round.put(aggregate, correlation);
+            });
+            round.forEach((aggregate, correlation) -> {
+                Deque<OutboxEvent> events = byAggregate.get(aggregate);
+                if (isAcked(correlation, deadline)) {
+                    published.add(events.poll().getId());
+                    if (events.isEmpty()) {
+                        byAggregate.remove(aggregate);
+                    }
+                } else {
+                    byAggregate.remove(aggregate);
+                }
+            });
+        }
+
+        publishedEvents.addAndGet(published.size());
+        int failed = batch.size() - published.size();
+        if (failed > 0) {
+            failedEvents.addAndGet(failed);
+            log.warn("Outbox relay: {} of {} events not confirmed, will retry", failed, batch.size());
+        }
+        return published;
+    }
+
+    private boolean isAcked(CorrelationData correlation, long deadlineNanos) {
+        try {
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            return correlation.getFuture().get(remaining, TimeUnit.NANOSECONDS).isAck();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private Message toMessage(OutboxEvent event) {
+        return MessageBuilder.withBody(event.getPayload().getBytes(StandardCharsets.UTF_8))
+                .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                .setMessageId(String.valueOf(event.getId()))
+                .setType(event.getEventType())
+                .setHeader("aggregateType", event.getAggregateType())
+                .setHeader("aggregateId", event.getAggregateId())
+                .build();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+// Outbox Service - records domain events for downstream systems (fulfilment, analytics, notifications)
+// MANDATORY: the event is only written as part of the caller's transaction, never on its own
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxService {
+
+    public static final String ORDER = "order";
+    public static final String PRODUCT = "product";
+
+    public static final String ORDER_CREATED = "order.created";
+    public static final String PAYMENT_STATUS_CHANGED = "order.payment-status-changed";
+    public static final String STOCK_CHANGED = "product.stock-changed";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String aggregateType, Object aggregateId, String eventType, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setAggregateType(aggregateType);
+        event.setAggregateId(String.valueOf(aggregateId));
+        event.setEventType(eventType);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize " + eventType + " event", e);
+        }
+        outboxEventRepository.save(event);
+    }
+}
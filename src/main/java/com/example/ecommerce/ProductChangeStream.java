@@ -0,0 +1,341 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// Product Change Stream - pushes price and stock changes to the storefront over server-sent events
+// (GET /api/products/stream), so pages no longer re-fetch the whole catalog to notice them.
+// Changes are published when the writing transaction commits. Every client has a pending map keyed by product id:
+// a burst of changes to one product collapses into its latest state, sent coalesce-ms after the first change
+// as one "products" event. A client whose pending map outgrows max-pending is not keeping up and is disconnected,
+// EventSource reconnects by itself. Sends block on the client socket, so they run on a fixed pool of writer-threads,
+// never on the request that changed the product nor on the timer thread. A client gets one send at a time; one whose
+// send has been blocked for longer than write-timeout-ms is disconnected at its next flush or heartbeat. Its emitter
+// is completed by the send itself once the container's write timeout fails it, so a stalled client holds at most one
+// writer thread and the pool never grows with the number of clients.
+@Component
+@Slf4j
+public class ProductChangeStream implements DisposableBean, MeterBinder {
+
+    static final String EVENT = "products";
+
+    private final ObjectMapper objectMapper;
+    private final long coalesceMs;
+    private final int maxPending;
+    private final int maxSubscribers;
+    private final long timeoutMs;
+    private final long writeTimeoutNanos;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService writers;
+
+    // metrics
+    private final AtomicLong sentEvents = new AtomicLong();
+    private final AtomicLong droppedSubscribers = new AtomicLong();
+
+    public ProductChangeStream(ObjectMapper objectMapper,
+                               @Value("${products.stream.coalesce-ms:250}") long coalesceMs,
+                               @Value("${products.stream.max-pending:500}") int maxPending,
+                               @Value("${products.stream.max-subscribers:2000}") int maxSubscribers,
+                               @Value("${products.stream.timeout-ms:1800000}") long timeoutMs,
+                               @Value("${products.stream.heartbeat-ms:25000}") long heartbeatMs,
+                               @Value("${products.stream.write-timeout-ms:10000}") long writeTimeoutMs,
+                               @Value("${products.stream.writer-threads:16}") int writerThreads) {
+        this.objectMapper = objectMapper;
+        this.coalesceMs = coalesceMs;
+        this.maxPending = maxPending;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMs = timeoutMs;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-stream-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threads = new AtomicInteger();
+        // queued sends are bounded by the subscribers, each has at most one pending
+        ThreadPoolExecutor writers = new ThreadPoolExecutor(writerThreads, writerThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "product-stream-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        writers.allowCoreThreadTimeOut(true);
+        this.writers = writers;
+        // keeps idle connections open through proxies and notices clients that went away
+        timer.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * New client for the given categories (empty: all products), null when max-subscribers are connected
+     */
+    public SseEmitter subscribe(Collection<String> categories) {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+        return subscribe(new SseEmitter(timeoutMs), categories);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, Collection<String> categories) {
+        Subscriber subscriber = new Subscriber(emitter, categories == null ? Set.of() : categories.stream()
+                .map(category -> category.strip().toLowerCase(Locale.ROOT))
+                .filter(category -> !category.isEmpty())
+                .collect(Collectors.toSet()));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        try {
+            // flushes the response headers right away, and tells EventSource how soon to reconnect
+            emitter.send(SseEmitter.event().reconnectTime(3000).comment("connected"));
+        } catch (IOException | IllegalStateException e) {
+            subscriber.close();
+        }
+        return emitter;
+    }
+
+    /**
+     * Sends the product's current price and stock to subscribers once the current transaction commits
+     */
+    public void publish(Products product) {
+        ProductChange change = new ProductChange(product.getId(), product.getCategory(), product.getPrice(),
+                product.getStockQuantity(), product.getStockStatus(), !Boolean.FALSE.equals(product.getIsActive()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fanOut(change);
+                }
+            });
+        } else {
+            fanOut(change);
+        }
+    }
+
+    void fanOut(ProductChange change) {
+        String category = change.category() == null ? null : change.category().toLowerCase(Locale.ROOT);
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.categories.isEmpty() || subscriber.categories.contains(category)) {
+                subscriber.offer(change);
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            // a client with a send still running needs no keep-alive
+            if (subscriber.startSend()) {
+                subscriber.write(SseEmitter.event().comment("keep-alive"), false);
+            }
+        }
+    }
+
+    // connected clients, events sent, clients dropped as too slow
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("products.stream.subscribers", this, s -> s.getSubscribers()).register(registry);
+        counter(registry, "products.stream.events", this, s -> s.getSentEvents());
+        counter(registry, "products.stream.dropped", this, s -> s.getDroppedSubscribers());
+    }
+
+    public int getSubscribers() {
+        return subscribers.size();
+    }
+
+    public long getSentEvents() {
+        return sentEvents.get();
+    }
+
+    public long getDroppedSubscribers() {
+        return droppedSubscribers.get();
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+        writers.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private class Subscriber {
+
+        final SseEmitter emitter;
+        final Set<String> categories;
+        // latest change per product not sent yet, guarded by this
+        private final Map<Long, ProductChange> pending = new LinkedHashMap<>();
+        private boolean sendScheduled;
+        // written under this, read by the writer finishing a send
+        private volatile boolean closed;
+        // System.nanoTime() when the running send started, 0 while none is running
+        private final AtomicLong sendingSince = new AtomicLong();
+
+        Subscriber(SseEmitter emitter, Set<String> categories) {
+            this.emitter = emitter;
+            this.categories = categories;
+        }
+
+        void offer(ProductChange change) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                pending.put(change.id(), change);
+                if (pending.size() <= maxPending) {
+                    scheduleFlush();
+                    return;
+                }
+            }
+            droppedSubscribers.incrementAndGet();
+            log.debug("Dropping product stream client with {} unsent changes", maxPending);
+            close();
+        }
+
+        // guarded by this
+        private void scheduleFlush() {
+            if (!sendScheduled) {
+                sendScheduled = true;
+                timer.schedule(this::flush, coalesceMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void flush() {
+            synchronized (this) {
+                sendScheduled = false;
+                if (closed || pending.isEmpty()) {
+                    return;
+                }
+            }
+            if (!startSend()) {
+                // the previous send is still running, its changes go out after it
+                synchronized (this) {
+                    if (!closed) {
+                        scheduleFlush();
+                    }
+                }
+                return;
+            }
+            List<ProductChange> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            try {
+                write(SseEmitter.event().name(EVENT)
+                        .data(objectMapper.writeValueAsString(batch), MediaType.APPLICATION_JSON), true);
+            } catch (JsonProcessingException e) {
+                sendingSince.set(0);
+                log.warn("Could not serialize product changes: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * Claims the client's single send slot. False while a send is running; a client whose send has been
+         * blocked for more than write-timeout-ms is disconnected
+         */
+        boolean startSend() {
+            long now = System.nanoTime();
+            if (sendingSince.compareAndSet(0, now == 0 ? 1 : now)) {
+                return true;
+            }
+            long since = sendingSince.get();
+            if (since != 0 && now - since > writeTimeoutNanos) {
+                droppedSubscribers.incrementAndGet();
+                log.debug("Dropping product stream client, send blocked for {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(now - since));
+                close();
+            }
+            return false;
+        }
+
+        // after startSend, releases the send slot when done
+        void write(SseEmitter.SseEventBuilder event, boolean changes) {
+            try {
+                writers.execute(() -> {
+                    try {
+                        emitter.send(event);
+                        if (changes) {
+                            sentEvents.incrementAndGet();
+                        }
+                    } catch (IOException | IllegalStateException e) {
+                        close();
+                    } finally {
+                        sendingSince.set(0);
+                        // closed while this send was blocked, close() left completing the emitter to it
+                        if (closed) {
+                            complete();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                sendingSince.set(0);
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                pending.clear();
+            }
+            subscribers.remove(this);
+            // complete() waits for a send still blocked on the client, so that send completes the emitter when it
+            // returns instead of a second writer thread blocking behind it. Never on the timer thread.
+            if (sendingSince.get() != 0) {
+                return;
+            }
+            try {
+                writers.execute(this::complete);
+            } catch (RejectedExecutionException e) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                // already completed
+            }
+        }
+    }
+}
+
+// what the storefront needs to update a product card, active=false once the product is deleted
+record ProductChange(Long id, String category, BigDecimal price, Integer stockQuantity, String stockStatus,
+                     boolean active) {
+}
@@ -4,9 +4,12 @@ package com.example.ecommerce;
 import jakarta.validation.Valid;//Validating objects passed in the request body
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;//loging messages and errors
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;//used to build http response allowing one to set OK 200
 import org.springframework.web.bind.annotation.*;//brings all core annota,,,, for creating rest controllers below
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -22,6 +25,8 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductImageService productImageService;
+    private final ProductChangeStream productChangeStream;
     
     // GET /api/products  Returns all products for frontend grid
    @GetMapping
@@ -30,7 +35,7 @@ public class ProductController {
             @RequestParam(required = false) String search) {
         
         try {
-            log.info("GET /api/products - categoryId: {}, search: {}", categoryId, search);
+            log.debug("GET /api/products - categoryId: {}, search: {}", categoryId, search);
             
             List<ProductDTO> products;
             
@@ -48,7 +53,7 @@ public class ProductController {
                 products = productService.getAllActiveProducts();
             }
             
-            log.info("Found {} products", products.size());
+            log.debug("Found {} products", products.size());
             
             return ResponseEntity.ok(
     ApiResponse.success("Products retrieved successfully", products)
@@ -75,6 +80,18 @@ public class ProductController {
         }
     }
     
+    // GET /api/products/stream?category=Phones,Audio  Live price/stock changes as server-sent events ("products":
+    // a JSON array of {id, category, price, stockQuantity, stockStatus, active}), all categories without the parameter
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamProductChanges(@RequestParam(required = false) List<String> category) {
+        SseEmitter emitter = productChangeStream.subscribe(category);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+        // no buffering in nginx-style proxies
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+    }
+    
     // GET /api/products/(id)  For individual product details
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<ProductDTO>> getProductById(@PathVariable Long id) {
@@ -134,6 +151,7 @@ public class ProductController {
     public ResponseEntity<ApiResponse<ProductDTO>> createProduct(@Valid @RequestBody ProductDTO productDTO) {
         try {
             ProductDTO createdProduct = productService.createProduct(productDTO);
+            productImageService.prefetch(createdProduct);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(ApiResponse.success("Product created successfully", createdProduct));
         } catch (Exception e) {
@@ -149,6 +167,7 @@ public class ProductController {
             @PathVariable Long id, @Valid @RequestBody ProductDTO productDTO) {
         try {
             ProductDTO updatedProduct = productService.updateProduct(id, productDTO);
+            productImageService.prefetch(updatedProduct);
             return ResponseEntity.ok(ApiResponse.success("Product updated successfully", updatedProduct));
         } catch (RuntimeException e) {
             log.error("Error updating product with id: {}", id, e);
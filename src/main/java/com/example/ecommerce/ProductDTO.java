@@ -31,6 +31,10 @@ public class ProductDTO {
     private String category;
     
     private String imageUrl;
+    // resized variants of imageUrl served by ProductImageController, null for remote images
+    private String thumbnailUrl;
+    private String cardUrl;
+    private String detailUrl;
     
     @Min(value = 0, message = "Stock quantity cannot be negative")
     private Integer stockQuantity;
@@ -227,4 +231,20 @@ class UpdateOrderStatusRequest {
     private String intasendCheckoutId;
     private String intasendTrackingId;
     private String paymentStatus;
-}
\ No newline at end of file
+}
+// Review Request - POST /api/products/{productId}/reviews
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+class ReviewRequest {
+    @NotNull(message = "Rating is required")
+    @Min(value = 1, message = "Rating must be at least 1")
+    @Max(value = 5, message = "Rating cannot exceed 5")
+    private Integer rating;
+
+    @Size(max = 100, message = "Name cannot exceed 100 characters")
+    private String reviewerName;
+
+    @Size(max = 2000, message = "Review cannot exceed 2000 characters")
+    private String comment;
+}
@@ -0,0 +1,628 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.Globals;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UriUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.example.ecommerce.ApplicationMetrics.cache;
+
+// Product Image Service - resized variants of Products.imageUrl, generated with ImageIO/Java2D
+// Variants are made on first request (or right after a product is saved) and kept in a size-bounded
+// on-disk cache. URLs carry a version hashed from imageUrl and the original's size and modification time, so a
+// changed image gets new URLs, even when the file is replaced at the same path, and old ones can be cached forever.
+// The original is checked again at most every version-check-ms.
+// A decoded original takes width x height x 4 bytes of heap, so at most max-concurrent-decodes are decoded at once;
+// a request finding them all busy is redirected to the original, prefetch waits its turn.
+@Service
+@Slf4j
+public class ProductImageService implements MeterBinder {
+
+    private final ProductsRepository productsRepository;
+    private final DiskImageCache cache;
+    private final Path originalsDir;
+    private final AsyncTaskExecutor executor;
+    private final long versionCheckNanos;
+    private final Semaphore decodes;
+    private final Map<String, CompletableFuture<Optional<Path>>> inFlight = new ConcurrentHashMap<>();
+    // imageUrl -> version of the original as last checked
+    private final Map<String, SourceVersion> versions = new ConcurrentHashMap<>();
+    // versions whose original could not be decoded, so a broken image is not re-read on every grid load.
+    // Replacing the file changes the version, which retries it
+    private final Set<String> undecodable = ConcurrentHashMap.newKeySet();
+
+    public ProductImageService(ProductsRepository productsRepository,
+                               @Qualifier("applicationTaskExecutor") AsyncTaskExecutor executor,
+                               @Value("${image.variants.cache-dir:${java.io.tmpdir}/ecommerce-image-variants}") Path cacheDir,
+                               @Value("${image.variants.cache-max-mb:512}") long cacheMaxMb,
+                               @Value("${image.variants.originals-dir:}") String originalsDir,
+                               @Value("${image.variants.version-check-ms:30000}") long versionCheckMs,
+                               @Value("${image.variants.max-concurrent-decodes:2}") int maxConcurrentDecodes) throws IOException {
+        this.productsRepository = productsRepository;
+        this.executor = executor;
+        this.cache = new DiskImageCache(cacheDir, cacheMaxMb * 1024 * 1024);
+        this.originalsDir = originalsDir.isBlank() ? null : Path.of(originalsDir);
+        this.versionCheckNanos = TimeUnit.MILLISECONDS.toNanos(versionCheckMs);
+        this.decodes = new Semaphore(maxConcurrentDecodes);
+    }
+
+    /**
+     * Sets thumbnailUrl/cardUrl/detailUrl, left null when there is no local image to resize
+     */
+    void applyVariantUrls(ProductDTO dto) {
+        if (dto.getId() == null || !isLocal(dto.getImageUrl())) {
+            return;
+        }
+        String version = version(dto.getImageUrl());
+        dto.setThumbnailUrl(variantUrl(dto.getId(), ImageVariant.THUMBNAIL, version));
+        dto.setCardUrl(variantUrl(dto.getId(), ImageVariant.CARD, version));
+        dto.setDetailUrl(variantUrl(dto.getId(), ImageVariant.DETAIL, version));
+    }
+
+    static String variantUrl(Long productId, ImageVariant variant, String version) {
+        return "/api/products/" + productId + "/images/" + variant.path() + "?v=" + version;
+    }
+
+    /**
+     * The cached variant file for a product, generating it on a miss. Empty if the product has no
+     * local image, the original cannot be decoded or all decode slots are taken.
+     */
+    public Optional<ImageFile> getVariant(Long productId, ImageVariant variant) {
+        return productsRepository.findById(productId)
+                .map(Products::getImageUrl)
+                .filter(ProductImageService::isLocal)
+                .flatMap(imageUrl -> variantFile(imageUrl, variant, false)
+                        .map(path -> new ImageFile(path, version(imageUrl))));
+    }
+
+    /**
+     * URL of the local original, for redirecting when no variant can be made
+     */
+    public Optional<String> getOriginalUrl(Long productId) {
+        return productsRepository.findById(productId)
+                .map(Products::getImageUrl)
+                .filter(ProductImageService::isLocal)
+                .map(imageUrl -> "/" + UriUtils.encodePath(normalize(imageUrl), StandardCharsets.UTF_8));
+    }
+
+    // generate all variants in the background after a product is created or its image changes
+    public void prefetch(ProductDTO product) {
+        if (product == null || !isLocal(product.getImageUrl())) {
+            return;
+        }
+        String imageUrl = product.getImageUrl();
+        executor.execute(() -> {
+            for (ImageVariant variant : ImageVariant.values()) {
+                variantFile(imageUrl, variant, true);
+            }
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache(registry, "image.variants", this, s -> s.getCacheHits(), s -> s.getCacheMisses(), s -> s.getCacheSize());
+        Gauge.builder("image.variants.cache.bytes", this, s -> s.getCacheBytes())
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    long getCacheBytes() {
+        return cache.getTotalBytes();
+    }
+
+    int getCacheSize() {
+        return cache.size();
+    }
+
+    long getCacheHits() {
+        return cache.getHits();
+    }
+
+    long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    private Optional<Path> variantFile(String imageUrl, ImageVariant variant, boolean waitForDecode) {
+        String version = version(imageUrl);
+        String key = version + "-" + variant.path();
+        Optional<Path> cached = cache.get(key);
+        if (cached.isPresent() || undecodable.contains(version)) {
+            return cached;
+        }
+        // one thread resizes, concurrent requests for the same variant wait for its result
+        CompletableFuture<Optional<Path>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<Path>> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            Optional<Path> generated;
+            if (!acquireDecode(waitForDecode)) {
+                log.debug("No decode slot free for {} variant of {}", variant.path(), imageUrl);
+                generated = Optional.empty();
+            } else {
+                try {
+                    generated = generate(imageUrl, version, variant, key);
+                } finally {
+                    decodes.release();
+                }
+            }
+            mine.complete(generated);
+            return generated;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    private boolean acquireDecode(boolean wait) {
+        if (!wait) {
+            return decodes.tryAcquire();
+        }
+        try {
+            decodes.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Optional<Path> generate(String imageUrl, String version, ImageVariant variant, String key) {
+        Resource source = original(imageUrl);
+        BufferedImage original;
+        try (InputStream in = source != null ? source.getInputStream() : null) {
+            original = in != null ? ImageIO.read(in) : null;
+        } catch (IOException e) {
+            log.warn("Could not read product image {}: {}", imageUrl, e.getMessage());
+            return Optional.empty();
+        }
+        if (original == null) {
+            log.debug("Product image {} is missing or not a decodable image", imageUrl);
+            undecodable.add(version);
+            return Optional.empty();
+        }
+
+        BufferedImage resized = resize(original, variant.maxWidth);
+        boolean alpha = resized.getColorModel().hasAlpha();
+        try {
+            Path file = cache.put(key + (alpha ? ".png" : ".jpg"), out -> write(resized, alpha, out));
+            log.debug("Generated {} variant of {} ({}x{})", variant.path(), imageUrl, resized.getWidth(), resized.getHeight());
+            return Optional.of(file);
+        } catch (IOException e) {
+            log.warn("Could not store {} variant of {}: {}", variant.path(), imageUrl, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // the original in originals-dir, else in static/ on the classpath; null when neither exists
+    private Resource original(String imageUrl) {
+        String path = normalize(imageUrl);
+        if (originalsDir != null) {
+            Path file = originalsDir.resolve(path.startsWith("images/") ? path.substring("images/".length()) : path).normalize();
+            if (file.startsWith(originalsDir) && Files.isRegularFile(file)) {
+                return new FileSystemResource(file);
+            }
+        }
+        Resource resource = new ClassPathResource("static/" + path);
+        return resource.exists() ? resource : null;
+    }
+
+    // never upscales; halves with bilinear first so large originals do not alias, then one final step
+    static BufferedImage resize(BufferedImage source, int maxWidth) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int targetWidth = Math.min(maxWidth, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, width, height, null);
+            g.dispose();
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static void write(BufferedImage image, boolean alpha, OutputStream out) throws IOException {
+        if (alpha) {
+            ImageIO.write(image, "png", out);
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.82f);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // remote images are left to the browser, we do not fetch arbitrary URLs server side
+    static boolean isLocal(String imageUrl) {
+        if (imageUrl == null || imageUrl.isBlank()) {
+            return false;
+        }
+        String lower = imageUrl.toLowerCase(Locale.ROOT);
+        return !lower.startsWith("http:") && !lower.startsWith("https:") && !lower.startsWith("//")
+                && !lower.startsWith("data:") && !imageUrl.contains("..") && !imageUrl.contains(":\\");
+    }
+
+    // "/images/a.jpg", "images/a.jpg" and "static/images/a.jpg" all point at static/images/a.jpg
+    private static String normalize(String imageUrl) {
+        String path = imageUrl.replace('\\', '/');
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path.startsWith("static/") ? path.substring("static/".length()) : path;
+    }
+
+    String version(String imageUrl) {
+        long now = System.nanoTime();
+        SourceVersion known = versions.get(imageUrl);
+        if (known != null && now - known.checkedAt() < versionCheckNanos) {
+            return known.version();
+        }
+        String version = version(imageUrl, original(imageUrl));
+        versions.put(imageUrl, new SourceVersion(version, now));
+        return version;
+    }
+
+    // size and modification time stand in for the content, reading every original to hash it would be too slow
+    static String version(String imageUrl, Resource original) {
+        String stamp = imageUrl;
+        if (original != null) {
+            try {
+                stamp += "|" + original.contentLength() + "|" + original.lastModified();
+            } catch (IOException e) {
+                log.debug("Could not stat product image {}: {}", imageUrl, e.getMessage());
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(stamp.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record SourceVersion(String version, long checkedAt) {
+    }
+
+    record ImageFile(Path path, String version) {
+
+        MediaType contentType() {
+            return path.getFileName().toString().endsWith(".png") ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG;
+        }
+    }
+}
+
+enum ImageVariant {
+    THUMBNAIL(160),
+    CARD(480),
+    DETAIL(1200);
+
+    final int maxWidth;
+
+    ImageVariant(int maxWidth) {
+        this.maxWidth = maxWidth;
+    }
+
+    String path() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static Optional<ImageVariant> fromPath(String path) {
+        for (ImageVariant variant : values()) {
+            if (variant.path().equals(path)) {
+                return Optional.of(variant);
+            }
+        }
+        return Optional.empty();
+    }
+}
+
+// Size-bounded directory of generated variants, least recently served files are evicted first
+// Index lives in memory and is rebuilt from the directory (oldest mtime first) on startup.
+// The lock only guards the index, files are deleted outside it. An evicted file may just have been handed to a
+// request that has not opened it yet (sendfile opens it after the controller returns), so it is only deleted
+// delete-delay after its eviction, unless it was generated again meanwhile.
+@Slf4j
+class DiskImageCache {
+
+    static final long DELETE_DELAY_MS = 60_000;
+
+    interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long deleteDelayNanos;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, String> fileNames = new ConcurrentHashMap<>();
+    // evicted files not deleted yet, oldest first, guarded by this
+    private final Deque<Evicted> evicted = new ArrayDeque<>();
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    DiskImageCache(Path dir, long maxBytes) throws IOException {
+        this(dir, maxBytes, DELETE_DELAY_MS);
+    }
+
+    DiskImageCache(Path dir, long maxBytes, long deleteDelayMs) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.deleteDelayNanos = TimeUnit.MILLISECONDS.toNanos(deleteDelayMs);
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparingLong(DiskImageCache::lastModified))
+                    .forEach(file -> index(file.getFileName().toString(), size(file)));
+        }
+        long now = System.nanoTime();
+        evict(now);
+        // nothing is being served yet
+        deleteEvicted(now + deleteDelayNanos);
+        log.info("Image variant cache at {}: {} files, {} KB of {} MB", dir, entries.size(), totalBytes / 1024, maxBytes / (1024 * 1024));
+    }
+
+    // key is the file name without extension
+    Optional<Path> get(String key) {
+        String fileName = fileNames.get(key);
+        synchronized (this) {
+            if (fileName == null || entries.get(fileName) == null) {
+                misses++;
+                return Optional.empty();
+            }
+            hits++;
+        }
+        Path file = dir.resolve(fileName);
+        return Files.exists(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    // write to a temp file first so readers never see a half-written image
+    Path put(String fileName, Writer writer) throws IOException {
+        Path target = dir.resolve(fileName);
+        Path tmp = Files.createTempFile(dir, fileName, ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writer.write(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long size = size(target);
+        long now = System.nanoTime();
+        synchronized (this) {
+            index(fileName, size);
+            evict(now);
+        }
+        deleteEvicted(now);
+        return target;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    private void index(String fileName, long size) {
+        Long previous = entries.put(fileName, size);
+        totalBytes += size - (previous != null ? previous : 0);
+        fileNames.put(stripExtension(fileName), fileName);
+    }
+
+    // guarded by this, only drops index entries
+    private void evict(long now) {
+        var eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            totalBytes -= entry.getValue();
+            fileNames.remove(stripExtension(entry.getKey()), entry.getKey());
+            evicted.add(new Evicted(entry.getKey(), now));
+            eldest.remove();
+        }
+    }
+
+    // deletes the files evicted at least delete-delay before now, called without holding the lock
+    void deleteEvicted(long now) {
+        List<String> due = new ArrayList<>();
+        synchronized (this) {
+            while (!evicted.isEmpty() && now - evicted.peek().evictedAt() >= deleteDelayNanos) {
+                String fileName = evicted.poll().fileName();
+                if (!entries.containsKey(fileName)) {
+                    due.add(fileName);
+                }
+            }
+        }
+        for (String fileName : due) {
+            try {
+                Files.deleteIfExists(dir.resolve(fileName));
+            } catch (IOException e) {
+                log.warn("Could not delete evicted image variant {}: {}", fileName, e.getMessage());
+            }
+        }
+    }
+
+    private record Evicted(String fileName, long evictedAt) {
+    }
+
+    private static String stripExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? fileName : fileName.substring(0, dot);
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
+
+// GET /api/products/{id}/images/{variant} - thumbnail | card | detail
+// On Tomcat the file is handed to the connector's sendfile (zero-copy), otherwise FileChannel.transferTo
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@CrossOrigin(origins = "*")
+@Slf4j
+class ProductImageController {
+
+    static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    static final CacheControl STALE_VERSION = CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic();
+
+    private final ProductImageService productImageService;
+
+    ProductImageController(ProductImageService productImageService) {
+        this.productImageService = productImageService;
+    }
+
+    @GetMapping("/api/products/{id}/images/{variant}")
+    public void getImage(@PathVariable Long id,
+                         @PathVariable String variant,
+                         @RequestParam(name = "v", required = false) String version,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Optional<ImageVariant> imageVariant = ImageVariant.fromPath(variant);
+        if (imageVariant.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        Optional<ProductImageService.ImageFile> image = productImageService.getVariant(id, imageVariant.get());
+        if (image.isEmpty()) {
+            // nothing we can resize (remote URL, missing or broken file), let the browser load the original
+            Optional<String> original = productImageService.getOriginalUrl(id);
+            if (original.isPresent()) {
+                response.sendRedirect(original.get());
+            } else {
+                response.sendError(HttpStatus.NOT_FOUND.value());
+            }
+            return;
+        }
+
+        ProductImageService.ImageFile file = image.get();
+        // a stale ?v= still gets the current image, just not cached for long
+        response.setHeader(HttpHeaders.CACHE_CONTROL, file.version().equals(version)
+                ? IMMUTABLE.getHeaderValue()
+                : STALE_VERSION.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + file.version() + "-" + variant + "\"")) {
+            return;
+        }
+
+        long length = Files.size(file.path());
+        response.setContentType(file.contentType().toString());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+            request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, file.path().toAbsolutePath().toString());
+            request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, 0L);
+            request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < length) {
+                position += channel.transferTo(position, length - position, out);
+            }
+        }
+    }
+}
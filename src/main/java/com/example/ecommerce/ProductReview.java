@@ -0,0 +1,43 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One customer review of a product. Products.rating/ratingCount are derived from these by ReviewService
+@Entity
+@Table(name = "product_reviews",
+        indexes = @Index(name = "idx_product_reviews_product", columnList = "product_id, created_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductReview {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "reviewer_name", length = 100)
+    private String reviewerName;
+
+    // 1 to 5 stars
+    @Column(nullable = false)
+    private Integer rating;
+
+    @Column(columnDefinition = "TEXT")
+    private String comment;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.ecommerce;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductReviewRepository extends JpaRepository<ProductReview, Long> {
+
+    List<ProductReview> findByProductIdOrderByCreatedAtDesc(Long productId, Limit limit);
+
+    // star sum and review count per product, products without reviews are left out
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.example.ecommerce.RatingTotal(r.productId, SUM(r.rating), COUNT(r)) "
+            + "FROM ProductReview r WHERE r.productId IN :productIds GROUP BY r.productId")
+    List<RatingTotal> totalsFor(@Param("productIds") Collection<Long> productIds);
+}
@@ -1,62 +1,122 @@
 package com.example.ecommerce;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.client.RestTemplate;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
 // Product Service  This is the ONLY public class in this file
 //handles all business logic related to products, acting as the intermediary between the controller/client and the ProductsRepository (database)
 @Service
 @RequiredArgsConstructor
 @Slf4j
 @Transactional(readOnly = true)
-public class ProductService {
+public class ProductService implements MeterBinder {
     
     private final ProductsRepository productsRepository;
+    private final ProductChangeStream productChangeStream;
+
+    static final int FEATURED_PRODUCTS = 12;
+    // how long a coalesced caller waits for the query it joined before failing
+    static final long LISTING_QUERY_TIMEOUT_MS = 10_000;
+
+    private final SingleFlight<String, List<ProductDTO>> listingQueries = new SingleFlight<>(LISTING_QUERY_TIMEOUT_MS);
+    
+    // sets the resized image URLs; not there in slice tests and benchmarks, whose DTOs only carry imageUrl
+    @Autowired(required = false)
+    private ProductImageService productImageService;
     
+    // listing reads go through ProductListing projections, see ProductsRepository
     public List<ProductDTO> getAllActiveProducts() {
-        return productsRepository.findByIsActiveTrue()
+        return productsRepository.findActiveListings()
                 .stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
     
-    public List<ProductDTO> getProductsByCategory(String category) {
-        return productsRepository.findByCategoryAndIsActiveTrue(category)
+    // first pageSize rows of the grid and the size of the whole of it, without loading the rest
+    public ProductPage getActiveProductsPage(int pageSize) {
+        List<ProductDTO> items = productsRepository.findActiveListings(Limit.of(pageSize))
                 .stream()
                 .map(this::convertToDTO)
-                .collect(Collectors.toList());
+                .toList();
+        long total = productsRepository.countActive();
+        return new ProductPage(items, (int) total, total > items.size());
     }
+    
+    // Category and search listings are coalesced: identical concurrent requests share one query (SingleFlight).
+    // Every query has its own key prefix, the terms are user input and may contain the separator.
+    // They run outside the service transaction so waiting callers do not each hold a connection,
+    // the repository query opens its own read-only one.
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<ProductDTO> getProductsByCategory(String category) {
+        return coalesced("category:" + category, () -> productsRepository.findListingsByCategory(category));
+    }
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<ProductDTO> getProductsByCategoryId(Long categoryId) {
-        log.info("Fetching products for category ID: {}", categoryId);
-        return productsRepository.findByCategoryIdAndIsActiveTrue(categoryId)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        log.debug("Fetching products for category ID: {}", categoryId);
+        return coalesced("categoryId:" + categoryId, () -> productsRepository.findListingsByCategoryId(categoryId));
     }
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<ProductDTO> searchProducts(String searchTerm) {
-        return productsRepository.searchProducts(searchTerm)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        // the query compares lower-cased, so differently cased terms are the same query
+        return coalesced("search:" + normalize(searchTerm), () -> productsRepository.searchListings(searchTerm));
     }
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<ProductDTO> searchProductsInCategory(String searchTerm, Long categoryId) {
-        log.info("Searching for '{}' in category ID: {}", searchTerm, categoryId);
-        return productsRepository.searchProductsInCategory(searchTerm, categoryId)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        log.debug("Searching for '{}' in category ID: {}", searchTerm, categoryId);
+        return coalesced("searchInCategory:" + categoryId + ":" + normalize(searchTerm),
+                () -> productsRepository.searchListingsInCategory(searchTerm, categoryId));
+    }
+
+    private List<ProductDTO> coalesced(String key, Supplier<List<ProductListing>> query) {
+        Supplier<List<ProductDTO>> load = () -> query.get().stream().map(this::convertToDTO).toList();
+        // inside a caller's transaction the result may depend on its uncommitted writes, never share it
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return load.get();
+        }
+        return listingQueries.execute(key, load);
+    }
+
+    private static String normalize(String searchTerm) {
+        return searchTerm == null ? "" : searchTerm.toLowerCase(Locale.ROOT);
+    }
+
+    // listing queries run vs. callers that shared a running one (DB calls saved)
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "products.listing.queries", this, s -> s.getExecutedQueries(), "result", "executed");
+        counter(registry, "products.listing.queries", this, s -> s.getCoalescedQueries(), "result", "coalesced");
+    }
+
+    public long getCoalescedQueries() {
+        return listingQueries.getShared();
+    }
+
+    public long getExecutedQueries() {
+        return listingQueries.getExecuted();
     }
     
     public Optional<ProductDTO> getProductById(Long id) {
@@ -66,9 +126,8 @@ public class ProductService {
     }
     
     public List<ProductDTO> getFeaturedProducts() {
-        return productsRepository.findFeaturedProducts()
+        return productsRepository.findFeaturedListings(Limit.of(FEATURED_PRODUCTS))
                 .stream()
-                .limit(12)
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
@@ -91,6 +150,7 @@ public class ProductService {
                 .map(existingProduct -> {
                     updateProductFields(existingProduct, productDTO);
                     Products savedProduct = productsRepository.save(existingProduct);
+                    productChangeStream.publish(savedProduct);
                     log.info("Updated product: {}", savedProduct.getName());
                     return convertToDTO(savedProduct);
                 })
@@ -103,6 +163,7 @@ public class ProductService {
                 .ifPresentOrElse(product -> {
                     product.setIsActive(false);
                     productsRepository.save(product);
+                    productChangeStream.publish(product);
                     log.info("Deactivated product: {}", product.getName());
                 }, () -> {
                     throw new RuntimeException("Product not found with id: " + id);
@@ -119,13 +180,37 @@ public class ProductService {
         dto.setCategory(product.getCategory());
         dto.setImageUrl(product.getImageUrl());
         dto.setStockQuantity(product.getStockQuantity());
+        dto.setStockStatus(product.getStockStatus());
         dto.setIsActive(product.getIsActive());
         
         dto.setCreatedAt(product.getCreatedAt());
         dto.setUpdatedAt(product.getUpdatedAt());
+        applyVariantUrls(dto);
         return dto;
     }
     
+    // grid card: no description or timestamps, listings only ever hold active products
+    ProductDTO convertToDTO(ProductListing listing) {
+        ProductDTO dto = new ProductDTO();
+        dto.setId(listing.id());
+        dto.setName(listing.name());
+        dto.setPrice(listing.price());
+        dto.setOldPrice(listing.oldPrice());
+        dto.setCategory(listing.category());
+        dto.setImageUrl(listing.imageUrl());
+        dto.setStockQuantity(listing.stockQuantity());
+        dto.setStockStatus(listing.stockStatus());
+        dto.setIsActive(true);
+        applyVariantUrls(dto);
+        return dto;
+    }
+    
+    private void applyVariantUrls(ProductDTO dto) {
+        if (productImageService != null) {
+            productImageService.applyVariantUrls(dto);
+        }
+    }
+    
     private Products convertToEntity(ProductDTO dto) {
         Products product = new Products();
         product.setName(dto.getName());
@@ -167,6 +252,7 @@ class CartService {
     private final CartItemRepository cartItemRepository;
     private final ProductsRepository productsRepository;
     private final ProductService productService;
+    private final ReadYourWrites readYourWrites;
 
     // it defines the scope of a single database transaction , ensures the acid properyt of database
     @Transactional
@@ -203,7 +289,7 @@ class CartService {
             cartItem.setPrice(product.getPrice());
             cartItem.setUpdatedAt(java.time.LocalDateTime.now());
             cartItemRepository.save(cartItem);
-            log.info("Updated cart item quantity for product: {}", product.getName());
+            log.debug("Updated cart item quantity for product: {}", product.getName());
         } else {
             CartItem cartItem = new CartItem();
             cartItem.setCart(cart);
@@ -213,13 +299,15 @@ class CartService {
             cartItem.setCreatedAt(java.time.LocalDateTime.now());
             cartItem.setUpdatedAt(java.time.LocalDateTime.now());
             cartItemRepository.save(cartItem);
-            log.info("Added new item to cart: {}", product.getName());
+            log.debug("Added new item to cart: {}", product.getName());
         }
+        readYourWrites.recordWrite(request.getSessionId());
         
         return getCartBySessionId(request.getSessionId());
     }
     
     public CartDTO getCartBySessionId(String sessionId) {
+        readYourWrites.readFor(sessionId);
         Optional<Cart> cart = cartRepository.findBySessionId(sessionId);
         return cart.map(this::convertToDTO).orElse(createEmptyCart(sessionId));
     }
@@ -236,15 +324,17 @@ class CartService {
         
         cartItem.setQuantity(request.getQuantity());
         cartItemRepository.save(cartItem);
+        readYourWrites.recordWrite(cartItem.getCart().getSessionId());
         
-        log.info("Updated cart item quantity: {}", request.getQuantity());
+        log.debug("Updated cart item quantity: {}", request.getQuantity());
         return convertToDTO(cartItem.getCart());
     }
     
     @Transactional
     public CartDTO removeCartItem(Long cartItemId, String sessionId) {
         cartItemRepository.deleteById(cartItemId);
-        log.info("Removed cart item: {}", cartItemId);
+        readYourWrites.recordWrite(sessionId);
+        log.debug("Removed cart item: {}", cartItemId);
         return getCartBySessionId(sessionId);
     }
     
@@ -253,12 +343,14 @@ class CartService {
         Optional<Cart> cart = cartRepository.findBySessionId(sessionId);
         cart.ifPresent(c -> {
             cartItemRepository.deleteByCartId(c.getId());
-            log.info("Cleared cart for session: {}", sessionId);
+            readYourWrites.recordWrite(sessionId);
+            log.debug("Cleared cart for session: {}", sessionId);
         });
     }
     
     //  for frontend cart badge
     public Integer getCartItemCount(String sessionId) {
+        readYourWrites.readFor(sessionId);
         return cartRepository.findBySessionId(sessionId)
                 .map(cart -> cartItemRepository.countByCartId(cart.getId()))
                 .orElse(0);
@@ -283,26 +375,35 @@ class CartService {
     }
     
     private CartDTO convertToDTO(Cart cart) {
+        return toDTO(cart, cartItemRepository.findByCartId(cart.getId()));
+    }
+    
+    // no repository access from here on, the JMH benchmarks call it directly
+    CartDTO toDTO(Cart cart, List<CartItem> cartItems) {
         CartDTO dto = new CartDTO();
         dto.setId(cart.getId());
         dto.setSessionId(cart.getSessionId());
         dto.setCreatedAt(cart.getCreatedAt());
         dto.setUpdatedAt(cart.getUpdatedAt());
         
-        List<CartItemDTO> cartItemDTOs = cartItemRepository.findByCartId(cart.getId())
+        List<CartItemDTO> cartItemDTOs = cartItems
                 .stream()
                 .map(this::convertCartItemToDTO)
                 .collect(Collectors.toList());
         
         dto.setCartItems(cartItemDTOs);
         dto.setTotalItems(cartItemDTOs.size());
-        dto.setTotalAmount(cartItemDTOs.stream()
-                .map(CartItemDTO::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add));
+        dto.setTotalAmount(totalOf(cartItemDTOs));
         
         return dto;
     }
     
+    static BigDecimal totalOf(List<CartItemDTO> cartItems) {
+        return cartItems.stream()
+                .map(CartItemDTO::getSubtotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+    
     private CartItemDTO convertCartItemToDTO(CartItem cartItem) {
         CartItemDTO dto = new CartItemDTO();
         dto.setId(cartItem.getId());
@@ -6,12 +6,16 @@ import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity// tells springboot this class represents a database table
 @Table(name = "products")
+@Cacheable // second-level cache, see CatalogCacheRegionFactory
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data  //lombok annotations generates getters and setters 
 @NoArgsConstructor
 @AllArgsConstructor
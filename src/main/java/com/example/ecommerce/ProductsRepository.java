@@ -1,10 +1,20 @@
 package com.example.ecommerce;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;//allow crud func
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;// anotation for writing query
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,38 +22,71 @@ import java.util.Optional;
 @Repository //spring component for database acces
 public interface ProductsRepository extends JpaRepository<Products, Long> {
     
-    List<Products> findByIsActiveTrue();
-    // tells the method this is a query
-    List<Products> findByCategoryAndIsActiveTrue(String category);
-    
-    @Query("SELECT p FROM Products p WHERE p.isActive = true AND " +
+    // Grid and search queries select only the listing columns (no TEXT description) straight into ProductListing:
+    // nothing is added to the persistence context, so there is nothing to dirty-check or flush.
+    // Full entities are for the detail page and the write paths.
+    // Each runs in its own read-only transaction when the caller has none (ProductService coalesces these outside
+    // a transaction), so they still go to a read replica.
+    String LISTING = "SELECT new com.example.ecommerce.ProductListing(p.id, p.name, p.price, p.oldPrice, p.imageUrl, "
+            + "p.stockQuantity, p.stockStatus, p.category) FROM Products p ";
+
+    // query cache: the listing rows themselves are cached, any write to the products table invalidates them
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query(LISTING + "WHERE p.isActive = true")
+    List<ProductListing> findActiveListings();
+
+    // first page of the grid for the storefront bootstrap, the limit goes into the SQL
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query(LISTING + "WHERE p.isActive = true ORDER BY p.id")
+    List<ProductListing> findActiveListings(Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT COUNT(p) FROM Products p WHERE p.isActive = true")
+    long countActive();
+
+    @Transactional(readOnly = true)
+    @Query(LISTING + "WHERE p.category = :category AND p.isActive = true")
+    List<ProductListing> findListingsByCategory(@Param("category") String category);
+
+    @Transactional(readOnly = true)
+    @Query(LISTING + "WHERE p.categoryId = :categoryId AND p.isActive = true")
+    List<ProductListing> findListingsByCategoryId(@Param("categoryId") Long categoryId);
+
+    // description is still searched, just not loaded
+    @Transactional(readOnly = true)
+    @Query(LISTING + "WHERE p.isActive = true AND " +
            "(LOWER(p.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
            "LOWER(p.description) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
            "LOWER(p.category) LIKE LOWER(CONCAT('%', :searchTerm, '%')))")
-    List<Products> searchProducts(@Param("searchTerm") String searchTerm);
-    
-    @Query("SELECT p FROM Products p WHERE p.isActive = true ORDER BY p.createdAt DESC")
-    List<Products> findFeaturedProducts();
-    
-    @Query("SELECT DISTINCT p.category FROM Products p WHERE p.isActive = true")
-    List<String> findAllActiveCategories();
+    List<ProductListing> searchListings(@Param("searchTerm") String searchTerm);
 
-/**
-     * Find products by category ID and active status
-     */
-    List<Products> findByCategoryIdAndIsActiveTrue(Long categoryId);
-    
-    /**
-     * Search products within a specific category (by ID)
-     */
-    @Query("SELECT p FROM Products p WHERE " +
-           "p.categoryId = :categoryId AND " +
+    @Transactional(readOnly = true)
+    @Query(LISTING + "WHERE p.categoryId = :categoryId AND " +
            "(LOWER(p.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
            "LOWER(p.description) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) " +
            "AND p.isActive = true")
-    List<Products> searchProductsInCategory(
-            @Param("searchTerm") String searchTerm, 
+    List<ProductListing> searchListingsInCategory(
+            @Param("searchTerm") String searchTerm,
             @Param("categoryId") Long categoryId);
+
+    // newest first, the limit goes into the SQL instead of trimming the whole catalog in Java
+    @Query(LISTING + "WHERE p.isActive = true ORDER BY p.createdAt DESC")
+    List<ProductListing> findFeaturedListings(Limit limit);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT DISTINCT p.category FROM Products p WHERE p.isActive = true")
+    List<String> findAllActiveCategories();
+
+    // stock decrement: read from the database (never the second-level cache, which may lag
+    // behind other instances) and lock the rows, in id order so concurrent checkouts cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Products p WHERE p.id IN :ids ORDER BY p.id")
+    List<Products> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+}
+
+// what a product card needs, selected by the listing queries in ProductsRepository
+record ProductListing(Long id, String name, BigDecimal price, BigDecimal oldPrice, String imageUrl,
+                      Integer stockQuantity, String stockStatus, String category) {
 }
 
 @Repository
@@ -59,6 +102,8 @@ interface CartRepository extends JpaRepository<Cart, Long> {
 @Repository
 interface CartItemRepository extends JpaRepository<CartItem, Long> {
     
+    // products are fetched in the same query, the cart DTO needs every one of them
+    @EntityGraph(attributePaths = "product")
     List<CartItem> findByCartId(Long cartId);
     
     Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
@@ -73,6 +118,7 @@ interface CartItemRepository extends JpaRepository<CartItem, Long> {
 @Repository
 interface CategoryRepository extends JpaRepository<Category, Long> {
     
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Category> findByIsActiveTrue();
     
     Optional<Category> findByNameAndIsActiveTrue(String name);
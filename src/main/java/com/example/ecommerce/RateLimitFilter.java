@@ -0,0 +1,279 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// Rate Limit Filter - per-client request limits for the endpoints bots hammer (product search, cart writes, checkout,
+// review posts)
+// Each client gets a GCRA bucket per endpoint group: one AtomicLong holding the time the bucket is empty until,
+// advanced with compareAndSet, so an allowed request costs a map lookup and a CAS, no locks.
+// Clients are keyed by session (X-Session-Id header or sessionId parameter) and always by IP as well; the IP bucket
+// allows ip-multiplier times the session rate so buyers behind one NAT do not starve each other. Requests without
+// a session only get the IP bucket, at the plain group rate. The IP is checked first and a session bucket is only
+// created for requests its IP admits, so rotating session ids from one address cannot fill the map.
+// A bucket that has refilled completely holds no state worth keeping and is evicted by the sweep; past max-buckets
+// new sessions are held to their IP's limit only and new IPs share one overflow bucket per group.
+// Behind a reverse proxy set server.forward-headers-strategy, otherwise every client has the proxy's IP.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter implements MeterBinder {
+
+    static final String SESSION_HEADER = "X-Session-Id";
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxBuckets;
+    private final Map<RateLimitGroup, RateLimit> sessionLimits = new EnumMap<>(RateLimitGroup.class);
+    private final Map<RateLimitGroup, RateLimit> ipLimits = new EnumMap<>(RateLimitGroup.class);
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<RateLimitGroup, Bucket> overflow = new EnumMap<>(RateLimitGroup.class);
+
+    // metrics
+    private final Map<RateLimitGroup, AtomicLong> rejected = new EnumMap<>(RateLimitGroup.class);
+    private final AtomicLong overflowRequests = new AtomicLong();
+
+    public RateLimitFilter(ObjectMapper objectMapper,
+                           @Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.max-buckets:100000}") int maxBuckets,
+                           @Value("${rate-limit.ip-multiplier:5}") int ipMultiplier,
+                           @Value("${rate-limit.search.per-minute:60}") int searchPerMinute,
+                           @Value("${rate-limit.search.burst:20}") int searchBurst,
+                           @Value("${rate-limit.cart.per-minute:60}") int cartPerMinute,
+                           @Value("${rate-limit.cart.burst:20}") int cartBurst,
+                           @Value("${rate-limit.checkout.per-minute:10}") int checkoutPerMinute,
+                           @Value("${rate-limit.checkout.burst:5}") int checkoutBurst,
+                           @Value("${rate-limit.reviews.per-minute:5}") int reviewsPerMinute,
+                           @Value("${rate-limit.reviews.burst:3}") int reviewsBurst) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxBuckets = maxBuckets;
+        limit(RateLimitGroup.SEARCH, searchPerMinute, searchBurst, ipMultiplier);
+        limit(RateLimitGroup.CART, cartPerMinute, cartBurst, ipMultiplier);
+        limit(RateLimitGroup.CHECKOUT, checkoutPerMinute, checkoutBurst, ipMultiplier);
+        limit(RateLimitGroup.REVIEWS, reviewsPerMinute, reviewsBurst, ipMultiplier);
+        for (RateLimitGroup group : RateLimitGroup.values()) {
+            overflow.put(group, new Bucket(System.nanoTime()));
+            rejected.put(group, new AtomicLong());
+        }
+    }
+
+    private void limit(RateLimitGroup group, int perMinute, int burst, int ipMultiplier) {
+        sessionLimits.put(group, RateLimit.of(perMinute, burst));
+        ipLimits.put(group, RateLimit.of(perMinute * ipMultiplier, burst * ipMultiplier));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || RateLimitGroup.of(request.getMethod(), request.getRequestURI()) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RateLimitGroup group = RateLimitGroup.of(request.getMethod(), request.getRequestURI());
+        String sessionId = sessionId(request);
+        long now = System.nanoTime();
+
+        long retryAfterNanos;
+        if (sessionId == null) {
+            retryAfterNanos = tryAcquire(group, "ip:" + request.getRemoteAddr(), sessionLimits.get(group), now);
+        } else {
+            RateLimit ipLimit = ipLimits.get(group);
+            Bucket ipBucket = bucketOrOverflow(group, "ip:" + request.getRemoteAddr(), now);
+            retryAfterNanos = ipBucket.tryAcquire(ipLimit, now);
+            if (retryAfterNanos == 0) {
+                Bucket sessionBucket = bucket(group, "session:" + sessionId, now);
+                if (sessionBucket == null) {
+                    overflowRequests.incrementAndGet();
+                } else {
+                    retryAfterNanos = sessionBucket.tryAcquire(sessionLimits.get(group), now);
+                    if (retryAfterNanos != 0) {
+                        // a session over its own limit does not use up the allowance of the others on its IP
+                        ipBucket.release(ipLimit);
+                    }
+                }
+            }
+        }
+        if (retryAfterNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        rejected.get(group).incrementAndGet();
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999));
+        log.debug("Rate limited {} {} from {} (session {}), retry after {} s", request.getMethod(),
+                request.getRequestURI(), request.getRemoteAddr(), sessionId, retryAfterSeconds);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                ApiResponse.error("Too many requests, please try again in " + retryAfterSeconds + " seconds"));
+    }
+
+    private static String sessionId(HttpServletRequest request) {
+        String sessionId = request.getHeader(SESSION_HEADER);
+        if (sessionId == null || sessionId.isBlank()) {
+            sessionId = request.getParameter("sessionId");
+        }
+        return sessionId == null || sessionId.isBlank() ? null : sessionId;
+    }
+
+    /**
+     * 0 when the request is allowed, otherwise how long until the client's bucket admits another one
+     */
+    long tryAcquire(RateLimitGroup group, String client, RateLimit limit, long now) {
+        return bucketOrOverflow(group, client, now).tryAcquire(limit, now);
+    }
+
+    private Bucket bucketOrOverflow(RateLimitGroup group, String client, long now) {
+        Bucket bucket = bucket(group, client, now);
+        if (bucket == null) {
+            overflowRequests.incrementAndGet();
+            return overflow.get(group);
+        }
+        return bucket;
+    }
+
+    // the client's bucket, created if there is room, null past max-buckets
+    private Bucket bucket(RateLimitGroup group, String client, long now) {
+        String key = group.name() + '|' + client;
+        Bucket bucket = buckets.get(key);
+        if (bucket == null && buckets.size() < maxBuckets) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+        }
+        return bucket;
+    }
+
+    // idle buckets are full again, dropping one is the same as keeping it
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:30000}")
+    public void evictIdleBuckets() {
+        evictIdleBuckets(System.nanoTime());
+    }
+
+    void evictIdleBuckets(long now) {
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.isIdle(now));
+        int evicted = before - buckets.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets, {} left", evicted, buckets.size());
+        }
+    }
+
+    // rejections per group, buckets held, requests that fell back to the shared overflow bucket
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (RateLimitGroup group : RateLimitGroup.values()) {
+            counter(registry, "http.rate_limit.rejected", this, f -> f.getRejected(group),
+                    "group", group.name().toLowerCase());
+        }
+        Gauge.builder("http.rate_limit.buckets", this, f -> f.getBuckets()).register(registry);
+        counter(registry, "http.rate_limit.overflow", this, f -> f.getOverflowRequests());
+    }
+
+    public int getBuckets() {
+        return buckets.size();
+    }
+
+    public long getRejected(RateLimitGroup group) {
+        return rejected.get(group).get();
+    }
+
+    public long getOverflowRequests() {
+        return overflowRequests.get();
+    }
+
+    // GCRA: emptyUntil is when the bucket would be full again if no more requests came, each request pushes it
+    // one interval further; a request is allowed while that stays within burst intervals of now
+    private static final class Bucket {
+
+        private final AtomicLong emptyUntil;
+
+        Bucket(long now) {
+            this.emptyUntil = new AtomicLong(now);
+        }
+
+        long tryAcquire(RateLimit limit, long now) {
+            while (true) {
+                long current = emptyUntil.get();
+                long next = Math.max(current, now) + limit.intervalNanos();
+                long over = next - now - limit.burstNanos();
+                if (over > 0) {
+                    return over;
+                }
+                if (emptyUntil.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        // gives back a request taken by tryAcquire
+        void release(RateLimit limit) {
+            emptyUntil.addAndGet(-limit.intervalNanos());
+        }
+
+        boolean isIdle(long now) {
+            return emptyUntil.get() - now <= 0;
+        }
+    }
+}
+
+// endpoint groups with their own limits, matched on method and path before the request reaches a controller
+enum RateLimitGroup {
+    SEARCH, CART, CHECKOUT, REVIEWS;
+
+    static RateLimitGroup of(String method, String uri) {
+        if ("OPTIONS".equals(method)) {
+            return null;
+        }
+        if (uri.startsWith("/api/products/search")) {
+            return "GET".equals(method) ? SEARCH : null;
+        }
+        if (uri.startsWith("/api/products/") && uri.endsWith("/reviews")) {
+            return "POST".equals(method) ? REVIEWS : null;
+        }
+        if (uri.startsWith("/api/cart/")) {
+            // reads are cheap, only writes are limited
+            return "GET".equals(method) ? null : CART;
+        }
+        if (uri.equals("/api/orders/checkout") || uri.equals("/api/orders/create-pending")
+                || uri.equals("/api/orders/confirm")) {
+            return "POST".equals(method) ? CHECKOUT : null;
+        }
+        return null;
+    }
+}
+
+// intervalNanos between requests at the sustained rate, burstNanos = burst * intervalNanos
+record RateLimit(long intervalNanos, long burstNanos) {
+
+    static RateLimit of(int perMinute, int burst) {
+        long intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+        return new RateLimit(intervalNanos, intervalNanos * Math.max(1, burst));
+    }
+}
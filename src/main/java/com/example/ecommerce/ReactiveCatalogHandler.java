@@ -0,0 +1,316 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+
+// Reactive catalog read path (Spring profile "reactive-catalog", runs on Netty)
+// Same URLs and ApiResponse JSON as ProductController/CategoryController, but backed by R2DBC
+// and streamed: the "data" array is written element by element as rows arrive
+@Component
+@Profile("reactive-catalog")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveCatalogHandler {
+
+    private static final int FEATURED_LIMIT = 12;
+
+    private final ReactiveProductsRepository productsRepository;
+    private final ReactiveCategoryRepository categoryRepository;
+    private final ObjectMapper objectMapper;
+    private final ProductImageService productImageService;
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    // GET /api/products?categoryId=&search=
+    public Mono<ServerResponse> getProducts(ServerRequest request) {
+        Optional<Long> categoryId = request.queryParam("categoryId").map(Long::valueOf);
+        Optional<String> search = request.queryParam("search");
+
+        Flux<ProductRow> products;
+        if (categoryId.isPresent() && search.isPresent()) {
+            products = productsRepository.searchInCategory(search.get(), categoryId.get());
+        } else if (categoryId.isPresent()) {
+            products = productsRepository.findByCategoryIdAndIsActiveTrue(categoryId.get());
+        } else if (search.isPresent()) {
+            products = productsRepository.search(search.get());
+        } else {
+            products = productsRepository.findByIsActiveTrue();
+        }
+        return streamList("Products retrieved successfully", products.map(this::toDTO));
+    }
+
+    // GET /api/products/featured
+    public Mono<ServerResponse> getFeaturedProducts(ServerRequest request) {
+        return streamList("Featured products retrieved successfully",
+                productsRepository.findFeatured(FEATURED_LIMIT).map(this::toDTO));
+    }
+
+    // GET /api/products/{id}
+    public Mono<ServerResponse> getProductById(ServerRequest request) {
+        Long id = Long.valueOf(request.pathVariable("id"));
+        return productsRepository.findById(id)
+                .filter(ProductRow::getIsActive)
+                .flatMap(product -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(ApiResponse.success("Product retrieved successfully", toDTO(product))))
+                .switchIfEmpty(ServerResponse.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(ApiResponse.error("Product not found")));
+    }
+
+    // GET /api/products/categories
+    public Mono<ServerResponse> getProductCategories(ServerRequest request) {
+        return streamList("Categories retrieved successfully", productsRepository.findAllActiveCategories());
+    }
+
+    // GET /api/categories
+    public Mono<ServerResponse> getAllCategories(ServerRequest request) {
+        return streamList("Categories retrieved successfully",
+                categoryRepository.findByIsActiveTrue().map(ReactiveCatalogHandler::toDTO));
+    }
+
+    // GET /api/categories/{id}
+    public Mono<ServerResponse> getCategoryById(ServerRequest request) {
+        Long id = Long.valueOf(request.pathVariable("id"));
+        return categoryRepository.findById(id)
+                .filter(CategoryRow::getIsActive)
+                .flatMap(category -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(ApiResponse.success("Category retrieved successfully", toDTO(category))))
+                .switchIfEmpty(ServerResponse.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(ApiResponse.error("Category not found")));
+    }
+
+    // GET /api/products/{id}/images/{variant}, a FileSystemResource body goes out as a Netty FileRegion (zero-copy)
+    public Mono<ServerResponse> getProductImage(ServerRequest request) {
+        Long id = Long.valueOf(request.pathVariable("id"));
+        Optional<ImageVariant> variant = ImageVariant.fromPath(request.pathVariable("variant"));
+        if (variant.isEmpty()) {
+            return ServerResponse.notFound().build();
+        }
+        // resizing and the product lookup block, keep them off the event loop
+        return Mono.fromCallable(() -> productImageService.getVariant(id, variant.get()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(image -> image.isPresent()
+                        ? serveImage(request, image.get(), variant.get())
+                        : Mono.fromCallable(() -> productImageService.getOriginalUrl(id))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(original -> original.isPresent()
+                                        ? ServerResponse.temporaryRedirect(URI.create(original.get())).build()
+                                        : ServerResponse.notFound().build()));
+    }
+
+    private Mono<ServerResponse> serveImage(ServerRequest request, ProductImageService.ImageFile file, ImageVariant variant) {
+        boolean current = file.version().equals(request.queryParam("v").orElse(null));
+        CacheControl cacheControl = current ? ProductImageController.IMMUTABLE : ProductImageController.STALE_VERSION;
+        String etag = "\"" + file.version() + "-" + variant.path() + "\"";
+        return request.checkNotModified(etag)
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.ok()
+                        .contentType(file.contentType())
+                        .cacheControl(cacheControl)
+                        .eTag(etag)
+                        .body(BodyInserters.fromResource(new FileSystemResource(file.path())))));
+    }
+
+    /**
+     * Writes {"success":true,"message":..,"data":[..],"timestamp":..} without collecting the list first.
+     * Demand from the socket flows back to the R2DBC cursor, so slow clients do not buffer the catalog.
+     */
+    private Mono<ServerResponse> streamList(String message, Flux<?> items) {
+        String prefix = "{\"success\":true,\"message\":" + json(message) + ",\"data\":[";
+        Flux<DataBuffer> body = Flux.concat(
+                Mono.fromCallable(() -> buffer(prefix)),
+                items.index().map(item -> buffer((item.getT1() == 0 ? "" : ",") + json(item.getT2()))),
+                Mono.fromCallable(() -> buffer("],\"timestamp\":" + json(LocalDateTime.now()) + "}")))
+                .doOnError(e -> log.error("Catalog stream failed: {}", e.getMessage()));
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromDataBuffers(body));
+    }
+
+    private DataBuffer buffer(String text) {
+        return bufferFactory.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // mirrors ProductService.convertToDTO so both read paths return identical JSON
+    ProductDTO toDTO(ProductRow product) {
+        ProductDTO dto = new ProductDTO();
+        dto.setId(product.getId());
+        dto.setName(product.getName());
+        dto.setDescription(product.getDescription());
+        dto.setPrice(product.getPrice());
+        dto.setOldPrice(product.getOldPrice());
+        dto.setCategory(product.getCategory());
+        dto.setImageUrl(product.getImageUrl());
+        dto.setStockQuantity(product.getStockQuantity());
+        dto.setStockStatus(product.getStockStatus());
+        dto.setIsActive(product.getIsActive());
+        dto.setCreatedAt(product.getCreatedAt());
+        dto.setUpdatedAt(product.getUpdatedAt());
+        productImageService.applyVariantUrls(dto);
+        return dto;
+    }
+
+    static CategoryDTO toDTO(CategoryRow category) {
+        CategoryDTO dto = new CategoryDTO();
+        dto.setId(category.getId());
+        dto.setName(category.getName());
+        dto.setDescription(category.getDescription());
+        dto.setIsActive(category.getIsActive());
+        dto.setCreatedAt(category.getCreatedAt());
+        return dto;
+    }
+}
+
+@Configuration
+@Profile("reactive-catalog")
+@EnableConfigurationProperties(DataSourceProperties.class)
+class ReactiveCatalogConfig implements WebFluxConfigurer {
+
+    private final AsyncTaskExecutor applicationTaskExecutor;
+
+    ReactiveCatalogConfig(@Qualifier("applicationTaskExecutor") AsyncTaskExecutor applicationTaskExecutor) {
+        this.applicationTaskExecutor = applicationTaskExecutor;
+    }
+
+    // Boot backs off the JDBC DataSource once an R2DBC ConnectionFactory exists,
+    // JPA still needs it for everything outside the catalog reads
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    // router functions are matched before @RequestMapping, so these GETs take over from the blocking controllers
+    @Bean
+    RouterFunction<ServerResponse> reactiveCatalogRoutes(ReactiveCatalogHandler handler) {
+        return RouterFunctions.route()
+                // HomeController's "index.html" view name has no resolver under WebFlux
+                .GET("/", request -> ServerResponse.ok().contentType(MediaType.TEXT_HTML)
+                        .bodyValue(new ClassPathResource("static/index.html")))
+                .GET("/api/products/featured", handler::getFeaturedProducts)
+                .GET("/api/products/categories", handler::getProductCategories)
+                .GET("/api/products/{id:\\d+}", handler::getProductById)
+                .GET("/api/products/{id:\\d+}/images/{variant}", handler::getProductImage)
+                .route(GET("/api/products"), handler::getProducts)
+                .route(GET("/api/categories"), handler::getAllCategories)
+                .GET("/api/categories/{id:\\d+}", handler::getCategoryById)
+                .build();
+    }
+
+    // cart, order and admin endpoints stay on JPA, keep them off the Netty event loop
+    @Override
+    public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        configurer.setExecutor(applicationTaskExecutor);
+    }
+}
+
+interface ReactiveProductsRepository extends R2dbcRepository<ProductRow, Long> {
+
+    Flux<ProductRow> findByIsActiveTrue();
+
+    Flux<ProductRow> findByCategoryIdAndIsActiveTrue(Long categoryId);
+
+    @Query("SELECT * FROM products WHERE is_active = true ORDER BY created_at DESC LIMIT :limit")
+    Flux<ProductRow> findFeatured(@Param("limit") int limit);
+
+    @Query("SELECT DISTINCT category FROM products WHERE is_active = true")
+    Flux<String> findAllActiveCategories();
+
+    @Query("SELECT * FROM products WHERE is_active = true AND " +
+           "(LOWER(name) LIKE LOWER(CONCAT('%', :term, '%')) OR " +
+           "LOWER(description) LIKE LOWER(CONCAT('%', :term, '%')) OR " +
+           "LOWER(category) LIKE LOWER(CONCAT('%', :term, '%')))")
+    Flux<ProductRow> search(@Param("term") String term);
+
+    @Query("SELECT * FROM products WHERE category_id = :categoryId AND is_active = true AND " +
+           "(LOWER(name) LIKE LOWER(CONCAT('%', :term, '%')) OR " +
+           "LOWER(description) LIKE LOWER(CONCAT('%', :term, '%')))")
+    Flux<ProductRow> searchInCategory(@Param("term") String term, @Param("categoryId") Long categoryId);
+}
+
+interface ReactiveCategoryRepository extends R2dbcRepository<CategoryRow, Long> {
+
+    Flux<CategoryRow> findByIsActiveTrue();
+}
+
+// read-only R2DBC views of the products and categories tables
+@Data
+@NoArgsConstructor
+@org.springframework.data.relational.core.mapping.Table("products")
+class ProductRow {
+    @Id
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private BigDecimal oldPrice;
+    private Long categoryId;
+    private String category;
+    private String imageUrl;
+    private Integer stockQuantity;
+    private String stockStatus;
+    private Boolean isActive;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
+
+@Data
+@NoArgsConstructor
+@org.springframework.data.relational.core.mapping.Table("categories")
+class CategoryRow {
+    @Id
+    private Long id;
+    private String name;
+    private String description;
+    private Boolean isActive;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,228 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// Read Replica Routing - read-only transactions go to a replica, everything else to the primary
+// The DataSource bean is wrapped in a LazyConnectionDataSourceProxy: the physical connection is only fetched
+// at the first statement, after the transaction manager has marked it read-only, so the proxy can still choose
+// the replica side then. A replica takes reads while its last health check passed and its replay lag is under
+// max-lag-ms, otherwise reads fall back to the primary. Cart sessions that just wrote stay on the primary for
+// a short window (ReadYourWrites). Runs after DbAdmissionBulkhead (Ordered), which has already gated the primary pool;
+// with the bulkhead enabled each replica pool is gated by permits of its own.
+@Component
+@ConditionalOnProperty(name = "datasource.replicas.enabled", havingValue = "true")
+@Slf4j
+public class ReadReplicaRouting implements BeanPostProcessor, Ordered, DisposableBean, MeterBinder {
+
+    // 0 when caught up (or not a standby at all), otherwise age of the last replayed transaction
+    static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() "
+            + "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS BIGINT) END";
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMs;
+    private final String lagQuery;
+    private final ScheduledExecutorService healthChecker;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryFallbacks = new AtomicLong();
+    private final AtomicLong pinnedReads = new AtomicLong();
+
+    public ReadReplicaRouting(
+            @Value("${datasource.replicas.urls}") List<String> urls,
+            @Value("${datasource.replicas.username:${spring.datasource.username}}") String username,
+            @Value("${datasource.replicas.password:${spring.datasource.password}}") String password,
+            @Value("${datasource.replicas.pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int poolSize,
+            @Value("${datasource.replicas.max-lag-ms:5000}") long maxLagMs,
+            @Value("${datasource.replicas.lag-query:}") String lagQuery,
+            @Value("${datasource.replicas.health-check-interval-ms:5000}") long healthCheckIntervalMs,
+            ObjectProvider<DbAdmissionBulkhead> admission) {
+        DbAdmissionBulkhead bulkhead = admission.getIfAvailable();
+        this.maxLagMs = maxLagMs;
+        this.lagQuery = lagQuery.isBlank() ? POSTGRES_LAG_QUERY : lagQuery;
+        for (String url : urls) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + (replicas.size() + 1));
+            pool.setJdbcUrl(url.strip());
+            pool.setUsername(username);
+            pool.setPassword(password);
+            pool.setMaximumPoolSize(poolSize);
+            pool.setReadOnly(true);
+            pool.setConnectionTimeout(2000);
+            // a replica that is down at startup is only marked unhealthy, the app still starts
+            pool.setInitializationFailTimeout(-1);
+            replicas.add(new Replica(pool.getPoolName(), pool, bulkhead == null ? pool : bulkhead.gate(pool, poolSize)));
+        }
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas, 0, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Read replica routing enabled: {} replica(s), {} ms max lag", replicas.size(), maxLagMs);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource primary && !(bean instanceof LazyConnectionDataSourceProxy)) {
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+            proxy.setReadOnlyDataSource(new ReplicaSelectingDataSource(primary));
+            return proxy;
+        }
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public void destroy() {
+        healthChecker.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(2);
+                try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                    replica.lagMs = resultSet.next() ? resultSet.getLong(1) : 0;
+                }
+                if (!replica.healthy) {
+                    log.info("Replica {} is up, lag {} ms", replica.name, replica.lagMs);
+                }
+                replica.healthy = true;
+            } catch (SQLException | RuntimeException e) {
+                if (replica.healthy) {
+                    log.warn("Replica {} failed its health check, reads fall back to the primary: {}",
+                            replica.name, e.getMessage());
+                }
+                replica.healthy = false;
+            }
+        }
+    }
+
+    // round robin over the replicas that are up and close enough to the primary, null when there is none
+    private Replica pick() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy && replica.lagMs <= maxLagMs) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "db.reads", this, r -> r.getReplicaReads(), "target", "replica");
+        counter(registry, "db.reads", this, r -> r.getPrimaryFallbacks(), "target", "primary_fallback");
+        counter(registry, "db.reads", this, r -> r.getPinnedReads(), "target", "primary_read_your_writes");
+        Gauge.builder("db.replicas.healthy", this, r -> r.getHealthyReplicas()).register(registry);
+        Gauge.builder("db.replicas.lag", this, r -> r.getMaxReplicaLagMs()).baseUnit("milliseconds").register(registry);
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    public long getPrimaryFallbacks() {
+        return primaryFallbacks.get();
+    }
+
+    public long getPinnedReads() {
+        return pinnedReads.get();
+    }
+
+    public int getHealthyReplicas() {
+        return (int) replicas.stream().filter(r -> r.healthy && r.lagMs <= maxLagMs).count();
+    }
+
+    public long getMaxReplicaLagMs() {
+        return replicas.stream().filter(r -> r.healthy).mapToLong(r -> r.lagMs).max().orElse(0);
+    }
+
+    private static class Replica {
+        final String name;
+        final HikariDataSource pool;
+        // what reads use, the pool behind its admission gate when there is one
+        final DataSource reads;
+        volatile boolean healthy;
+        volatile long lagMs;
+
+        Replica(String name, HikariDataSource pool, DataSource reads) {
+            this.name = name;
+            this.pool = pool;
+            this.reads = reads;
+        }
+    }
+
+    // the read-only side of the lazy proxy
+    private class ReplicaSelectingDataSource extends AbstractDataSource {
+
+        private final DataSource primary;
+
+        ReplicaSelectingDataSource(DataSource primary) {
+            this.primary = primary;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (ReadYourWrites.isPinnedToPrimary()) {
+                pinnedReads.incrementAndGet();
+                return primary.getConnection();
+            }
+            Replica replica = pick();
+            if (replica != null) {
+                try {
+                    Connection connection = replica.reads.getConnection();
+                    replicaReads.incrementAndGet();
+                    return connection;
+                } catch (SQLException e) {
+                    log.warn("No connection from replica {}, using the primary: {}", replica.name, e.getMessage());
+                    replica.healthy = false;
+                }
+            }
+            primaryFallbacks.incrementAndGet();
+            return primary.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.ecommerce;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+
+// Read Your Writes - a cart session that changed within the last read-your-writes-ms reads from the primary,
+// so a replica that has not replayed the change yet cannot hide it. Used by ReadReplicaRouting.
+// The marks are kept in memory per instance: with several instances behind a non-sticky load balancer
+// the next request can still land on one that has not seen the write.
+@Component
+public class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final LruCache<String, Long> lastWrites;
+
+    public ReadYourWrites(
+            @Value("${datasource.replicas.enabled:false}") boolean enabled,
+            @Value("${datasource.replicas.read-your-writes-ms:5000}") long windowMs,
+            @Value("${datasource.replicas.read-your-writes-sessions:100000}") int maxSessions) {
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.lastWrites = new LruCache<>(maxSessions);
+    }
+
+    /**
+     * Marks the session as written, from the commit of the current transaction on
+     */
+    public void recordWrite(String sessionKey) {
+        if (!enabled || sessionKey == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    lastWrites.put(sessionKey, System.nanoTime());
+                }
+            });
+        } else {
+            lastWrites.put(sessionKey, System.nanoTime());
+        }
+    }
+
+    /**
+     * Call before the first query of a read-only transaction that reads the session's data:
+     * if the session wrote recently the transaction uses the primary
+     */
+    public void readFor(String sessionKey) {
+        if (!enabled || sessionKey == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Long writtenAt = lastWrites.get(sessionKey);
+        if (writtenAt == null || System.nanoTime() - writtenAt > windowNanos) {
+            return;
+        }
+        PINNED.set(Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                PINNED.remove();
+            }
+        });
+    }
+
+    static boolean isPinnedToPrimary() {
+        return PINNED.get() != null;
+    }
+}
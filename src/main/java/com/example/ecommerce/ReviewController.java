@@ -0,0 +1,57 @@
+package com.example.ecommerce;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+// Product reviews; the rating comes from ReviewService's in-memory aggregate, so it includes reviews just submitted
+@RestController
+@RequestMapping("/api/products/{productId}/reviews")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+public class ReviewController {
+
+    private final ReviewService reviewService;
+
+    // GET /api/products/(id)/reviews?limit=10  Rating summary and the newest reviews
+    @GetMapping
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getReviews(@PathVariable Long productId,
+                                                                       @RequestParam(defaultValue = "10") int limit) {
+        try {
+            RatingSummary rating = reviewService.getRating(productId);
+            return ResponseEntity.ok(ApiResponse.success("Reviews retrieved successfully",
+                    Map.of("rating", rating, "reviews", reviewService.getReviews(productId, limit))));
+        } catch (RuntimeException e) {
+            log.warn("Reviews not available for product {}: {}", productId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error retrieving reviews for product {}", productId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to retrieve reviews"));
+        }
+    }
+
+    // POST /api/products/(id)/reviews  {"rating": 1-5, "reviewerName": "...", "comment": "..."}
+    @PostMapping
+    public ResponseEntity<ApiResponse<Map<String, Object>>> submitReview(@PathVariable Long productId,
+                                                                         @Valid @RequestBody ReviewRequest request) {
+        try {
+            ReviewView review = reviewService.submit(productId, request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("Review submitted",
+                    Map.of("review", review, "rating", reviewService.getRating(productId))));
+        } catch (RuntimeException e) {
+            log.warn("Review rejected for product {}: {}", productId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error submitting review for product {}", productId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to submit review"));
+        }
+    }
+}
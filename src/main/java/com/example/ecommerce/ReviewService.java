@@ -0,0 +1,318 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// Review Service - stores product reviews and keeps Products.rating/ratingCount up to date without touching
+// the product row per review. A review is only an insert into product_reviews; once it commits its stars are added
+// to the product's in-memory aggregate (a LongAdder, so concurrent reviews do not contend). Reads come from memory:
+// the last totals loaded from product_reviews plus what this instance recorded since. Every flush-interval-ms the
+// products with new reviews get their rating columns recomputed from product_reviews in one short transaction,
+// rows locked in id order like checkout does, so it never deadlocks with a stock update. The update is plain JDBC:
+// a JPQL bulk update would invalidate the whole Products cache region, so only the flushed products are evicted.
+// Totals loaded more than base-ttl-ms ago are reloaded on read, which is how reviews taken by other instances show up.
+@Service
+@Slf4j
+public class ReviewService implements MeterBinder {
+
+    private static final int MAX_REVIEWS_PER_PAGE = 50;
+
+    // rating columns recomputed from product_reviews, nothing else on the row is written
+    private static final String REFRESH_RATING = "UPDATE products SET "
+            + "rating_count = (SELECT COUNT(*) FROM product_reviews r WHERE r.product_id = ?), "
+            + "rating = COALESCE((SELECT ROUND(AVG(CAST(r.rating AS DECIMAL(10, 2))), 2) "
+            + "FROM product_reviews r WHERE r.product_id = ?), 0) "
+            + "WHERE id = ?";
+
+    private final ProductReviewRepository productReviewRepository;
+    private final ProductsRepository productsRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final long baseTtlNanos;
+    private final Map<Long, RatingAggregate> aggregates = new ConcurrentHashMap<>();
+
+    // metrics
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    public ReviewService(ProductReviewRepository productReviewRepository,
+                         ProductsRepository productsRepository,
+                         JdbcTemplate jdbcTemplate,
+                         EntityManagerFactory entityManagerFactory,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${reviews.base-ttl-ms:300000}") long baseTtlMs) {
+        this.productReviewRepository = productReviewRepository;
+        this.productsRepository = productsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.baseTtlNanos = TimeUnit.MILLISECONDS.toNanos(baseTtlMs);
+    }
+
+    @Transactional
+    public ReviewView submit(Long productId, ReviewRequest request) {
+        // existence only, from the second-level cache: the product row is neither locked nor written here
+        productsRepository.findById(productId)
+                .filter(product -> Boolean.TRUE.equals(product.getIsActive()))
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+
+        ProductReview review = new ProductReview();
+        review.setProductId(productId);
+        review.setRating(request.getRating());
+        review.setReviewerName(blankToNull(request.getReviewerName()));
+        review.setComment(blankToNull(request.getComment()));
+        ProductReview saved = productReviewRepository.save(review);
+
+        int stars = request.getRating();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(productId, stars);
+                }
+            });
+        } else {
+            record(productId, stars);
+        }
+        return ReviewView.of(saved);
+    }
+
+    void record(Long productId, int stars) {
+        RatingAggregate aggregate = aggregates.computeIfAbsent(productId, id -> new RatingAggregate());
+        aggregate.pending.add(RatingAggregate.REVIEW + stars);
+        aggregate.dirty = true;
+    }
+
+    /**
+     * Current average and count, including reviews not flushed to the product yet
+     */
+    public RatingSummary getRating(Long productId) {
+        RatingAggregate aggregate = aggregates.get(productId);
+        if (aggregate == null) {
+            // aggregates are only kept for real products, so random ids cannot grow the map
+            if (productsRepository.findById(productId).isEmpty()) {
+                throw new RuntimeException("Product not found with id: " + productId);
+            }
+            aggregate = aggregates.computeIfAbsent(productId, id -> new RatingAggregate());
+        }
+        if (aggregate.base == null || System.nanoTime() - aggregate.baseLoadedAt > baseTtlNanos) {
+            reloadBase(productId, aggregate);
+        }
+        RatingTotal base;
+        long pending;
+        do {
+            base = aggregate.base;
+            pending = aggregate.pending.sum();
+        } while (base != aggregate.base);
+        return RatingSummary.of(productId, base.stars() + RatingAggregate.stars(pending),
+                base.count() + RatingAggregate.count(pending));
+    }
+
+    // one reload at a time per product, the others keep reading the current base meanwhile.
+    // A ReentrantLock rather than synchronized: the query must not pin a virtual thread's carrier
+    private void reloadBase(Long productId, RatingAggregate aggregate) {
+        aggregate.lock.lock();
+        try {
+            if (aggregate.base != null && System.nanoTime() - aggregate.baseLoadedAt <= baseTtlNanos) {
+                return;
+            }
+            long taken = aggregate.pending.sum();
+            aggregate.replaceBase(loadBase(productId), taken);
+        } finally {
+            aggregate.lock.unlock();
+        }
+    }
+
+    private RatingTotal loadBase(Long productId) {
+        List<RatingTotal> totals = productReviewRepository.totalsFor(List.of(productId));
+        return totals.isEmpty() ? new RatingTotal(productId, 0L, 0L) : totals.get(0);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ReviewView> getReviews(Long productId, int limit) {
+        return productReviewRepository
+                .findByProductIdOrderByCreatedAtDesc(productId, Limit.of(Math.max(1, Math.min(limit, MAX_REVIEWS_PER_PAGE))))
+                .stream()
+                .map(ReviewView::of)
+                .toList();
+    }
+
+    /**
+     * Recomputes the rating columns of every product with reviews recorded since the last flush, then takes the
+     * new totals as the in-memory base. On failure the products stay dirty for the next run.
+     */
+    @Scheduled(fixedDelayString = "${reviews.flush-interval-ms:30000}",
+            initialDelayString = "${reviews.flush-interval-ms:30000}")
+    public void flush() {
+        // reviews recorded from here on mark their product dirty again for the next run
+        Map<Long, long[]> batch = new HashMap<>();
+        aggregates.forEach((productId, aggregate) -> {
+            if (aggregate.dirty) {
+                aggregate.dirty = false;
+                aggregate.lock.lock();
+                try {
+                    batch.put(productId, new long[] { aggregate.pending.sum(), aggregate.generation });
+                } finally {
+                    aggregate.lock.unlock();
+                }
+            }
+        });
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Long> productIds = new ArrayList<>(batch.keySet());
+        productIds.sort(null);
+        List<RatingTotal> totals;
+        try {
+            totals = transactionTemplate.execute(status -> {
+                jdbcTemplate.batchUpdate(REFRESH_RATING, productIds, productIds.size(), (statement, productId) -> {
+                    statement.setLong(1, productId);
+                    statement.setLong(2, productId);
+                    statement.setLong(3, productId);
+                });
+                return productReviewRepository.totalsFor(productIds);
+            });
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+            log.warn("Could not flush ratings of {} products, retrying next run: {}", batch.size(), e.getMessage());
+            batch.keySet().forEach(productId -> aggregates.get(productId).dirty = true);
+            return;
+        }
+        // after the commit, so a read in between cannot put the old row back into the cache
+        Cache cache = entityManagerFactory.getCache();
+        productIds.forEach(productId -> cache.evict(Products.class, productId));
+
+        Map<Long, RatingTotal> totalById = new HashMap<>();
+        totals.forEach(total -> totalById.put(total.productId(), total));
+        batch.forEach((productId, taken) -> {
+            RatingAggregate aggregate = aggregates.get(productId);
+            aggregate.lock.lock();
+            try {
+                // a reader reloaded the base meanwhile and already took these reviews over
+                if (aggregate.generation == taken[1]) {
+                    aggregate.replaceBase(totalById.getOrDefault(productId, new RatingTotal(productId, 0L, 0L)),
+                            taken[0]);
+                }
+            } finally {
+                aggregate.lock.unlock();
+            }
+        });
+        log.debug("Flushed ratings of {} products", batch.size());
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    // product ratings kept in memory until their next flush
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("reviews.ratings.unflushed", this, s -> s.getUnflushedProducts()).register(registry);
+        counter(registry, "reviews.ratings.flush.failures", this, s -> s.getFlushFailures());
+    }
+
+    int getUnflushedProducts() {
+        int unflushed = 0;
+        for (RatingAggregate aggregate : aggregates.values()) {
+            if (aggregate.dirty) {
+                unflushed++;
+            }
+        }
+        return unflushed;
+    }
+
+    long getFlushFailures() {
+        return flushFailures.get();
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.strip();
+    }
+
+    private static final class RatingAggregate {
+
+        // a review adds REVIEW + its stars: count in the high half, star sum in the low half, so one sum() reads
+        // both consistently and a new base can take over exactly the reviews it was loaded after
+        static final long REVIEW = 1L << 32;
+
+        // reviews recorded since base was loaded
+        final LongAdder pending = new LongAdder();
+        final ReentrantLock lock = new ReentrantLock();
+        volatile RatingTotal base;
+        volatile long baseLoadedAt;
+        // bumped by every replaceBase, guarded by lock
+        long generation;
+        // reviews recorded since the last flush started, products.rating is behind
+        volatile boolean dirty;
+
+        // taken: pending as read before total was loaded, total contains those reviews. A review committed
+        // between the two reads is counted twice until the next reload or flush, which recomputes it.
+        void replaceBase(RatingTotal total, long taken) {
+            generation++;
+            pending.add(-taken);
+            baseLoadedAt = System.nanoTime();
+            base = total;
+        }
+
+        static long count(long pending) {
+            return pending >>> 32;
+        }
+
+        static long stars(long pending) {
+            return pending & (REVIEW - 1);
+        }
+    }
+}
+
+// star sum and review count of one product, from product_reviews
+record RatingTotal(Long productId, Long stars, Long count) {
+}
+
+// average rounded like the products.rating column (2 decimals), 0 without reviews
+record RatingSummary(Long productId, BigDecimal rating, long ratingCount) {
+
+    static RatingSummary of(Long productId, long stars, long count) {
+        BigDecimal rating = count == 0 ? BigDecimal.ZERO.setScale(2)
+                : BigDecimal.valueOf(stars).divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+        return new RatingSummary(productId, rating, count);
+    }
+}
+
+record ReviewView(Long id, Long productId, String reviewerName, int rating, String comment, LocalDateTime createdAt) {
+
+    static ReviewView of(ProductReview review) {
+        return new ReviewView(review.getId(), review.getProductId(), review.getReviewerName(), review.getRating(),
+                review.getComment(), review.getCreatedAt());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.ecommerce;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Sales dashboards, served from SalesAnalyticsService (memory, or sales_rollups for long ranges), never from orders
+@RestController
+@RequestMapping("/api/analytics/sales")
+@RequiredArgsConstructor
+@Slf4j
+public class SalesAnalyticsController {
+
+    private final SalesAnalyticsService salesAnalyticsService;
+
+    // GET /api/analytics/sales/top?by=category&metric=units&window=7d&limit=10
+    @GetMapping("/top")
+    public ResponseEntity<ApiResponse<List<SalesTotal>>> top(
+            @RequestParam(defaultValue = "product") String by,
+            @RequestParam(defaultValue = "revenue") String metric,
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(salesAnalyticsService.top(by, metric, window, category, limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error computing top sales", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to compute top sales"));
+        }
+    }
+
+    // GET /api/analytics/sales/series?granularity=hour&from=2026-03-01T00:00&productId=7
+    // without from/to: the buckets kept in memory up to now
+    @GetMapping("/series")
+    public ResponseEntity<ApiResponse<List<SalesPoint>>> series(
+            @RequestParam(defaultValue = "hour") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long productId,
+            @RequestParam(required = false) String category) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(
+                    salesAnalyticsService.series(granularity, from, to, productId, category)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error computing sales series", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to compute sales series"));
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// Sales Analytics Service - revenue and units per product, category and minute/hour/day, without aggregating orders
+// Sales are recorded when an order becomes paid (COMPLETED) and taken back when it stops being paid, at commit of the
+// order transaction. Recent buckets live in primitive arrays (SalesBucketRing), hour and day deltas are added to the
+// sales_rollups table once a minute, which also serves windows older than the rings hold.
+// Minute buckets only see this instance's sales; hour and day buckets are refreshed from the table (all instances)
+// at every flush. Sales not flushed yet are lost if the JVM dies, at most flush-interval-ms of them.
+@Service
+@Slf4j
+public class SalesAnalyticsService implements MeterBinder {
+
+    static final String PAID = "COMPLETED";
+
+    private static final Pattern WINDOW = Pattern.compile("(\\d{1,4})([mhd])");
+    private static final int MAX_SERIES_POINTS = 5000;
+
+    private final OrderItemRepository orderItemRepository;
+    private final ProductsRepository productsRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<SalesGranularity, SalesBucketRing> rings = new EnumMap<>(SalesGranularity.class);
+
+    // product id <-> array index in the rings, guarded by this
+    private final Map<Long, Integer> productIndex = new HashMap<>();
+    private long[] productIds = new long[64];
+    private String[] categories = new String[64];
+    private int productCount;
+
+    // hour and day deltas not in sales_rollups yet, guarded by this
+    private Map<RollupKey, long[]> unflushed = new HashMap<>();
+
+    private volatile boolean warmedUp;
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    public SalesAnalyticsService(OrderItemRepository orderItemRepository,
+                                 ProductsRepository productsRepository,
+                                 SalesRollupRepository salesRollupRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${analytics.sales.minute-buckets:120}") int minuteBuckets,
+                                 @Value("${analytics.sales.hour-buckets:48}") int hourBuckets,
+                                 @Value("${analytics.sales.day-buckets:92}") int dayBuckets) {
+        this.orderItemRepository = orderItemRepository;
+        this.productsRepository = productsRepository;
+        this.salesRollupRepository = salesRollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        rings.put(SalesGranularity.MINUTE, new SalesBucketRing(minuteBuckets));
+        rings.put(SalesGranularity.HOUR, new SalesBucketRing(hourBuckets));
+        rings.put(SalesGranularity.DAY, new SalesBucketRing(dayBuckets));
+    }
+
+    /**
+     * Call after an order's payment status was set (previousStatus null for a new order).
+     * Moving into COMPLETED counts the order's items as sold, moving out of it takes them back;
+     * either is applied when the current transaction commits.
+     */
+    public void recordPaymentStatusChange(Order order, String previousStatus) {
+        boolean paid = PAID.equals(order.getPaymentStatus());
+        if (paid == PAID.equals(previousStatus)) {
+            return;
+        }
+        int sign = paid ? 1 : -1;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(LocalDateTime.now(), loadSales(Map.of(order.getId(), sign)));
+            return;
+        }
+        PendingSales pending = (PendingSales) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingSales();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.signByOrder.merge(order.getId(), sign, Integer::sum);
+    }
+
+    // one query for the items of all orders of the transaction, categories from the (cached) products
+    private List<Sale> loadSales(Map<Long, Integer> signByOrder) {
+        List<OrderItem> items = orderItemRepository.findByOrderIdIn(signByOrder.keySet());
+        Set<Long> ids = items.stream().map(OrderItem::getProductId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, String> categoryById = new HashMap<>();
+        productsRepository.findAllById(ids).forEach(product -> categoryById.put(product.getId(), product.getCategory()));
+        List<Sale> sales = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            int sign = signByOrder.get(item.getOrderId());
+            if (sign == 0 || item.getProductId() == null || item.getSubtotal() == null) {
+                continue;
+            }
+            long cents = item.getSubtotal().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+            sales.add(new Sale(item.getProductId(), categoryById.get(item.getProductId()),
+                    sign * cents, (long) sign * item.getQuantity()));
+        }
+        return sales;
+    }
+
+    synchronized void record(LocalDateTime at, List<Sale> sales) {
+        for (Sale sale : sales) {
+            int product = indexOf(sale.productId(), sale.category());
+            rings.forEach((granularity, ring) -> ring.add(granularity.bucketOf(at), product, sale.revenueCents(), sale.units()));
+            for (SalesGranularity granularity : SalesGranularity.PERSISTED) {
+                long[] delta = unflushed.computeIfAbsent(new RollupKey(granularity, granularity.bucketOf(at), product),
+                        key -> new long[2]);
+                delta[0] += sale.revenueCents();
+                delta[1] += sale.units();
+            }
+        }
+    }
+
+    // latest known category wins, the table keeps the one at sale time
+    private int indexOf(long productId, String category) {
+        Integer index = productIndex.get(productId);
+        if (index == null) {
+            index = productCount++;
+            if (index == productIds.length) {
+                productIds = Arrays.copyOf(productIds, index * 2);
+                categories = Arrays.copyOf(categories, index * 2);
+            }
+            productIds[index] = productId;
+            productIndex.put(productId, index);
+        }
+        if (category != null) {
+            categories[index] = category;
+        }
+        return index;
+    }
+
+    /**
+     * Best sellers over the last window ("90m", "24h", "30d": that many minute/hour/day buckets, the current one
+     * included), by product or by category, ranked by revenue or units.
+     */
+    public List<SalesTotal> top(String by, String metric, String window, String category, int limit) {
+        return top(by, metric, window, category, limit, LocalDateTime.now());
+    }
+
+    List<SalesTotal> top(String by, String metric, String window, String category, int limit, LocalDateTime now) {
+        boolean byCategory = switch (by.toLowerCase(Locale.ROOT)) {
+            case "product" -> false;
+            case "category" -> true;
+            default -> throw new IllegalArgumentException("by must be product or category");
+        };
+        Comparator<SalesTotal> ranking = switch (metric.toLowerCase(Locale.ROOT)) {
+            case "revenue" -> Comparator.comparing(SalesTotal::revenue);
+            case "units" -> Comparator.comparingLong(SalesTotal::units);
+            default -> throw new IllegalArgumentException("metric must be revenue or units");
+        };
+        if (limit < 1 || limit > 1000) {
+            throw new IllegalArgumentException("limit must be between 1 and 1000");
+        }
+        Matcher matcher = WINDOW.matcher(window);
+        if (!matcher.matches() || Integer.parseInt(matcher.group(1)) == 0) {
+            throw new IllegalArgumentException("window must look like 90m, 24h or 30d");
+        }
+        SalesGranularity granularity = SalesGranularity.fromUnit(matcher.group(2));
+        int buckets = Integer.parseInt(matcher.group(1));
+        long current = granularity.bucketOf(now);
+
+        List<SalesRollupSum> sums = buckets <= rings.get(granularity).capacity()
+                ? sumFromMemory(granularity, current - buckets + 1, current)
+                : sumFromTable(granularity, current - buckets + 1, current);
+
+        Map<Object, SalesTotal> totals = new LinkedHashMap<>();
+        for (SalesRollupSum sum : sums) {
+            // fully reversed sales leave zero rows behind in the table
+            if ((category != null && !category.equals(sum.category())) || (sum.revenueCents() == 0 && sum.units() == 0)) {
+                continue;
+            }
+            Object key = byCategory ? Objects.requireNonNullElse(sum.category(), "") : sum.productId();
+            SalesTotal total = new SalesTotal(byCategory ? null : sum.productId(), sum.category(),
+                    toAmount(sum.revenueCents()), sum.units());
+            totals.merge(key, total, (a, b) -> new SalesTotal(a.productId(), a.category(),
+                    a.revenue().add(b.revenue()), a.units() + b.units()));
+        }
+        return totals.values().stream()
+                .sorted(ranking.reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private synchronized List<SalesRollupSum> sumFromMemory(SalesGranularity granularity, long from, long to) {
+        long[] revenueCents = new long[productCount];
+        long[] units = new long[productCount];
+        SalesBucketRing ring = rings.get(granularity);
+        for (long bucket = from; bucket <= to; bucket++) {
+            ring.sumInto(bucket, revenueCents, units);
+        }
+        List<SalesRollupSum> sums = new ArrayList<>();
+        for (int i = 0; i < productCount; i++) {
+            if (revenueCents[i] != 0 || units[i] != 0) {
+                sums.add(new SalesRollupSum(productIds[i], categories[i], revenueCents[i], units[i]));
+            }
+        }
+        return sums;
+    }
+
+    private List<SalesRollupSum> sumFromTable(SalesGranularity granularity, long from, long to) {
+        if (granularity == SalesGranularity.MINUTE) {
+            throw new IllegalArgumentException("minute windows only reach back "
+                    + rings.get(granularity).capacity() + " minutes, use hours");
+        }
+        return salesRollupRepository.sumByProduct(granularity.name(),
+                granularity.startOf(from), granularity.startOf(to + 1));
+    }
+
+    /**
+     * Revenue and units per bucket from the bucket holding from to the one holding to, every bucket included,
+     * optionally for one product or one category
+     */
+    public List<SalesPoint> series(String granularityParam, LocalDateTime from, LocalDateTime to,
+                                   Long productId, String category) {
+        return series(granularityParam, from, to, productId, category, LocalDateTime.now());
+    }
+
+    List<SalesPoint> series(String granularityParam, LocalDateTime from, LocalDateTime to,
+                            Long productId, String category, LocalDateTime now) {
+        SalesGranularity granularity = SalesGranularity.fromParam(granularityParam);
+        SalesBucketRing ring = rings.get(granularity);
+        long current = granularity.bucketOf(now);
+        long last = to != null ? granularity.bucketOf(to) : current;
+        long first = from != null ? granularity.bucketOf(from) : last - ring.capacity() + 1;
+        if (first > last) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (last - first >= MAX_SERIES_POINTS) {
+            throw new IllegalArgumentException("at most " + MAX_SERIES_POINTS + " points per series");
+        }
+
+        if (first > current - ring.capacity() && last <= current) {
+            return seriesFromMemory(granularity, first, last, productId, category);
+        }
+        if (granularity == SalesGranularity.MINUTE) {
+            throw new IllegalArgumentException("minute series only reach back " + ring.capacity() + " minutes");
+        }
+        Map<LocalDateTime, SalesRollupPoint> rows = new HashMap<>();
+        salesRollupRepository.series(granularity.name(), granularity.startOf(first), granularity.startOf(last + 1),
+                productId, category).forEach(row -> rows.put(row.bucketStart(), row));
+        List<SalesPoint> points = new ArrayList<>();
+        for (long bucket = first; bucket <= last; bucket++) {
+            SalesRollupPoint row = rows.get(granularity.startOf(bucket));
+            points.add(row == null
+                    ? new SalesPoint(granularity.startOf(bucket), toAmount(0), 0)
+                    : new SalesPoint(row.bucketStart(), toAmount(row.revenueCents()), row.units()));
+        }
+        return points;
+    }
+
+    private synchronized List<SalesPoint> seriesFromMemory(SalesGranularity granularity, long first, long last,
+                                                           Long productId, String category) {
+        boolean[] selected = new boolean[productCount];
+        for (int i = 0; i < productCount; i++) {
+            selected[i] = (productId == null || productIds[i] == productId)
+                    && (category == null || category.equals(categories[i]));
+        }
+        SalesBucketRing ring = rings.get(granularity);
+        long[] revenueCents = new long[productCount];
+        long[] units = new long[productCount];
+        List<SalesPoint> points = new ArrayList<>((int) (last - first + 1));
+        for (long bucket = first; bucket <= last; bucket++) {
+            Arrays.fill(revenueCents, 0);
+            Arrays.fill(units, 0);
+            ring.sumInto(bucket, revenueCents, units);
+            long bucketCents = 0;
+            long bucketUnits = 0;
+            for (int i = 0; i < productCount; i++) {
+                if (selected[i]) {
+                    bucketCents += revenueCents[i];
+                    bucketUnits += units[i];
+                }
+            }
+            points.add(new SalesPoint(granularity.startOf(bucket), toAmount(bucketCents), bucketUnits));
+        }
+        return points;
+    }
+
+    /**
+     * Loads the hour and day buckets the rings cover from sales_rollups; flushing starts after this
+     * so that a refresh cannot be counted twice
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            for (SalesGranularity granularity : SalesGranularity.PERSISTED) {
+                long oldest = granularity.bucketOf(now) - rings.get(granularity).capacity() + 1;
+                List<SalesRollup> rows = salesRollupRepository
+                        .findByGranularityAndBucketStartGreaterThanEqual(granularity.name(), granularity.startOf(oldest));
+                synchronized (this) {
+                    for (SalesRollup row : rows) {
+                        rings.get(granularity).add(granularity.bucketOf(row.getBucketStart()),
+                                indexOf(row.getProductId(), row.getCategory()), row.getRevenueCents(), row.getUnits());
+                    }
+                }
+                log.info("Loaded {} {} sales rollups", rows.size(), granularity.name().toLowerCase(Locale.ROOT));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not load sales rollups, hour and day windows start empty: {}", e.getMessage());
+        } finally {
+            warmedUp = true;
+        }
+    }
+
+    /**
+     * Adds the pending hour and day deltas to sales_rollups in one transaction, then refreshes the current and
+     * previous hour and day from the table so sales of other instances show up. On failure the deltas are kept
+     * for the next run; two instances inserting the same new row make one of them fail and retry.
+     */
+    @Scheduled(fixedDelayString = "${analytics.sales.flush-interval-ms:60000}",
+            initialDelayString = "${analytics.sales.flush-interval-ms:60000}")
+    public void flush() {
+        if (!warmedUp) {
+            return;
+        }
+        Map<RollupKey, long[]> batch;
+        Map<Integer, Long> ids = new HashMap<>();
+        Map<Integer, String> categoryByIndex = new HashMap<>();
+        synchronized (this) {
+            batch = unflushed;
+            unflushed = new HashMap<>();
+            for (RollupKey key : batch.keySet()) {
+                ids.put(key.product(), productIds[key.product()]);
+                categoryByIndex.put(key.product(), categories[key.product()]);
+            }
+        }
+        try {
+            if (!batch.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> batch.forEach((key, delta) -> {
+                    LocalDateTime bucketStart = key.granularity().startOf(key.bucket());
+                    Long productId = ids.get(key.product());
+                    String category = categoryByIndex.get(key.product());
+                    if (salesRollupRepository.addTo(key.granularity().name(), bucketStart, productId, category,
+                            delta[0], delta[1]) == 0) {
+                        salesRollupRepository.save(new SalesRollup(null, key.granularity().name(), bucketStart,
+                                productId, category, delta[0], delta[1]));
+                    }
+                }));
+                log.debug("Flushed {} sales rollup deltas", batch.size());
+            }
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+            log.warn("Could not flush {} sales rollup deltas, retrying next run: {}", batch.size(), e.getMessage());
+            synchronized (this) {
+                batch.forEach((key, delta) -> {
+                    long[] pending = unflushed.computeIfAbsent(key, k -> new long[2]);
+                    pending[0] += delta[0];
+                    pending[1] += delta[1];
+                });
+            }
+            return;
+        }
+        refreshRecentBuckets(LocalDateTime.now());
+    }
+
+    // in a read-write transaction so it reads the primary, the rows just written included
+    private void refreshRecentBuckets(LocalDateTime now) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (SalesGranularity granularity : SalesGranularity.PERSISTED) {
+                    long current = granularity.bucketOf(now);
+                    for (long bucket = current - 1; bucket <= current; bucket++) {
+                        List<SalesRollup> rows = salesRollupRepository
+                                .findByGranularityAndBucketStart(granularity.name(), granularity.startOf(bucket));
+                        replaceBucket(granularity, bucket, rows);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh recent sales rollups: {}", e.getMessage());
+        }
+    }
+
+    // table rows plus what this instance has not flushed since
+    private synchronized void replaceBucket(SalesGranularity granularity, long bucket, List<SalesRollup> rows) {
+        SalesBucketRing ring = rings.get(granularity);
+        ring.clear(bucket);
+        for (SalesRollup row : rows) {
+            ring.add(bucket, indexOf(row.getProductId(), row.getCategory()), row.getRevenueCents(), row.getUnits());
+        }
+        unflushed.forEach((key, delta) -> {
+            if (key.granularity() == granularity && key.bucket() == bucket) {
+                ring.add(bucket, key.product(), delta[0], delta[1]);
+            }
+        });
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    // rollups kept in memory until their next flush
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("analytics.sales.unflushed", this, s -> s.getUnflushedRollups()).register(registry);
+        counter(registry, "analytics.sales.flush.failures", this, s -> s.getFlushFailures());
+    }
+
+    synchronized int getUnflushedRollups() {
+        return unflushed.size();
+    }
+
+    long getFlushFailures() {
+        return flushFailures.get();
+    }
+
+    private static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // the sales of the orders a transaction changed, turned into ring updates once it commits
+    private class PendingSales implements TransactionSynchronization {
+
+        final Map<Long, Integer> signByOrder = new LinkedHashMap<>();
+        private List<Sale> sales = List.of();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // analytics must never fail a checkout
+            try {
+                sales = loadSales(signByOrder);
+            } catch (RuntimeException e) {
+                log.warn("Could not load sales of orders {}: {}", signByOrder.keySet(), e.getMessage());
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+            record(LocalDateTime.now(), sales);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(SalesAnalyticsService.this);
+        }
+    }
+}
+
+enum SalesGranularity {
+    MINUTE(1), HOUR(60), DAY(24 * 60);
+
+    // written to sales_rollups, minutes stay in memory
+    static final List<SalesGranularity> PERSISTED = List.of(HOUR, DAY);
+
+    private final long seconds;
+
+    SalesGranularity(long minutes) {
+        this.seconds = minutes * 60;
+    }
+
+    // buckets are counted on the local clock, the same one orders.created_at uses
+    long bucketOf(LocalDateTime at) {
+        return Math.floorDiv(at.toEpochSecond(ZoneOffset.UTC), seconds);
+    }
+
+    LocalDateTime startOf(long bucket) {
+        return LocalDateTime.ofEpochSecond(bucket * seconds, 0, ZoneOffset.UTC);
+    }
+
+    static SalesGranularity fromUnit(String unit) {
+        return switch (unit) {
+            case "m" -> MINUTE;
+            case "h" -> HOUR;
+            default -> DAY;
+        };
+    }
+
+    static SalesGranularity fromParam(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("granularity must be minute, hour or day");
+        }
+    }
+}
+
+// The last `capacity` buckets of one granularity as arrays indexed by product, bucket b lives in slot b % capacity.
+// A slot still holding an older bucket is zeroed when a newer one is written, so memory stays
+// capacity x products x 16 bytes; a slot's arrays are allocated on its first sale and grow with the catalog.
+// Not thread safe, SalesAnalyticsService guards it.
+class SalesBucketRing {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long[] buckets;
+    private final long[][] revenueCents;
+    private final long[][] units;
+
+    SalesBucketRing(int capacity) {
+        this.buckets = new long[capacity];
+        this.revenueCents = new long[capacity][];
+        this.units = new long[capacity][];
+        Arrays.fill(buckets, EMPTY);
+    }
+
+    int capacity() {
+        return buckets.length;
+    }
+
+    void add(long bucket, int product, long cents, long quantity) {
+        int slot = slotFor(bucket);
+        if (buckets[slot] > bucket) {
+            return; // older than what the ring keeps
+        }
+        if (buckets[slot] != bucket) {
+            buckets[slot] = bucket;
+            zero(slot);
+        }
+        if (revenueCents[slot] == null || product >= revenueCents[slot].length) {
+            int length = Math.max(product + 1, revenueCents[slot] == null ? 16 : revenueCents[slot].length * 2);
+            revenueCents[slot] = revenueCents[slot] == null ? new long[length] : Arrays.copyOf(revenueCents[slot], length);
+            units[slot] = units[slot] == null ? new long[length] : Arrays.copyOf(units[slot], length);
+        }
+        revenueCents[slot][product] += cents;
+        units[slot][product] += quantity;
+    }
+
+    void clear(long bucket) {
+        int slot = slotFor(bucket);
+        if (buckets[slot] == bucket) {
+            zero(slot);
+        }
+    }
+
+    // adds the bucket's totals per product, nothing when the ring does not hold it (no sales, or too old)
+    void sumInto(long bucket, long[] cents, long[] quantities) {
+        int slot = slotFor(bucket);
+        if (buckets[slot] != bucket || revenueCents[slot] == null) {
+            return;
+        }
+        int length = Math.min(revenueCents[slot].length, cents.length);
+        for (int i = 0; i < length; i++) {
+            cents[i] += revenueCents[slot][i];
+            quantities[i] += units[slot][i];
+        }
+    }
+
+    private int slotFor(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets.length);
+    }
+
+    private void zero(int slot) {
+        if (revenueCents[slot] != null) {
+            Arrays.fill(revenueCents[slot], 0);
+            Arrays.fill(units[slot], 0);
+        }
+    }
+}
+
+record Sale(long productId, String category, long revenueCents, long units) {
+}
+
+record RollupKey(SalesGranularity granularity, long bucket, int product) {
+}
+
+record SalesRollupSum(Long productId, String category, Long revenueCents, Long units) {
+}
+
+record SalesRollupPoint(LocalDateTime bucketStart, Long revenueCents, Long units) {
+}
+
+// API results, revenue in currency units (2 decimals)
+record SalesTotal(Long productId, String category, BigDecimal revenue, long units) {
+}
+
+record SalesPoint(LocalDateTime bucketStart, BigDecimal revenue, long units) {
+}
@@ -0,0 +1,44 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Paid sales of one product in one hour or day, kept up to date by SalesAnalyticsService
+// Amounts are cents in the order currency (KES), reversals (paid -> failed) are already netted in
+@Entity
+@Table(name = "sales_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_sales_rollups_bucket",
+                columnNames = { "granularity", "bucket_start", "product_id" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // HOUR or DAY
+    @Column(name = "granularity", nullable = false, length = 10)
+    private String granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    // product category at the time of the sale
+    @Column(name = "category")
+    private String category;
+
+    @Column(name = "revenue_cents", nullable = false)
+    private long revenueCents;
+
+    @Column(name = "units", nullable = false)
+    private long units;
+}
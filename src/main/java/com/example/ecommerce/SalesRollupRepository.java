@@ -0,0 +1,41 @@
+package com.example.ecommerce;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+
+    // adds a delta to an existing row, 0 when there is none yet (the caller inserts it then)
+    @Modifying
+    @Query("UPDATE SalesRollup r SET r.revenueCents = r.revenueCents + :revenueCents, r.units = r.units + :units, "
+            + "r.category = COALESCE(:category, r.category) "
+            + "WHERE r.granularity = :granularity AND r.bucketStart = :bucketStart AND r.productId = :productId")
+    int addTo(@Param("granularity") String granularity, @Param("bucketStart") LocalDateTime bucketStart,
+              @Param("productId") Long productId, @Param("category") String category,
+              @Param("revenueCents") long revenueCents, @Param("units") long units);
+
+    List<SalesRollup> findByGranularityAndBucketStartGreaterThanEqual(String granularity, LocalDateTime from);
+
+    List<SalesRollup> findByGranularityAndBucketStart(String granularity, LocalDateTime bucketStart);
+
+    @Query("SELECT new com.example.ecommerce.SalesRollupSum(r.productId, MAX(r.category), SUM(r.revenueCents), SUM(r.units)) "
+            + "FROM SalesRollup r WHERE r.granularity = :granularity AND r.bucketStart >= :from AND r.bucketStart < :to "
+            + "GROUP BY r.productId")
+    List<SalesRollupSum> sumByProduct(@Param("granularity") String granularity,
+                                      @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT new com.example.ecommerce.SalesRollupPoint(r.bucketStart, SUM(r.revenueCents), SUM(r.units)) "
+            + "FROM SalesRollup r WHERE r.granularity = :granularity AND r.bucketStart >= :from AND r.bucketStart < :to "
+            + "AND (:productId IS NULL OR r.productId = :productId) AND (:category IS NULL OR r.category = :category) "
+            + "GROUP BY r.bucketStart ORDER BY r.bucketStart")
+    List<SalesRollupPoint> series(@Param("granularity") String granularity,
+                                  @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                  @Param("productId") Long productId, @Param("category") String category);
+}
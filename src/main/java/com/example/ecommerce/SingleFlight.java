@@ -0,0 +1,82 @@
+package com.example.ecommerce;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Coalesces identical concurrent calls: the first caller for a key runs the loader on its own thread, callers
+// arriving while it runs wait for that result (or its exception) instead of running the loader again.
+// Nothing is kept once the call completes, so this flattens bursts without being a cache.
+class SingleFlight<K, V> {
+
+    private final long timeoutMs;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    SingleFlight(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Result of loader, or of the call for the same key already running. Waiting callers give up after the timeout,
+     * the running call is not interrupted.
+     */
+    V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            shared.incrementAndGet();
+            return await(key, running);
+        }
+        executed.incrementAndGet();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> running) {
+        try {
+            return running.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out after " + timeoutMs + " ms waiting for " + key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for " + key, e);
+        }
+    }
+
+    // calls that ran the loader
+    long getExecuted() {
+        return executed.get();
+    }
+
+    // calls that got another call's result, i.e. loader runs saved
+    long getShared() {
+        return shared.get();
+    }
+
+    int getInFlight() {
+        return inFlight.size();
+    }
+}
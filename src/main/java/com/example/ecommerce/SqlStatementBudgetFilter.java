@@ -0,0 +1,102 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// SQL Statement Budget - counts the statements each request runs and warns when it goes over budget
+// Also records per-endpoint statement count and DB time, which is where N+1 regressions show first
+@Component
+@Slf4j
+public class SqlStatementBudgetFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxStatements;
+    private final long maxDbTimeMs;
+
+    // one pair of meters per method + uri template, looked up once
+    private final Map<String, RequestMeters> meters = new ConcurrentHashMap<>();
+
+    public SqlStatementBudgetFilter(MeterRegistry meterRegistry,
+                                    @Value("${sql.budget.enabled:true}") boolean enabled,
+                                    @Value("${sql.budget.max-statements:25}") int maxStatements,
+                                    @Value("${sql.budget.max-db-time-ms:250}") long maxDbTimeMs) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxStatements = maxStatements;
+        this.maxDbTimeMs = maxDbTimeMs;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            chain.doFilter(request, response);
+
+            if (scope.getStatementCount() == 0) {
+                return;
+            }
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            RequestMeters requestMeters = meters.computeIfAbsent(request.getMethod() + " " + uri,
+                    key -> new RequestMeters(request.getMethod(), uri));
+            requestMeters.statements.record(scope.getStatementCount());
+            requestMeters.dbTime.record(scope.getDbTimeNanos(), TimeUnit.NANOSECONDS);
+
+            if (scope.getStatementCount() > maxStatements || scope.getDbTimeMillis() > maxDbTimeMs) {
+                log.warn("SQL budget exceeded: {} {} ran {} statements in {} ms (budget {} statements / {} ms)",
+                        request.getMethod(), request.getRequestURI(), scope.getStatementCount(),
+                        scope.getDbTimeMillis(), maxStatements, maxDbTimeMs);
+            }
+        }
+    }
+
+    private class RequestMeters {
+        final DistributionSummary statements;
+        final Timer dbTime;
+
+        RequestMeters(String method, String uri) {
+            statements = DistributionSummary.builder("http.server.requests.db.statements")
+                    .description("JDBC statements executed per request")
+                    .tags("method", method, "uri", uri)
+                    .register(meterRegistry);
+            dbTime = Timer.builder("http.server.requests.db.time")
+                    .description("Time spent executing JDBC statements per request")
+                    .tags("method", method, "uri", uri)
+                    .register(meterRegistry);
+        }
+    }
+}
+
+@Configuration
+class SqlStatementCounterConfig {
+
+    // Hibernate instantiates the listener for every session it opens
+    @Bean
+    HibernatePropertiesCustomizer sqlStatementCounterListener() {
+        return properties -> properties.put("hibernate.session.events.auto", SqlStatementCounter.Listener.class.getName());
+    }
+}
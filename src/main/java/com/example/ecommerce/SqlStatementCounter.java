@@ -0,0 +1,121 @@
+package com.example.ecommerce;
+
+import org.hibernate.SessionEventListener;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread count of JDBC statements and the time spent executing them.
+ * SqlStatementBudgetFilter opens a scope per HTTP request; tests open their own:
+ *
+ * <pre>
+ * try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+ *     cartService.getCartBySessionId("abc");
+ *     assertThat(scope.getStatementCount()).isLessThanOrEqualTo(2);
+ * }
+ * </pre>
+ *
+ * Scopes nest, a statement is counted in every open scope on the thread.
+ * Work handed to another thread (async, streaming bodies) is not counted.
+ */
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    public static Scope open() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Runs the action and fails with an AssertionError if it issued more than maxStatements statements
+     */
+    public static <T> T assertAtMost(int maxStatements, Supplier<T> action) {
+        try (Scope scope = open()) {
+            T result = action.get();
+            if (scope.getStatementCount() > maxStatements) {
+                throw new AssertionError("Expected at most " + maxStatements + " SQL statements but "
+                        + scope.getStatementCount() + " were executed");
+            }
+            return result;
+        }
+    }
+
+    static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    static void record(long nanos) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.statements++;
+            scope.nanos += nanos;
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+        private int statements;
+        private long nanos;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        public int getStatementCount() {
+            return statements;
+        }
+
+        public long getDbTimeNanos() {
+            return nanos;
+        }
+
+        public long getDbTimeMillis() {
+            return nanos / 1_000_000;
+        }
+
+        @Override
+        public void close() {
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+            }
+        }
+    }
+
+    /**
+     * Hibernate creates one per session (hibernate.session.events.auto). Sessions are thread-confined,
+     * so the start timestamp needs no synchronization, and nothing is timed outside an open scope.
+     */
+    public static class Listener implements SessionEventListener {
+
+        private long start;
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            start = isActive() ? System.nanoTime() : 0;
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            if (start != 0) {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            jdbcExecuteStatementStart();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            jdbcExecuteStatementEnd();
+        }
+    }
+}
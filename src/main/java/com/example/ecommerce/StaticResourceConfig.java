@@ -0,0 +1,84 @@
+package com.example.ecommerce;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Static Resource Config - cache policy for what StaticAssetPipeline produces at build time
+// /assets/** names carry a content hash, so they are cached for a year and never revalidated.
+// The HTML shell is revalidated on every visit, a matching ETag costs a 304 and no body.
+// Both serve the prebuilt .br/.gz variant picked by Accept-Encoding (Vary: Accept-Encoding).
+// Product image originals (/images/**, also the redirect target of ProductImageController) keep their names when
+// replaced, so they are cached for spring.web.resources.cache.cachecontrol.max-age and revalidated by Last-Modified;
+// they are looked up in image.variants.originals-dir first, like ProductImageService does.
+@Configuration
+class StaticResourceConfig implements WebMvcConfigurer {
+
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+    private final String originalsDir;
+    private final Duration imagesMaxAge;
+
+    StaticResourceConfig(@Value("${image.variants.originals-dir:}") String originalsDir,
+                         @Value("${spring.web.resources.cache.cachecontrol.max-age:7d}") Duration imagesMaxAge) {
+        this.originalsDir = originalsDir;
+        this.imagesMaxAge = imagesMaxAge;
+    }
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler("/assets/**")
+                .addResourceLocations("classpath:/static/assets/")
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .setUseLastModified(false)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+
+        registry.addResourceHandler("/index.html", "/payment-succes.html")
+                .addResourceLocations("classpath:/static/")
+                .setCacheControl(CacheControl.noCache())
+                .setUseLastModified(false)
+                .setEtagGenerator(this::etag)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+
+        List<String> images = new ArrayList<>();
+        if (!originalsDir.isBlank()) {
+            images.add(Path.of(originalsDir).toUri().toString());
+        }
+        images.add("classpath:/static/images/");
+        registry.addResourceHandler("/images/**")
+                .addResourceLocations(images.toArray(String[]::new))
+                .setCacheControl(CacheControl.maxAge(imagesMaxAge).cachePublic());
+    }
+
+    // classpath resources do not change while the app runs, hash each variant once
+    private String etag(Resource resource) {
+        try {
+            return etags.computeIfAbsent(resource.getURL().toString(), url -> {
+                try (InputStream in = resource.getInputStream()) {
+                    return DigestUtils.md5DigestAsHex(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            return null;
+        }
+    }
+}
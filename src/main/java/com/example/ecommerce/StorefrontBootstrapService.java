@@ -0,0 +1,181 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// Storefront Bootstrap Service - what the storefront needs on first load, in one response
+// Categories, the first product page and the featured products are the same for every visitor: they are loaded
+// concurrently, kept for catalog-ttl-ms and shared by all sessions (requests arriving while a part loads wait for
+// that same load). Only the cart summary is per session. All parts share one deadline, part-timeout-ms after the
+// request started; a part that misses it or fails is left null and listed in "missing", and the page falls back
+// to the single-purpose endpoint for it. Each part runs in its own read-only transaction, on the bootstrap pool:
+// its threads bound how many connections bootstrap holds at once, parts beyond that wait in its queue.
+@Service
+@Slf4j
+public class StorefrontBootstrapService implements DisposableBean, MeterBinder {
+
+    static final String CATEGORIES = "categories";
+    static final String PRODUCTS = "products";
+    static final String FEATURED = "featured";
+    static final String CART = "cart";
+
+    private final ProductService productService;
+    private final CategoryService categoryService;
+    private final CartService cartService;
+    private final int pageSize;
+    private final long catalogTtlMs;
+    private final long partTimeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, SharedPart<?>> shared = new ConcurrentHashMap<>();
+
+    // metrics
+    private final AtomicLong missingParts = new AtomicLong();
+
+    public StorefrontBootstrapService(ProductService productService,
+                                      CategoryService categoryService,
+                                      CartService cartService,
+                                      @Value("${storefront.bootstrap.page-size:24}") int pageSize,
+                                      @Value("${storefront.bootstrap.catalog-ttl-ms:10000}") long catalogTtlMs,
+                                      @Value("${storefront.bootstrap.part-timeout-ms:800}") long partTimeoutMs,
+                                      @Value("${storefront.bootstrap.threads:3}") int threads) {
+        this.productService = productService;
+        this.categoryService = categoryService;
+        this.cartService = cartService;
+        this.pageSize = pageSize;
+        this.catalogTtlMs = catalogTtlMs;
+        this.partTimeoutMs = partTimeoutMs;
+        AtomicInteger count = new AtomicInteger();
+        // bounded queue: when it is full parts are reported missing instead of piling up
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16), runnable -> {
+                    Thread thread = new Thread(runnable, "bootstrap-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * The shared catalog parts plus the cart summary of sessionId (no cart without a session)
+     */
+    public StorefrontBootstrap bootstrap(String sessionId) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(partTimeoutMs);
+        CompletableFuture<List<CategoryDTO>> categories = sharedPart(CATEGORIES, categoryService::getAllActiveCategories);
+        CompletableFuture<ProductPage> products = sharedPart(PRODUCTS, () -> productService.getActiveProductsPage(pageSize));
+        CompletableFuture<List<ProductDTO>> featured = sharedPart(FEATURED, productService::getFeaturedProducts);
+        CompletableFuture<CartSummary> cart = sessionId == null || sessionId.isBlank()
+                ? CompletableFuture.completedFuture(null)
+                : submit(() -> CartSummary.of(cartService.getCartBySessionId(sessionId)));
+
+        List<String> missing = new ArrayList<>();
+        StorefrontBootstrap bootstrap = new StorefrontBootstrap(
+                await(CATEGORIES, categories, deadline, missing),
+                await(PRODUCTS, products, deadline, missing),
+                await(FEATURED, featured, deadline, missing),
+                await(CART, cart, deadline, missing),
+                missing);
+        if (!missing.isEmpty()) {
+            missingParts.addAndGet(missing.size());
+            log.warn("Storefront bootstrap without {}", missing);
+        }
+        return bootstrap;
+    }
+
+    // reuses the load in progress or the last one younger than catalog-ttl-ms; failed loads are not kept
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> sharedPart(String name, Supplier<T> loader) {
+        try {
+            return (CompletableFuture<T>) shared.compute(name, (key, current) -> {
+                long now = System.nanoTime();
+                if (current != null && !current.future().isCompletedExceptionally()
+                        && now - current.startedAt() < TimeUnit.MILLISECONDS.toNanos(catalogTtlMs)) {
+                    return current;
+                }
+                return new SharedPart<>(submit(loader), now);
+            }).future();
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> loader) {
+        try {
+            return CompletableFuture.supplyAsync(loader, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> T await(String name, CompletableFuture<T> part, long deadline, List<String> missing) {
+        try {
+            return part.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            missing.add(name);
+        } catch (ExecutionException e) {
+            log.warn("Storefront bootstrap part {} failed: {}", name, e.getCause().getMessage());
+            missing.add(name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            missing.add(name);
+        }
+        return null;
+    }
+
+    // parts left out of the response (timed out or failed)
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "storefront.bootstrap.missing", this, s -> s.getMissingParts());
+    }
+
+    public long getMissingParts() {
+        return missingParts.get();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private record SharedPart<T>(CompletableFuture<T> future, long startedAt) {
+    }
+}
+
+// parts are null when missing, see StorefrontBootstrapService
+record StorefrontBootstrap(List<CategoryDTO> categories, ProductPage products, List<ProductDTO> featured,
+                           CartSummary cart, List<String> missing) {
+}
+
+// first page of GET /api/products, hasMore tells the page to load the rest from there
+record ProductPage(List<ProductDTO> items, int total, boolean hasMore) {
+}
+
+// enough for the cart badge, the cart itself still comes from GET /api/cart/{sessionId} when opened
+record CartSummary(String sessionId, int totalItems, BigDecimal totalAmount) {
+
+    static CartSummary of(CartDTO cart) {
+        return new CartSummary(cart.getSessionId(),
+                cart.getTotalItems() != null ? cart.getTotalItems() : 0,
+                cart.getTotalAmount() != null ? cart.getTotalAmount() : BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.ecommerce;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+// One round trip for the storefront's first paint instead of categories + products + cart separately
+@RestController
+@RequestMapping("/api/storefront")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+public class StorefrontController {
+
+    private final StorefrontBootstrapService storefrontBootstrapService;
+
+    // GET /api/storefront/bootstrap?sessionId=...  Parts that were not ready in time are null and listed in "missing"
+    @GetMapping("/bootstrap")
+    public ResponseEntity<ApiResponse<StorefrontBootstrap>> bootstrap(@RequestParam(required = false) String sessionId) {
+        try {
+            StorefrontBootstrap bootstrap = storefrontBootstrapService.bootstrap(sessionId);
+            // carries the session's cart, so never in a shared cache
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(ApiResponse.success(bootstrap.missing().isEmpty()
+                            ? "Storefront loaded" : "Storefront partially loaded", bootstrap));
+        } catch (Exception e) {
+            log.error("Error bootstrapping storefront", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to load storefront"));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.ecommerce.ApplicationMetrics.counter;
+
+// Webhook Event Processor - drains queued IntaSend events into order status updates
+// a batch is deduped by checkout id (latest final state wins) and applied in one transaction
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookEventProcessor implements MeterBinder {
+
+    private final OrderService orderService;
+
+    private final AtomicLong processedEvents = new AtomicLong();
+    private final AtomicLong duplicateEvents = new AtomicLong();
+
+    public void process(List<WebhookEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        Map<String, WebhookEvent> latest = new LinkedHashMap<>();
+        for (WebhookEvent event : events) {
+            String key = event.getCheckoutId() != null ? event.getCheckoutId() : event.getApiRef();
+            if (key == null) {
+                log.warn("Dropping webhook event without checkout id or api_ref");
+                continue;
+            }
+            WebhookEvent previous = latest.get(key);
+            if (previous != null) {
+                duplicateEvents.incrementAndGet();
+                // a late PENDING must not undo a FAILED seen earlier in the batch, nothing undoes a COMPLETED
+                if (rank(event.getState()) < rank(previous.getState())) {
+                    continue;
+                }
+            }
+            latest.put(key, event);
+        }
+
+        List<UpdateOrderStatusRequest> updates = new ArrayList<>(latest.size());
+        for (WebhookEvent event : latest.values()) {
+            String paymentStatus = toPaymentStatus(event.getState());
+            if (paymentStatus != null) {
+                updates.add(new UpdateOrderStatusRequest(event.getApiRef(), event.getCheckoutId(),
+                        event.getTrackingId(), paymentStatus));
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            orderService.applyPaymentUpdates(updates);
+        }
+        processedEvents.addAndGet(events.size());
+        log.info("Processed {} webhook events ({} order updates)", events.size(), updates.size());
+    }
+
+    // events taken off the queue, and those collapsed into another event of the same checkout
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "webhook.events.processed", this, p -> p.getProcessedEvents());
+        counter(registry, "webhook.events.duplicates", this, p -> p.getDuplicateEvents());
+    }
+
+    public long getProcessedEvents() {
+        return processedEvents.get();
+    }
+
+    public long getDuplicateEvents() {
+        return duplicateEvents.get();
+    }
+
+    // same order OrderService accepts payment statuses in: a failed attempt can still be retried and completed
+    private static int rank(String state) {
+        String status = toPaymentStatus(state);
+        if ("COMPLETED".equals(status)) {
+            return 2;
+        }
+        return "FAILED".equals(status) ? 1 : 0;
+    }
+
+    // IntaSend checkout states -> the payment statuses the frontend already writes
+    static String toPaymentStatus(String state) {
+        if (state == null) {
+            return null;
+        }
+        switch (state.toUpperCase()) {
+            case "COMPLETE":
+            case "COMPLETED":
+                return "COMPLETED";
+            case "FAILED":
+                return "FAILED";
+            case "PENDING":
+            case "PROCESSING":
+                return "PENDING";
+            default:
+                return null;
+        }
+    }
+}
+
+// Raw IntaSend webhook event as it sits on the queue
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+class WebhookEvent {
+    private String checkoutId;
+    private String apiRef;
+    private String trackingId;
+    private String state;
+    private String rawPayload;
+    private long receivedAtMillis;
+}
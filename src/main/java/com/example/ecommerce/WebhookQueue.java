@@ -0,0 +1,179 @@
+package com.example.ecommerce;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.RejectAndDontRequeueRecoverer;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Durable hand-off between the webhook endpoint and WebhookEventProcessor
+// enqueue must return quickly: the endpoint acknowledges IntaSend as soon as it succeeds
+public interface WebhookQueue {
+
+    /**
+     * Persist the event, throws if it could not be queued (IntaSend will redeliver)
+     */
+    void enqueue(WebhookEvent event);
+}
+
+// RabbitMQ queue (default). Publisher confirms make enqueue return only once the broker has the event
+@Component
+@ConditionalOnProperty(name = "webhook.queue.type", havingValue = "rabbit", matchIfMissing = true)
+@Slf4j
+class RabbitWebhookQueue implements WebhookQueue {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final WebhookEventProcessor processor;
+    private final String queueName;
+    private final long confirmTimeoutMs;
+
+    RabbitWebhookQueue(RabbitTemplate rabbitTemplate,
+                       WebhookEventProcessor processor,
+                       @Value("${webhook.queue.name:intasend.webhooks}") String queueName,
+                       @Value("${webhook.queue.confirm-timeout-ms:2000}") long confirmTimeoutMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.processor = processor;
+        this.queueName = queueName;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+    }
+
+    @Override
+    public void enqueue(WebhookEvent event) {
+        CorrelationData correlation = new CorrelationData(UUID.randomUUID().toString());
+        rabbitTemplate.convertAndSend("", queueName, event, correlation);
+        try {
+            CorrelationData.Confirm confirm = correlation.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+            if (!confirm.isAck()) {
+                throw new IllegalStateException("Broker rejected webhook event: " + confirm.getReason());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing webhook event", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Webhook event was not confirmed by the broker", e);
+        }
+    }
+
+    @RabbitListener(queues = "${webhook.queue.name:intasend.webhooks}", containerFactory = "webhookBatchContainerFactory")
+    public void onEvents(List<WebhookEvent> events) {
+        processor.process(events);
+    }
+}
+
+// In-process stand-in for tests and local runs without a broker. Bounded, not durable
+@Component
+@ConditionalOnProperty(name = "webhook.queue.type", havingValue = "memory")
+@Slf4j
+class InMemoryWebhookQueue implements WebhookQueue {
+
+    private final BlockingQueue<WebhookEvent> events;
+    private final WebhookEventProcessor processor;
+    private final int batchSize;
+
+    InMemoryWebhookQueue(WebhookEventProcessor processor,
+                         @Value("${webhook.queue.capacity:10000}") int capacity,
+                         @Value("${webhook.queue.batch-size:100}") int batchSize) {
+        this.events = new ArrayBlockingQueue<>(capacity);
+        this.processor = processor;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void enqueue(WebhookEvent event) {
+        if (!events.offer(event)) {
+            throw new IllegalStateException("Webhook queue is full");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${webhook.queue.poll-interval-ms:200}")
+    public void drain() {
+        List<WebhookEvent> batch = new ArrayList<>(batchSize);
+        while (events.drainTo(batch, batchSize) > 0) {
+            try {
+                processor.process(batch);
+            } catch (Exception e) {
+                // no retry and no dead letter queue here: the batch is lost, IntaSend was already acknowledged.
+                // Fine for tests and local runs, production uses the broker's dead letter queue
+                log.error("Failed to process {} webhook events: {}", batch.size(), e.getMessage(), e);
+            }
+            batch.clear();
+        }
+    }
+}
+
+@Configuration
+class WebhookQueueConfig {
+
+    @Bean
+    MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter("com.example.ecommerce");
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "webhook.queue.type", havingValue = "rabbit", matchIfMissing = true)
+    Queue webhookQueue(@Value("${webhook.queue.name:intasend.webhooks}") String queueName) {
+        // rejected batches are routed to <name>.dlq through the default exchange
+        return QueueBuilder.durable(queueName)
+                .deadLetterExchange("")
+                .deadLetterRoutingKey(deadLetterQueueName(queueName))
+                .build();
+    }
+
+    // events of batches that failed max-attempts times, kept for inspection and manual replay
+    @Bean
+    @ConditionalOnProperty(name = "webhook.queue.type", havingValue = "rabbit", matchIfMissing = true)
+    Queue webhookDeadLetterQueue(@Value("${webhook.queue.name:intasend.webhooks}") String queueName) {
+        return QueueBuilder.durable(deadLetterQueueName(queueName)).build();
+    }
+
+    // consumer batches: up to batch-size events per listener call, flushed after receive-timeout.
+    // A failing batch is retried in-process max-attempts times with backoff, then rejected without requeue so it
+    // goes to the dead letter queue instead of being redelivered forever
+    @Bean
+    @ConditionalOnProperty(name = "webhook.queue.type", havingValue = "rabbit", matchIfMissing = true)
+    SimpleRabbitListenerContainerFactory webhookBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${webhook.queue.batch-size:100}") int batchSize,
+            @Value("${webhook.queue.max-attempts:3}") int maxAttempts) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize * 2);
+        factory.setReceiveTimeout(500L);
+        factory.setDefaultRequeueRejected(false);
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(maxAttempts)
+                .backOffOptions(500L, 2.0, 5000L)
+                .recoverer(new RejectAndDontRequeueRecoverer())
+                .build());
+        return factory;
+    }
+
+    static String deadLetterQueueName(String queueName) {
+        return queueName + ".dlq";
+    }
+}
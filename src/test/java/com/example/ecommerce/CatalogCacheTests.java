@@ -0,0 +1,114 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// every repository call runs in its own transaction, like separate requests
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.session.events.auto=com.example.ecommerce.SqlStatementCounter$Listener"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogCacheTests {
+
+	@Autowired
+	private ProductsRepository productsRepository;
+
+	@Autowired
+	private CategoryRepository categoryRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Long productId;
+
+	@BeforeEach
+	void createProduct() {
+		Products product = new Products();
+		product.setName("Cached product");
+		product.setPrice(BigDecimal.TEN);
+		product.setCategory("Test");
+		product.setStockQuantity(10);
+		productId = productsRepository.save(product).getId();
+		entityManagerFactory.getCache().evictAll();
+	}
+
+	@AfterEach
+	void cleanUp() {
+		productsRepository.deleteAll();
+		categoryRepository.deleteAll();
+	}
+
+	@Test
+	void repeatedFindByIdIsServedFromTheCache() {
+		assertThat(countStatements(() -> productsRepository.findById(productId))).isEqualTo(1);
+		assertThat(countStatements(() -> productsRepository.findById(productId))).isZero();
+		assertThat(statistics().getDomainDataRegionStatistics(Products.class.getName()).getHitCount()).isPositive();
+	}
+
+	@Test
+	void updatesAreVisibleWithoutGoingToTheDatabase() {
+		Products product = productsRepository.findById(productId).orElseThrow();
+		product.setStockQuantity(3);
+		productsRepository.save(product);
+
+		try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+			assertThat(productsRepository.findById(productId).orElseThrow().getStockQuantity()).isEqualTo(3);
+			assertThat(scope.getStatementCount()).isZero();
+		}
+	}
+
+	@Test
+	void queryCacheIsInvalidatedByWritesToTheTable() {
+		assertThat(countStatements(() -> categoryRepository.findByIsActiveTrue())).isEqualTo(1);
+		assertThat(countStatements(() -> categoryRepository.findByIsActiveTrue())).isZero();
+
+		Category category = new Category();
+		category.setName("New category");
+		categoryRepository.save(category);
+
+		try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+			List<Category> categories = categoryRepository.findByIsActiveTrue();
+			assertThat(categories).extracting(Category::getName).contains("New category");
+			assertThat(scope.getStatementCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void stockUpdateReadsBypassTheCache() {
+		productsRepository.findById(productId);
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		assertThat(countStatements(() -> transaction.executeWithoutResult(status ->
+				productsRepository.findAllByIdForUpdate(List.of(productId))))).isEqualTo(1);
+	}
+
+	private long countStatements(Runnable action) {
+		try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+			action.run();
+			return scope.getStatementCount();
+		}
+	}
+
+	private Statistics statistics() {
+		return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+}
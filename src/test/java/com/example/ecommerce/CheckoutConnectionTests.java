@@ -0,0 +1,154 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// anything on the checkout path that suspends the caller's transaction checks out a second pooled connection,
+// so saveOrder runs against a DataSource that counts them. No test transaction, the order commits for real.
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({ OrderService.class, CustomerService.class, OutboxService.class, CheckoutConnectionTests.Counting.class })
+class CheckoutConnectionTests {
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private OutboxEventRepository outboxEventRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	// the upsert is PostgreSQL only (ON CONFLICT ... RETURNING), it resolves to a customer created here
+	@MockitoBean
+	private CustomerRepository customerRepository;
+
+	@MockitoBean
+	private CartService cartService;
+
+	@MockitoBean
+	private IntaSendGateway intaSendGateway;
+
+	@MockitoBean
+	private SalesAnalyticsService salesAnalyticsService;
+
+	@MockitoBean
+	private ProductChangeStream productChangeStream;
+
+	private Long productId;
+
+	@BeforeEach
+	void createCustomerAndProduct() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Customer customer = new Customer();
+			customer.setCustomerEmail("jane@example.com");
+			entityManager.persist(customer);
+			when(customerRepository.upsertCustomer(any(), any(), any(), any())).thenReturn(customer.getId());
+
+			Products product = new Products();
+			product.setName("Phone");
+			product.setCategory("Phones");
+			product.setPrice(BigDecimal.TEN);
+			product.setStockQuantity(10);
+			entityManager.persist(product);
+			productId = product.getId();
+		});
+	}
+
+	@Test
+	void checkoutUsesExactlyOneConnection() {
+		AtomicInteger connections = ((CountingDataSource) dataSource).connections;
+		connections.set(0);
+
+		OrderDTO order = orderService.saveOrder(confirmation());
+
+		assertThat(connections).hasValue(1);
+		assertThat(orderRepository.findById(order.getId())).isPresent();
+		assertThat(outboxEventRepository.count()).isEqualTo(2);
+	}
+
+	private OrderConfirmationRequest confirmation() {
+		OrderConfirmationRequest request = new OrderConfirmationRequest();
+		request.setApiRef("ORDER-1");
+		request.setAmount(20.0);
+		request.setCurrency("KES");
+		request.setPaymentStatus("COMPLETED");
+		request.setCustomerEmail("jane@example.com");
+		request.setCustomerInfo(new OrderConfirmationRequest.CustomerInfo("Jane", "Doe", "jane@example.com", null));
+		request.setItems(List.of(new OrderConfirmationRequest.CartItemData(productId, "Phone", 10.0, 2, null)));
+		return request;
+	}
+
+	static class CountingDataSource extends DelegatingDataSource {
+
+		final AtomicInteger connections = new AtomicInteger();
+
+		CountingDataSource(DataSource target) {
+			super(target);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			connections.incrementAndGet();
+			return super.getConnection();
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			connections.incrementAndGet();
+			return super.getConnection(username, password);
+		}
+	}
+
+	@TestConfiguration(proxyBeanMethods = false)
+	static class Counting {
+
+		@Bean
+		static BeanPostProcessor countingDataSource() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					return bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)
+							? new CountingDataSource(dataSource) : bean;
+				}
+			};
+		}
+	}
+
+}
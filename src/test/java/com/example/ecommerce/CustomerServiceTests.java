@@ -0,0 +1,68 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerServiceTests {
+
+	@Test
+	void repeatBuyerIsResolvedFromTheCache() {
+		CustomerRepository repository = mock(CustomerRepository.class);
+		when(repository.upsertCustomer(any(), any(), any(), any())).thenReturn(42L);
+		CustomerService service = new CustomerService(repository, 100);
+
+		Customer first = service.findOrCreateCustomer("Jane", "Doe", "jane@example.com", "0700000000");
+		Customer second = service.findOrCreateCustomer("Jane", "Doe", "jane@example.com", "0700000000");
+
+		assertThat(first.getId()).isEqualTo(42L);
+		assertThat(second.getId()).isEqualTo(42L);
+		verify(repository, times(1)).upsertCustomer(any(), any(), any(), any());
+	}
+
+	@Test
+	void changedNameOrPhoneIsWrittenDespiteTheCachedId() {
+		CustomerRepository repository = mock(CustomerRepository.class);
+		when(repository.upsertCustomer(any(), any(), any(), any())).thenReturn(42L);
+		CustomerService service = new CustomerService(repository, 100);
+
+		service.findOrCreateCustomer("Jane", "Doe", "jane@example.com", "0700000000");
+		service.findOrCreateCustomer("Jane", "Doe", "jane@example.com", "0711111111");
+		service.findOrCreateCustomer("Jane", "Smith", "jane@example.com", "0711111111");
+		// a missing phone keeps the stored one, nothing to write
+		service.findOrCreateCustomer("Jane", "Smith", "jane@example.com", null);
+
+		verify(repository).upsertCustomer("Jane", "Doe", "jane@example.com", "0711111111");
+		verify(repository).upsertCustomer("Jane", "Smith", "jane@example.com", "0711111111");
+		verify(repository, times(3)).upsertCustomer(any(), any(), any(), any());
+	}
+
+	@Test
+	void customerIdIsOnlyCachedOnceTheTransactionCommits() {
+		CustomerRepository repository = mock(CustomerRepository.class);
+		when(repository.upsertCustomer(any(), any(), any(), any())).thenReturn(7L);
+		CustomerService service = new CustomerService(repository, 100);
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			service.findOrCreateCustomer("John", "Doe", "john@example.com", null);
+			service.findOrCreateCustomer("John", "Doe", "john@example.com", null);
+			verify(repository, times(2)).upsertCustomer(any(), any(), any(), any());
+
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		service.findOrCreateCustomer("John", "Doe", "john@example.com", null);
+		verify(repository, times(2)).upsertCustomer(any(), any(), any(), any());
+	}
+
+}
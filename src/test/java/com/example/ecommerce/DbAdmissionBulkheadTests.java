@@ -0,0 +1,128 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class DbAdmissionBulkheadTests {
+
+	private final DbAdmissionBulkhead bulkhead = new DbAdmissionBulkhead(1, 50);
+	private final StubDataSource pool = new StubDataSource();
+	private final DataSource gated = (DataSource) bulkhead.postProcessAfterInitialization(pool, "dataSource");
+
+	@Test
+	void closingTheConnectionReturnsThePermit() throws SQLException {
+		Connection connection = gated.getConnection();
+		assertThat(bulkhead.getAvailablePermits()).isZero();
+
+		connection.close();
+
+		assertThat(bulkhead.getAvailablePermits()).isEqualTo(1);
+		verify(pool.last).close();
+		gated.getConnection().close();
+	}
+
+	@Test
+	void closingTwiceReturnsThePermitOnce() throws SQLException {
+		Connection connection = gated.getConnection();
+
+		connection.close();
+		connection.close();
+
+		assertThat(bulkhead.getAvailablePermits()).isEqualTo(1);
+		// a second close is still passed on, the pool ignores it
+		verify(pool.last, times(2)).close();
+	}
+
+	@Test
+	void failedGetConnectionGivesThePermitBack() {
+		pool.failing = true;
+
+		assertThatThrownBy(gated::getConnection).isInstanceOf(SQLException.class).hasMessage("pool exhausted");
+
+		assertThat(bulkhead.getAvailablePermits()).isEqualTo(1);
+		assertThat(bulkhead.getRejected()).isZero();
+	}
+
+	@Test
+	void waiterIsRejectedAfterMaxWait() throws SQLException {
+		Connection held = gated.getConnection();
+		long start = System.nanoTime();
+
+		assertThatThrownBy(gated::getConnection)
+				.isInstanceOf(SQLTransientConnectionException.class)
+				.hasMessageContaining("within 50 ms");
+
+		assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+		assertThat(bulkhead.getRejected()).isEqualTo(1);
+		assertThat(bulkhead.getQueueLength()).isZero();
+		held.close();
+		assertThat(bulkhead.getAvailablePermits()).isEqualTo(1);
+	}
+
+	@Test
+	void unwrapToConnectionKeepsTheGatedProxy() throws SQLException {
+		Connection connection = gated.getConnection();
+
+		connection.unwrap(Connection.class).close();
+
+		assertThat(bulkhead.getAvailablePermits()).isEqualTo(1);
+	}
+
+	@Test
+	void everyPoolHasItsOwnPermits() throws SQLException {
+		DataSource replica = bulkhead.gate(new StubDataSource(), 1);
+
+		Connection fromPrimary = gated.getConnection();
+		Connection fromReplica = replica.getConnection();
+
+		assertThat(bulkhead.getAvailablePermits()).isZero();
+		assertThatThrownBy(gated::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+		fromPrimary.close();
+		fromReplica.close();
+		assertThat(bulkhead.getAvailablePermits()).isEqualTo(2);
+	}
+
+	@Test
+	void primaryIsGatedBeforeTheReplicaRoutingProxyWrapsIt() {
+		// ReadReplicaRouting runs at LOWEST_PRECEDENCE
+		assertThat(bulkhead.getOrder()).isLessThan(Ordered.LOWEST_PRECEDENCE);
+		LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(new StubDataSource());
+
+		assertThat(bulkhead.postProcessAfterInitialization(routing, "dataSource")).isSameAs(routing);
+	}
+
+	static class StubDataSource extends AbstractDataSource {
+
+		boolean failing;
+		Connection last;
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			if (failing) {
+				throw new SQLException("pool exhausted");
+			}
+			last = mock(Connection.class);
+			return last;
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			return getConnection();
+		}
+	}
+
+}
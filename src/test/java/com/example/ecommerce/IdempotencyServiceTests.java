@@ -0,0 +1,232 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTests {
+
+	private final IdempotencyRecordRepository repository = mock(IdempotencyRecordRepository.class);
+	private final IdempotencyService service = new IdempotencyService(repository, new ObjectMapper(), 100, 5_000, 60_000, 48);
+	private final AtomicInteger runs = new AtomicInteger();
+
+	private static final Map<String, Object> CART = Map.of("apiRef", "ORDER-1", "amount", 20);
+
+	@BeforeEach
+	void keysAreFree() {
+		when(repository.claim(any(), any(), any(), any())).thenReturn(1);
+		when(repository.complete(any(), any(), anyInt(), any())).thenReturn(1);
+	}
+
+	@Test
+	void firstCallRunsTheRequestAndStoresItsResponse() {
+		ResponseEntity<?> response = service.execute("confirm", "ORDER-1", CART, this::created);
+
+		assertThat(runs).hasValue(1);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(response.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+		ArgumentCaptor<String> claim = ArgumentCaptor.forClass(String.class);
+		verify(repository).claim(eq("confirm:ORDER-1"), any(), claim.capture(), any());
+		verify(repository).complete("confirm:ORDER-1", claim.getValue(), 201, "{\"apiRef\":\"ORDER-1\"}");
+	}
+
+	@Test
+	void repeatIsReplayedWithoutRunningTheRequestAgain() {
+		service.execute("confirm", "ORDER-1", CART, this::created);
+
+		ResponseEntity<?> replayed = service.execute("confirm", " ORDER-1 ", CART, this::created);
+
+		assertThat(runs).hasValue(1);
+		assertThat(replayed.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+		assertThat(replayed.getBody()).isEqualTo("{\"apiRef\":\"ORDER-1\"}");
+		verify(repository, times(1)).claim(any(), any(), any(), any());
+	}
+
+	@Test
+	void keyStoredByAnotherInstanceIsReplayedFromTheTable() {
+		when(repository.claim(any(), any(), any(), any())).thenReturn(0);
+		when(repository.findById("confirm:ORDER-1")).thenReturn(Optional.of(stored(null, 201, LocalDateTime.now())));
+
+		ResponseEntity<?> replayed = service.execute("confirm", "ORDER-1", CART, this::created);
+
+		assertThat(runs).hasValue(0);
+		assertThat(replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+	}
+
+	@Test
+	void duplicateOfAnInFlightRequestSharesItsResponseMarkedAsReplayed() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread first = new Thread(() -> service.execute("confirm", "ORDER-1", CART, () -> {
+			started.countDown();
+			await(release);
+			return created();
+		}));
+		first.start();
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		AtomicReference<ResponseEntity<?>> joined = new AtomicReference<>();
+		Thread duplicate = new Thread(() -> joined.set(service.execute("confirm", "ORDER-1", CART, this::created)));
+		duplicate.start();
+		// parked on the in-flight future, not answered from the cache
+		while (duplicate.getState() != Thread.State.TIMED_WAITING) {
+			assertThat(duplicate.isAlive()).isTrue();
+			Thread.onSpinWait();
+		}
+		release.countDown();
+		first.join(5_000);
+		duplicate.join(5_000);
+
+		assertThat(runs).hasValue(1);
+		assertThat(joined.get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(joined.get().getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+		assertThat(joined.get().getBody()).isEqualTo(Map.of("apiRef", "ORDER-1"));
+	}
+
+	@Test
+	void otherKeysAndScopesRunTheirOwnRequest() {
+		service.execute("confirm", "ORDER-1", CART, this::created);
+
+		ResponseEntity<?> otherKey = service.execute("confirm", "ORDER-2", CART, this::created);
+		ResponseEntity<?> otherScope = service.execute("checkout", "ORDER-1", CART, this::created);
+
+		assertThat(runs).hasValue(3);
+		assertThat(otherKey.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+		assertThat(otherScope.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+	}
+
+	@Test
+	void keyReusedForADifferentRequestIsRefused() {
+		service.execute("confirm", "ORDER-1", CART, this::created);
+
+		ResponseEntity<?> changedCart = service.execute("confirm", "ORDER-1", Map.of("apiRef", "ORDER-1", "amount", 30),
+				this::created);
+
+		assertThat(runs).hasValue(1);
+		assertThat(changedCart.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+		assertThat(changedCart.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+	}
+
+	@Test
+	void storedRecordOfADifferentRequestIsNotReplayed() {
+		IdempotencyRecord stored = stored("0".repeat(64), 201, LocalDateTime.now());
+		stored.setResponseBody("{\"customerEmail\":\"jane@example.com\"}");
+		when(repository.claim(any(), any(), any(), any())).thenReturn(0);
+		when(repository.findById("confirm:ORDER-1")).thenReturn(Optional.of(stored));
+
+		ResponseEntity<?> response = service.execute("confirm", "ORDER-1", CART, this::created);
+
+		assertThat(runs).hasValue(0);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+		assertThat(response.getBody()).asString().doesNotContain("jane@example.com");
+	}
+
+	@Test
+	void failedResponsesAreNotStoredSoTheClientCanRetry() {
+		service.execute("confirm", "ORDER-1", CART, () -> {
+			runs.incrementAndGet();
+			return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+		});
+		ResponseEntity<?> retried = service.execute("confirm", "ORDER-1", CART, this::created);
+
+		assertThat(runs).hasValue(2);
+		assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		verify(repository, times(1)).release(eq("confirm:ORDER-1"), any());
+		verify(repository, times(1)).complete(any(), any(), anyInt(), any());
+	}
+
+	@Test
+	void duplicateOnAnotherInstanceWaitsForTheClaimInsteadOfRunning() {
+		when(repository.claim(any(), any(), any(), any())).thenReturn(0);
+		when(repository.findById("confirm:ORDER-1")).thenReturn(
+				Optional.of(stored(null, IdempotencyRecord.IN_PROGRESS, LocalDateTime.now())),
+				Optional.of(stored(null, 201, LocalDateTime.now())));
+
+		ResponseEntity<?> replayed = service.execute("confirm", "ORDER-1", CART, this::created);
+
+		assertThat(runs).hasValue(0);
+		assertThat(replayed.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+		verify(repository, times(2)).findById("confirm:ORDER-1");
+	}
+
+	@Test
+	void expiredClaimIsTakenOver() {
+		IdempotencyRecord abandoned = stored(null, IdempotencyRecord.IN_PROGRESS, LocalDateTime.now().minusMinutes(5));
+		abandoned.setClaimedBy("gone");
+		when(repository.claim(any(), any(), any(), any())).thenReturn(0, 1);
+		when(repository.findById("confirm:ORDER-1")).thenReturn(Optional.of(abandoned));
+
+		ResponseEntity<?> response = service.execute("confirm", "ORDER-1", CART, this::created);
+
+		assertThat(runs).hasValue(1);
+		assertThat(response.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+		verify(repository).release("confirm:ORDER-1", "gone");
+	}
+
+	@Test
+	void resultStoredByTheInstanceThatTookTheKeyOverWins() {
+		when(repository.complete(any(), any(), anyInt(), any())).thenReturn(0);
+		when(repository.findById("confirm:ORDER-1")).thenReturn(Optional.of(stored(null, 200, LocalDateTime.now())));
+
+		ResponseEntity<?> response = service.execute("confirm", "ORDER-1", CART, this::created);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+	}
+
+	@Test
+	void failedRequestReleasesItsClaim() {
+		assertThatThrownBy(() -> service.execute("confirm", "ORDER-1", CART, () -> {
+			throw new IllegalStateException("database down");
+		})).isInstanceOf(IllegalStateException.class);
+
+		verify(repository).release(eq("confirm:ORDER-1"), any());
+	}
+
+	private static IdempotencyRecord stored(String requestHash, int statusCode, LocalDateTime createdAt) {
+		IdempotencyRecord record = new IdempotencyRecord();
+		record.setIdempotencyKey("confirm:ORDER-1");
+		record.setRequestHash(requestHash);
+		record.setStatusCode(statusCode);
+		record.setResponseBody("{\"apiRef\":\"ORDER-1\"}");
+		record.setCreatedAt(createdAt);
+		return record;
+	}
+
+	private ResponseEntity<?> created() {
+		runs.incrementAndGet();
+		return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("apiRef", "ORDER-1"));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
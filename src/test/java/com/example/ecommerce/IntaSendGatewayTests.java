@@ -0,0 +1,157 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IntaSendGatewayTests {
+
+	private static final long OPEN_DURATION_MS = 200;
+
+	@Test
+	void breakerOpensOnceTheFailureRateIsReachedAndRejectsWithoutCalling() {
+		IntaSendGateway gateway = gateway("http://127.0.0.1:1", 5, 1);
+		AtomicInteger calls = new AtomicInteger();
+
+		succeed(gateway, calls);
+		succeed(gateway, calls);
+		fail(gateway, calls);
+		assertThat(gateway.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+		fail(gateway, calls);
+
+		// 2 of 4 calls failed, the 50% threshold is reached
+		assertThat(gateway.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThatThrownBy(() -> gateway.call("GET /status", true, calls::incrementAndGet))
+				.isInstanceOf(GatewayUnavailableException.class)
+				.hasMessageContaining("temporarily unavailable");
+		assertThat(calls).hasValue(4);
+		assertThat(gateway.snapshot()).containsEntry("rejectedByBreaker", 1L);
+	}
+
+	@Test
+	void halfOpenBreakerClosesAfterEnoughTrialCallsSucceed() throws InterruptedException {
+		IntaSendGateway gateway = openGateway();
+		Thread.sleep(OPEN_DURATION_MS + 50);
+
+		AtomicInteger calls = new AtomicInteger();
+		succeed(gateway, calls);
+		assertThat(gateway.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+		succeed(gateway, calls);
+
+		assertThat(gateway.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+		assertThat(gateway.getCircuitBreaker().getFailureRate()).isZero();
+	}
+
+	@Test
+	void failedTrialCallReopensTheBreaker() throws InterruptedException {
+		IntaSendGateway gateway = openGateway();
+		Thread.sleep(OPEN_DURATION_MS + 50);
+
+		fail(gateway, new AtomicInteger());
+
+		assertThat(gateway.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(gateway.getCircuitBreaker().getTransitions())
+				.containsEntry("OPEN", 2L)
+				.containsEntry("HALF_OPEN", 1L);
+	}
+
+	@Test
+	void clientErrorsDoNotOpenTheBreaker() {
+		IntaSendGateway gateway = gateway("http://127.0.0.1:1", 5, 1);
+
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> gateway.call("POST /checkout/", false, () -> {
+				throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+			})).isInstanceOf(HttpClientErrorException.class);
+		}
+
+		assertThat(gateway.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+	@Test
+	void fullBulkheadRejectsWithoutCountingAgainstTheBreaker() throws Exception {
+		IntaSendGateway gateway = gateway("http://127.0.0.1:1", 1, 1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Object> inFlight = CompletableFuture.supplyAsync(() -> gateway.call("GET /status", true, () -> {
+			started.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "done";
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		try {
+			assertThatThrownBy(() -> gateway.call("GET /status", true, () -> "second"))
+					.isInstanceOf(GatewayUnavailableException.class)
+					.hasMessageContaining("busy");
+		} finally {
+			release.countDown();
+		}
+
+		assertThat(inFlight.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+		assertThat(gateway.snapshot())
+				.containsEntry("rejectedByBulkhead", 1L)
+				.containsEntry("availableConcurrentCalls", 1);
+		assertThat(gateway.getCircuitBreaker().getFailureRate()).isZero();
+	}
+
+	// nothing listens on port 1, every attempt fails to connect
+	@Test
+	void postIsNeverRetriedButGetIs() {
+		IntaSendGateway gateway = gateway("http://127.0.0.1:1", 5, 3);
+
+		assertThatThrownBy(() -> gateway.post("/checkout/", Map.of("amount", 10)))
+				.isInstanceOf(ResourceAccessException.class);
+		assertThat(gateway.getRetriedCalls()).isZero();
+		assertThat(gateway.getFailedCalls()).isEqualTo(1);
+
+		assertThatThrownBy(() -> gateway.get("/checkout/details/"))
+				.isInstanceOf(ResourceAccessException.class);
+		assertThat(gateway.getRetriedCalls()).isEqualTo(2);
+		assertThat(gateway.getFailedCalls()).isEqualTo(2);
+	}
+
+	private static IntaSendGateway openGateway() {
+		IntaSendGateway gateway = gateway("http://127.0.0.1:1", 5, 1);
+		AtomicInteger calls = new AtomicInteger();
+		for (int i = 0; i < 4; i++) {
+			fail(gateway, calls);
+		}
+		assertThat(gateway.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		return gateway;
+	}
+
+	// breaker over the last 4 calls, opens at 50% failures, 2 trial calls when half-open
+	private static IntaSendGateway gateway(String apiUrl, int maxConcurrentCalls, int retryMaxAttempts) {
+		return new IntaSendGateway("test-key", apiUrl, 500, 500, maxConcurrentCalls, 10,
+				4, 4, 50, OPEN_DURATION_MS, 2, retryMaxAttempts, 1, new SimpleMeterRegistry());
+	}
+
+	private static void succeed(IntaSendGateway gateway, AtomicInteger calls) {
+		gateway.call("GET /status", true, calls::incrementAndGet);
+	}
+
+	private static void fail(IntaSendGateway gateway, AtomicInteger calls) {
+		assertThatThrownBy(() -> gateway.call("GET /status", true, () -> {
+			calls.incrementAndGet();
+			throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+		})).isInstanceOf(HttpServerErrorException.class);
+	}
+
+}
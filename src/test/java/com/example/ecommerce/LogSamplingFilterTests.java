@@ -0,0 +1,65 @@
+package com.example.ecommerce;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// rates of 0 and 1 make every decision deterministic
+class LogSamplingFilterTests {
+
+	private final LoggerContext context = new LoggerContext();
+	private final LogSamplingFilter filter = new LogSamplingFilter();
+
+	@BeforeEach
+	void start() {
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.DEBUG);
+		filter.setRates("com.example.ecommerce=0, com.example.ecommerce.OrderService=1");
+		filter.start();
+	}
+
+	@Test
+	void longestMatchingLoggerPrefixWins() {
+		assertThat(decide("com.example.ecommerce.OrderService", Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+		// a prefix of a class name, not the class itself
+		assertThat(decide("com.example.ecommerce.OrderServiceTests", Level.INFO)).isEqualTo(FilterReply.DENY);
+		assertThat(decide("com.example.ecommerce.CartService", Level.DEBUG)).isEqualTo(FilterReply.DENY);
+	}
+
+	@Test
+	void loggersWithoutARateAreNotSampled() {
+		assertThat(decide("org.hibernate.SQL", Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+	}
+
+	@Test
+	void warningsAndErrorsAlwaysPass() {
+		assertThat(decide("com.example.ecommerce.CartService", Level.WARN)).isEqualTo(FilterReply.NEUTRAL);
+		assertThat(decide("com.example.ecommerce.CartService", Level.ERROR)).isEqualTo(FilterReply.NEUTRAL);
+	}
+
+	@Test
+	void levelChecksAndDisabledLevelsAreLeftToTheLogger() {
+		Logger logger = context.getLogger("com.example.ecommerce.CartService");
+
+		assertThat(filter.decide(null, logger, Level.INFO, null, null, null)).isEqualTo(FilterReply.NEUTRAL);
+		logger.setLevel(Level.INFO);
+		assertThat(decide("com.example.ecommerce.CartService", Level.DEBUG)).isEqualTo(FilterReply.NEUTRAL);
+	}
+
+	@Test
+	void ratesAreClampedAndReplacedAsAWhole() {
+		filter.setRates("com.example=5,org.hibernate=-1");
+
+		assertThat(decide("com.example.ecommerce.CartService", Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+		assertThat(decide("org.hibernate.SQL", Level.INFO)).isEqualTo(FilterReply.DENY);
+	}
+
+	private FilterReply decide(String loggerName, Level level) {
+		return filter.decide(null, context.getLogger(loggerName), level, "message {}", new Object[] { 1 }, null);
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class OrderControllerWebhookTests {
+
+	private final WebhookQueue webhookQueue = mock(WebhookQueue.class);
+	private final OrderController controller = new OrderController();
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void controller() {
+		ReflectionTestUtils.setField(controller, "webhookQueue", webhookQueue);
+		ReflectionTestUtils.setField(controller, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(controller, "webhookChallenge", "s3cret");
+		mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+	}
+
+	@Test
+	void webhookWithTheConfiguredChallengeIsQueued() throws Exception {
+		webhook("{\"id\":\"CHK-1\",\"state\":\"COMPLETE\",\"challenge\":\"s3cret\"}", 200);
+
+		verify(webhookQueue).enqueue(any(WebhookEvent.class));
+	}
+
+	@Test
+	void webhookWithAWrongOrMissingChallengeIsRejected() throws Exception {
+		webhook("{\"id\":\"CHK-1\",\"state\":\"COMPLETE\",\"challenge\":\"guess\"}", 401);
+		webhook("{\"id\":\"CHK-1\",\"state\":\"COMPLETE\"}", 401);
+
+		verify(webhookQueue, never()).enqueue(any());
+	}
+
+	@Test
+	void noConfiguredChallengeRejectsEveryWebhook() throws Exception {
+		ReflectionTestUtils.setField(controller, "webhookChallenge", "");
+
+		webhook("{\"id\":\"CHK-1\",\"state\":\"COMPLETE\",\"challenge\":\"\"}", 401);
+
+		verify(webhookQueue, never()).enqueue(any());
+	}
+
+	private void webhook(String body, int expectedStatus) throws Exception {
+		mockMvc.perform(post("/api/orders/webhook/intasend").contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().is(expectedStatus));
+	}
+
+}
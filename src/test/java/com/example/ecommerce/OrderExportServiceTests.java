@@ -0,0 +1,116 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class OrderExportServiceTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	private OrderExportService exportService;
+
+	private final LocalDateTime from = LocalDate.now().atStartOfDay();
+	private final LocalDateTime to = from.plusDays(1);
+
+	@BeforeEach
+	void createOrders() {
+		exportService = new OrderExportService(orderRepository, objectMapper, 1);
+
+		Customer customer = new Customer();
+		customer.setCustomerFirstName("=HYPERLINK(\"x\")");
+		customer.setCustomerLastName("Otieno, Jr");
+		customer.setCustomerEmail("export@example.com");
+		customer.setCustomerPhone("+254700000000");
+		entityManager.persist(customer);
+
+		Order withItems = order(customer, "EXP-1", "1500.00");
+		entityManager.persist(item(withItems, "Phone", "1000.00", 1));
+		entityManager.persist(item(withItems, "Case", "250.00", 2));
+		order(customer, "EXP-2", "10.00");
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@Test
+	void ndjsonHasOneLinePerOrderWithItsItemsNested() throws Exception {
+		String[] lines = export(OrderExportService.ExportFormat.NDJSON).split("\n");
+
+		assertThat(lines).hasSize(2);
+		JsonNode first = objectMapper.readTree(lines[0]);
+		assertThat(first.get("apiRef").asText()).isEqualTo("EXP-1");
+		assertThat(first.get("totalAmount").decimalValue()).isEqualByComparingTo("1500");
+		assertThat(first.get("customer").get("email").asText()).isEqualTo("export@example.com");
+		assertThat(first.get("items")).hasSize(2);
+		assertThat(first.get("items").get(1).get("quantity").asInt()).isEqualTo(2);
+		JsonNode second = objectMapper.readTree(lines[1]);
+		assertThat(second.get("apiRef").asText()).isEqualTo("EXP-2");
+		assertThat(second.get("items")).isEmpty();
+	}
+
+	@Test
+	void csvHasOneLinePerItemAndIsSafeToOpenInASpreadsheet() throws Exception {
+		String[] lines = export(OrderExportService.ExportFormat.CSV).split("\r\n");
+
+		assertThat(lines).hasSize(4);
+		assertThat(lines[0]).isEqualTo(CsvOrderWriter.HEADER);
+		assertThat(lines[1]).contains(",EXP-1,")
+				.contains(",\"'=HYPERLINK(\"\"x\"\")\",\"Otieno, Jr\",export@example.com,+254700000000,")
+				.endsWith(",Phone,1000.00,1,1000.00");
+		assertThat(lines[3]).contains(",EXP-2,").endsWith(",,,,,");
+	}
+
+	@Test
+	void ordersOutsideTheRangeAreLeftOut() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long orders = exportService.export(to, to.plusDays(1), OrderExportService.ExportFormat.NDJSON, out);
+
+		assertThat(orders).isZero();
+		assertThat(out.size()).isZero();
+	}
+
+	private String export(OrderExportService.ExportFormat format) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertThat(exportService.export(from, to, format, out)).isEqualTo(2);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	private Order order(Customer customer, String apiRef, String total) {
+		Order order = new Order();
+		order.setApiRef(apiRef);
+		order.setCustomer(customer);
+		order.setTotalAmount(new BigDecimal(total));
+		entityManager.persist(order);
+		return order;
+	}
+
+	private static OrderItem item(Order order, String name, String price, int quantity) {
+		OrderItem item = new OrderItem();
+		item.setOrderId(order.getId());
+		item.setProductName(name);
+		item.setPrice(new BigDecimal(price));
+		item.setQuantity(quantity);
+		item.setSubtotal(new BigDecimal(price).multiply(BigDecimal.valueOf(quantity)));
+		return item;
+	}
+
+}
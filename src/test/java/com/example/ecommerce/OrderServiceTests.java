@@ -0,0 +1,83 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderServiceTests {
+
+	private final OrderRepository orderRepository = mock(OrderRepository.class);
+	private final SalesAnalyticsService salesAnalyticsService = mock(SalesAnalyticsService.class);
+	private final OutboxService outboxService = mock(OutboxService.class);
+
+	private OrderService orderService;
+	private Order order;
+
+	@BeforeEach
+	void createOrder() {
+		orderService = new OrderService(orderRepository, mock(OrderItemRepository.class), mock(ProductsRepository.class),
+				mock(CartService.class), mock(CustomerRepository.class), mock(CustomerService.class),
+				mock(IntaSendGateway.class), outboxService, salesAnalyticsService, mock(ProductChangeStream.class));
+		order = new Order();
+		order.setId(1L);
+		order.setApiRef("ORDER-1");
+		when(orderRepository.findByApiRefInForUpdate(anyCollection())).thenReturn(List.of(order));
+	}
+
+	@Test
+	void redeliveredPendingDoesNotReopenACompletedOrder() {
+		assertThat(orderService.applyPaymentUpdates(List.of(update("COMPLETED")))).isEqualTo(1);
+		assertThat(orderService.applyPaymentUpdates(List.of(update("PENDING")))).isZero();
+
+		assertThat(order.getPaymentStatus()).isEqualTo("COMPLETED");
+		verify(salesAnalyticsService, times(1)).recordPaymentStatusChange(any(), any());
+		verify(salesAnalyticsService, never()).recordPaymentStatusChange(any(), eq("COMPLETED"));
+		verify(outboxService, times(1)).record(any(), any(), any(), any());
+	}
+
+	@Test
+	void paymentRetriedAfterAFailedAttemptCompletesTheOrder() {
+		orderService.applyPaymentUpdates(List.of(update("FAILED")));
+		assertThat(orderService.applyPaymentUpdates(List.of(update("COMPLETED")))).isEqualTo(1);
+
+		assertThat(order.getPaymentStatus()).isEqualTo("COMPLETED");
+		verify(salesAnalyticsService).recordPaymentStatusChange(any(), eq("FAILED"));
+	}
+
+	@Test
+	void completedOrderIgnoresALateFailure() {
+		orderService.applyPaymentUpdates(List.of(update("COMPLETED")));
+		assertThat(orderService.applyPaymentUpdates(List.of(update("FAILED")))).isZero();
+
+		assertThat(order.getPaymentStatus()).isEqualTo("COMPLETED");
+	}
+
+	@Test
+	void onlyForwardTransitionsAreApplied() {
+		assertThat(OrderService.isForwardTransition("PENDING", "PENDING")).isTrue();
+		assertThat(OrderService.isForwardTransition("PENDING", "COMPLETED")).isTrue();
+		assertThat(OrderService.isForwardTransition("PENDING", "FAILED")).isTrue();
+		assertThat(OrderService.isForwardTransition("COMPLETED", "COMPLETED")).isTrue();
+		assertThat(OrderService.isForwardTransition("COMPLETED", "PENDING")).isFalse();
+		assertThat(OrderService.isForwardTransition("COMPLETED", "FAILED")).isFalse();
+		assertThat(OrderService.isForwardTransition("FAILED", "COMPLETED")).isTrue();
+		assertThat(OrderService.isForwardTransition("FAILED", "PENDING")).isTrue();
+		assertThat(OrderService.isForwardTransition("PENDING", null)).isFalse();
+	}
+
+	private static UpdateOrderStatusRequest update(String paymentStatus) {
+		return new UpdateOrderStatusRequest("ORDER-1", "CHK-1", "TRK-1", paymentStatus);
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.example.ecommerce;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTests {
+
+	private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+	private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+	private final OutboxRelay relay = new OutboxRelay(repository, rabbitTemplate, mock(PlatformTransactionManager.class),
+			"ecommerce.events", 200, 200, 60_000, 24);
+
+	// ids sent, in send order
+	private final List<Long> sent = new CopyOnWriteArrayList<>();
+	private Set<Long> nacked = Set.of();
+	private Set<Long> unconfirmed = Set.of();
+	private boolean brokerDown;
+
+	@BeforeEach
+	void broker() {
+		doAnswer(invocation -> {
+			CorrelationData correlation = invocation.getArgument(3);
+			long id = Long.parseLong(correlation.getId());
+			if (brokerDown) {
+				throw new AmqpConnectException(new ConnectException("Connection refused"));
+			}
+			sent.add(id);
+			if (!unconfirmed.contains(id)) {
+				correlation.getFuture().complete(new CorrelationData.Confirm(!nacked.contains(id), null));
+			}
+			return null;
+		}).when(rabbitTemplate).send(any(String.class), any(String.class), any(Message.class), any(CorrelationData.class));
+		when(repository.tryRelayLock(anyLong())).thenReturn(true);
+	}
+
+	@Test
+	void laterEventsOfAnOrderAreOnlySentOnceTheEarlierOnesAreConfirmed() {
+		List<Long> published = relay.publish(List.of(
+				event(1, "1"), event(2, "2"), event(3, "1"), event(4, "1"), event(5, "3")));
+
+		// one event per order per round
+		assertThat(sent).containsExactly(1L, 2L, 5L, 3L, 4L);
+		assertThat(published).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L);
+		assertThat(relay.getFailedEvents()).isZero();
+	}
+
+	@Test
+	void nackedEventHoldsBackTheRestOfItsOrderOnly() {
+		nacked = Set.of(1L);
+
+		List<Long> published = relay.publish(List.of(event(1, "1"), event(2, "2"), event(3, "1"), event(4, "2")));
+
+		assertThat(sent).containsExactly(1L, 2L, 4L);
+		assertThat(published).containsExactly(2L, 4L);
+		assertThat(relay.getFailedEvents()).isEqualTo(2);
+	}
+
+	@Test
+	void unconfirmedEventTimesOutAndHoldsBackItsOrder() {
+		unconfirmed = Set.of(2L);
+
+		List<Long> published = relay.publish(List.of(event(1, "1"), event(2, "2"), event(3, "2")));
+
+		assertThat(sent).doesNotContain(3L);
+		assertThat(published).containsExactly(1L);
+	}
+
+	@Test
+	void batchIsClaimedThenMarkedInSeparateTransactions() {
+		nacked = Set.of(2L);
+		when(repository.findByPublishedAtIsNullOrderByIdAsc(any(Pageable.class)))
+				.thenReturn(new ArrayList<>(List.of(event(1, "1"), event(2, "2"))));
+
+		relay.relay();
+
+		verify(repository).claim(eq(List.of(1L, 2L)), any());
+		verify(repository).markPublished(eq(List.of(1L)), any());
+		verify(repository).claim(eq(List.of(2L)), isNull());
+	}
+
+	@Test
+	void brokerThatIsDownCountsAsUnconfirmedAndReleasesTheClaim() {
+		brokerDown = true;
+		when(repository.findByPublishedAtIsNullOrderByIdAsc(any(Pageable.class)))
+				.thenReturn(new ArrayList<>(List.of(event(1, "1"), event(2, "2"), event(3, "1"))));
+
+		relay.relay();
+
+		verify(repository, never()).markPublished(anyList(), any());
+		verify(repository).claim(eq(List.of(1L, 2L, 3L)), isNull());
+		assertThat(relay.getFailedEvents()).isEqualTo(3);
+	}
+
+	@Test
+	void pendingEventsAreCountedWhenTheGaugeIsRead() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		relay.bindTo(registry);
+		when(repository.countByPublishedAtIsNull()).thenReturn(12L);
+
+		relay.relay();
+		verify(repository, never()).countByPublishedAtIsNull();
+
+		assertThat(registry.get("outbox.events.pending").gauge().value()).isEqualTo(12);
+	}
+
+	@Test
+	void nothingIsSentWhileAnotherRelayHoldsAClaim() {
+		when(repository.existsByPublishedAtIsNullAndClaimedUntilAfter(any())).thenReturn(true);
+
+		relay.relay();
+
+		verify(repository, never()).findByPublishedAtIsNullOrderByIdAsc(any());
+		verify(repository, never()).claim(anyList(), any());
+		assertThat(sent).isEmpty();
+	}
+
+	private static OutboxEvent event(long id, String orderId) {
+		OutboxEvent event = new OutboxEvent();
+		event.setId(id);
+		event.setAggregateType(OutboxService.ORDER);
+		event.setAggregateId(orderId);
+		event.setEventType("order.test");
+		event.setPayload("{}");
+		return event;
+	}
+
+}
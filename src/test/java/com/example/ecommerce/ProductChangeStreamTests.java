@@ -0,0 +1,178 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ProductChangeStreamTests {
+
+	private ProductChangeStream stream;
+	private MockMvc mockMvc;
+
+	@AfterEach
+	void stop() {
+		stream.destroy();
+	}
+
+	@Test
+	void burstOfChangesIsSentAsOneEventWithTheLatestStatePerProduct() throws Exception {
+		start(100, 10, 10);
+		MockHttpServletResponse response = subscribe("");
+
+		stream.fanOut(change(1L, "Phones", 5));
+		stream.fanOut(change(2L, "Audio", 9));
+		stream.fanOut(change(1L, "Phones", 4));
+		stream.fanOut(change(1L, "Phones", 3));
+
+		String events = awaitEvents(response, 1);
+		assertThat(events).contains("event:products");
+		assertThat(events).contains("\"id\":1,\"category\":\"Phones\",\"price\":100,\"stockQuantity\":3");
+		assertThat(events).contains("\"id\":2,");
+		assertThat(events).doesNotContain("\"stockQuantity\":5");
+		// counted once the send returns, which may be just after the body is visible here
+		awaitCondition(() -> stream.getSentEvents() == 1);
+		assertThat(stream.getSentEvents()).isEqualTo(1);
+	}
+
+	@Test
+	void categorySubscribersOnlyGetTheirCategories() throws Exception {
+		start(10, 10, 10);
+		MockHttpServletResponse response = subscribe("?category=phones,Tablets");
+
+		stream.fanOut(change(2L, "Audio", 9));
+		stream.fanOut(change(1L, "Phones", 5));
+
+		String events = awaitEvents(response, 1);
+		assertThat(events).contains("\"id\":1,").doesNotContain("\"id\":2,");
+	}
+
+	@Test
+	void clientThatFallsTooFarBehindIsDisconnected() throws Exception {
+		start(60_000, 2, 10);
+		subscribe("");
+
+		stream.fanOut(change(1L, "Phones", 1));
+		stream.fanOut(change(1L, "Phones", 2));
+		stream.fanOut(change(2L, "Phones", 1));
+		assertThat(stream.getSubscribers()).isEqualTo(1);
+
+		stream.fanOut(change(3L, "Phones", 1));
+		assertThat(stream.getSubscribers()).isZero();
+		assertThat(stream.getDroppedSubscribers()).isEqualTo(1);
+	}
+
+	@Test
+	void clientWhoseSendIsBlockedIsDroppedWithoutHoldingUpTheOthers() throws Exception {
+		// one writer for each client: dropping the stalled one must not need another
+		start(10, 10, 10, 100, 2);
+		CountDownLatch unblock = new CountDownLatch(1);
+		CountDownLatch completed = new CountDownLatch(1);
+		AtomicInteger sends = new AtomicInteger();
+		SseEmitter stalled = new SseEmitter() {
+			// "connected" goes through, then the client stops reading
+			@Override
+			public void send(SseEventBuilder builder) throws IOException {
+				if (sends.incrementAndGet() == 1) {
+					return;
+				}
+				try {
+					unblock.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IOException("Broken pipe");
+			}
+
+			@Override
+			public void complete() {
+				completed.countDown();
+			}
+		};
+		stream.subscribe(stalled, List.of());
+		MockHttpServletResponse response = subscribe("");
+		try {
+			stream.fanOut(change(1L, "Phones", 5));
+			awaitEvents(response, 1);
+
+			Thread.sleep(200);
+			stream.fanOut(change(1L, "Phones", 4));
+			assertThat(awaitEvents(response, 2)).contains("\"stockQuantity\":4");
+			awaitCondition(() -> stream.getDroppedSubscribers() == 1);
+			assertThat(stream.getDroppedSubscribers()).isEqualTo(1);
+			assertThat(stream.getSubscribers()).isEqualTo(1);
+			assertThat(completed.getCount()).isEqualTo(1);
+		} finally {
+			unblock.countDown();
+		}
+		// completed by its own send once that fails
+		assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void subscribersOverTheLimitAreTurnedAway() throws Exception {
+		start(10, 10, 1);
+		subscribe("");
+
+		mockMvc.perform(get("/api/products/stream"))
+				.andExpect(status().isServiceUnavailable());
+	}
+
+	private void start(long coalesceMs, int maxPending, int maxSubscribers) {
+		start(coalesceMs, maxPending, maxSubscribers, 10_000, 4);
+	}
+
+	private void start(long coalesceMs, int maxPending, int maxSubscribers, long writeTimeoutMs, int writerThreads) {
+		stream = new ProductChangeStream(new ObjectMapper(), coalesceMs, maxPending, maxSubscribers, 60_000, 60_000,
+				writeTimeoutMs, writerThreads);
+		mockMvc = MockMvcBuilders.standaloneSetup(new ProductController(null, null, stream)).build();
+	}
+
+	private MockHttpServletResponse subscribe(String query) throws Exception {
+		return mockMvc.perform(get("/api/products/stream" + query))
+				.andExpect(request().asyncStarted())
+				.andReturn()
+				.getResponse();
+	}
+
+	private static String awaitEvents(MockHttpServletResponse response, int events) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < deadline) {
+			String body = response.getContentAsString();
+			// an event is written in pieces, it is complete once the blank line after it is there
+			if (body.split("event:products", -1).length > events && body.endsWith("\n\n")) {
+				return body;
+			}
+			Thread.sleep(20);
+		}
+		return response.getContentAsString();
+	}
+
+	private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+	}
+
+	private static ProductChange change(Long id, String category, int stock) {
+		return new ProductChange(id, category, BigDecimal.valueOf(100), stock, "In Stock", true);
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductImageServiceTests {
+
+	@TempDir
+	Path originals;
+
+	@TempDir
+	Path cacheDir;
+
+	private final ProductsRepository productsRepository = mock(ProductsRepository.class);
+	private ProductImageService service;
+
+	@BeforeEach
+	void createService() throws IOException {
+		// versions are checked on every call
+		service = new ProductImageService(productsRepository, new SimpleAsyncTaskExecutor(), cacheDir, 64,
+				originals.toString(), 0, 1);
+		Products product = new Products();
+		product.setId(1L);
+		product.setImageUrl("/images/phone.png");
+		when(productsRepository.findById(1L)).thenReturn(Optional.of(product));
+	}
+
+	@Test
+	void replacingTheOriginalAtTheSamePathChangesTheVersion() throws IOException {
+		writeImage(400, 0);
+		ProductImageService.ImageFile first = service.getVariant(1L, ImageVariant.THUMBNAIL).orElseThrow();
+
+		writeImage(800, 1);
+		ProductImageService.ImageFile second = service.getVariant(1L, ImageVariant.THUMBNAIL).orElseThrow();
+
+		assertThat(second.version()).isNotEqualTo(first.version());
+		assertThat(second.path()).isNotEqualTo(first.path());
+		ProductDTO dto = new ProductDTO();
+		dto.setId(1L);
+		dto.setImageUrl("/images/phone.png");
+		service.applyVariantUrls(dto);
+		assertThat(dto.getThumbnailUrl()).endsWith("?v=" + second.version());
+	}
+
+	@Test
+	void brokenOriginalIsRetriedOnceReplaced() throws IOException {
+		Path file = originals.resolve("phone.png");
+		Files.writeString(file, "not an image");
+		assertThat(service.getVariant(1L, ImageVariant.CARD)).isEmpty();
+		assertThat(service.getVariant(1L, ImageVariant.CARD)).isEmpty();
+
+		writeImage(400, 1);
+		assertThat(service.getVariant(1L, ImageVariant.CARD)).isPresent();
+	}
+
+	@Test
+	void requestFindingEveryDecodeSlotTakenGetsNoVariantUntilOneFrees() throws IOException {
+		writeImage(400, 0);
+		Semaphore decodes = (Semaphore) ReflectionTestUtils.getField(service, "decodes");
+		decodes.acquireUninterruptibly();
+		try {
+			assertThat(service.getVariant(1L, ImageVariant.CARD)).isEmpty();
+		} finally {
+			decodes.release();
+		}
+
+		// not remembered as undecodable
+		assertThat(service.getVariant(1L, ImageVariant.CARD)).isPresent();
+		assertThat(decodes.availablePermits()).isEqualTo(1);
+	}
+
+	@Test
+	void evictedFilesAreDeletedOnlyAfterTheDelay() throws IOException {
+		DiskImageCache cache = new DiskImageCache(cacheDir.resolve("delayed"), 10, 60_000);
+		Path first = cache.put("a.jpg", out -> out.write(new byte[8]));
+		cache.put("b.jpg", out -> out.write(new byte[8]));
+
+		// a is out of the index, but a request may still be about to send it
+		assertThat(cache.get("a")).isEmpty();
+		assertThat(first).exists();
+
+		cache.deleteEvicted(System.nanoTime() + 60_000_000_000L);
+		assertThat(first).doesNotExist();
+		assertThat(cache.get("b")).isPresent();
+	}
+
+	@Test
+	void fileGeneratedAgainAfterItsEvictionIsKept() throws IOException {
+		DiskImageCache cache = new DiskImageCache(cacheDir.resolve("regenerated"), 10, 60_000);
+		cache.put("a.jpg", out -> out.write(new byte[8]));
+		Path b = cache.put("b.jpg", out -> out.write(new byte[8]));
+		// a was evicted by b, is generated again and evicts b in turn
+		Path again = cache.put("a.jpg", out -> out.write(new byte[8]));
+
+		cache.deleteEvicted(System.nanoTime() + 60_000_000_000L);
+		assertThat(again).exists();
+		assertThat(cache.get("a")).contains(again);
+		assertThat(b).doesNotExist();
+	}
+
+	private void writeImage(int width, int minutesLater) throws IOException {
+		Path file = originals.resolve("phone.png");
+		ImageIO.write(new BufferedImage(width, width / 2, BufferedImage.TYPE_INT_ARGB), "png", file.toFile());
+		// coarse filesystem clocks: make the replacement visibly newer
+		Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + minutesLater * 60_000L));
+	}
+
+}
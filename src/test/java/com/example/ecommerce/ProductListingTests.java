@@ -0,0 +1,94 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({ ProductService.class, ProductChangeStream.class })
+class ProductListingTests {
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@BeforeEach
+	void catalog() {
+		for (int i = 0; i < 15; i++) {
+			entityManager.persist(product("Phone " + i, "Phones", "long description " + i, true));
+		}
+		entityManager.persist(product("Retired", "Phones", "waterproof", false));
+		entityManager.persist(product("Speaker", "Audio", "waterproof", true));
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@Test
+	void gridIsBuiltWithoutLoadingEntities() {
+		List<ProductDTO> products = productService.getAllActiveProducts();
+
+		assertThat(products).hasSize(16);
+		assertThat(products).allSatisfy(product -> {
+			assertThat(product.getDescription()).isNull();
+			assertThat(product.getStockStatus()).isEqualTo("In Stock");
+			assertThat(product.getIsActive()).isTrue();
+		});
+		assertThat(entityManager.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+	}
+
+	@Test
+	void searchStillMatchesTheDescription() {
+		List<ProductDTO> products = productService.searchProducts("waterPROOF");
+
+		assertThat(products).extracting(ProductDTO::getName).containsExactly("Speaker");
+	}
+
+	@Test
+	void featuredIsLimitedByTheQuery() {
+		assertThat(productService.getFeaturedProducts()).hasSize(ProductService.FEATURED_PRODUCTS);
+	}
+
+	@Test
+	void firstPageIsLimitedByTheQueryAndCountsTheRest() {
+		ProductPage page = productService.getActiveProductsPage(10);
+
+		assertThat(page.items()).hasSize(10);
+		assertThat(page.total()).isEqualTo(16);
+		assertThat(page.hasMore()).isTrue();
+		assertThat(productService.getActiveProductsPage(20).hasMore()).isFalse();
+	}
+
+	@Test
+	void detailStillHasTheDescription() {
+		Long id = productService.searchProducts("Speaker").get(0).getId();
+
+		assertThat(productService.getProductById(id)).get()
+				.extracting(ProductDTO::getDescription).isEqualTo("waterproof");
+	}
+
+	private static Products product(String name, String category, String description, boolean active) {
+		Products product = new Products();
+		product.setName(name);
+		product.setCategory(category);
+		product.setDescription(description);
+		product.setPrice(BigDecimal.TEN);
+		product.setStockQuantity(50);
+		product.setIsActive(active);
+		return product;
+	}
+
+}
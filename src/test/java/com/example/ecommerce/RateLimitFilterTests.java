@@ -0,0 +1,131 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	// 60 per minute, burst 3, the IP gets twice that
+	private final RateLimitFilter filter = new RateLimitFilter(new ObjectMapper().registerModule(new JavaTimeModule()),
+			true, 100, 2, 60, 3, 60, 3, 60, 3, 60, 3);
+
+	@Test
+	void burstIsAllowedThenTheSustainedRate() {
+		RateLimit limit = RateLimit.of(60, 3);
+		long now = System.nanoTime();
+
+		assertThat(filter.tryAcquire(RateLimitGroup.SEARCH, "a", limit, now)).isZero();
+		assertThat(filter.tryAcquire(RateLimitGroup.SEARCH, "a", limit, now)).isZero();
+		assertThat(filter.tryAcquire(RateLimitGroup.SEARCH, "a", limit, now)).isZero();
+		assertThat(filter.tryAcquire(RateLimitGroup.SEARCH, "a", limit, now)).isEqualTo(SECOND);
+		// other clients and other groups have their own buckets
+		assertThat(filter.tryAcquire(RateLimitGroup.SEARCH, "b", limit, now)).isZero();
+		assertThat(filter.tryAcquire(RateLimitGroup.CART, "a", limit, now)).isZero();
+
+		assertThat(filter.tryAcquire(RateLimitGroup.SEARCH, "a", limit, now + SECOND)).isZero();
+		assertThat(filter.tryAcquire(RateLimitGroup.SEARCH, "a", limit, now + SECOND)).isPositive();
+	}
+
+	@Test
+	void refilledBucketsAreEvictedAndNewClientsOverTheCapShareOne() {
+		RateLimit limit = RateLimit.of(60, 1);
+		long now = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			filter.tryAcquire(RateLimitGroup.CART, "client-" + i, limit, now);
+		}
+		assertThat(filter.getBuckets()).isEqualTo(100);
+
+		assertThat(filter.tryAcquire(RateLimitGroup.CART, "late-1", limit, now)).isZero();
+		assertThat(filter.tryAcquire(RateLimitGroup.CART, "late-2", limit, now)).isPositive();
+		assertThat(filter.getOverflowRequests()).isEqualTo(2);
+
+		filter.evictIdleBuckets(now + SECOND / 2);
+		assertThat(filter.getBuckets()).isEqualTo(100);
+		filter.evictIdleBuckets(now + SECOND);
+		assertThat(filter.getBuckets()).isZero();
+	}
+
+	@Test
+	void overTheLimitGets429WithRetryAfter() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			assertThat(search("s1").getStatus()).isEqualTo(200);
+		}
+
+		MockHttpServletResponse limited = search("s1");
+		assertThat(limited.getStatus()).isEqualTo(429);
+		assertThat(limited.getHeader("Retry-After")).isEqualTo("1");
+		assertThat(limited.getContentAsString()).contains("\"success\":false");
+		assertThat(filter.getRejected(RateLimitGroup.SEARCH)).isEqualTo(1);
+
+		// another session on the same IP still has its own allowance, until the IP's runs out
+		for (int i = 0; i < 3; i++) {
+			assertThat(search("s2").getStatus()).isEqualTo(200);
+		}
+		assertThat(search("s3").getStatus()).isEqualTo(429);
+	}
+
+	@Test
+	void sessionsTheIpLimitRejectsGetNoBucket() throws Exception {
+		// one address rotating session ids: the IP allows 6, only those 6 sessions are tracked
+		for (int i = 0; i < 20; i++) {
+			search("rotated-" + i);
+		}
+		assertThat(filter.getRejected(RateLimitGroup.SEARCH)).isEqualTo(14);
+		assertThat(filter.getBuckets()).isEqualTo(7);
+	}
+
+	@Test
+	void pastTheCapNewSessionsAreOnlyHeldToTheirIpLimit() throws Exception {
+		RateLimitFilter small = new RateLimitFilter(new ObjectMapper(), true, 1, 2, 60, 3, 60, 3, 60, 3, 60, 3);
+		for (int i = 0; i < 6; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products/search");
+			request.addHeader(RateLimitFilter.SESSION_HEADER, "s1");
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			small.doFilter(request, response, new MockFilterChain());
+			assertThat(response.getStatus()).isEqualTo(200);
+		}
+		assertThat(small.getBuckets()).isEqualTo(1);
+		assertThat(small.getOverflowRequests()).isEqualTo(6);
+	}
+
+	@Test
+	void endpointsAreGroupedByMethodAndPath() {
+		assertThat(RateLimitGroup.of("GET", "/api/products/search")).isEqualTo(RateLimitGroup.SEARCH);
+		assertThat(RateLimitGroup.of("POST", "/api/cart/s1/items")).isEqualTo(RateLimitGroup.CART);
+		assertThat(RateLimitGroup.of("POST", "/api/orders/checkout")).isEqualTo(RateLimitGroup.CHECKOUT);
+		assertThat(RateLimitGroup.of("POST", "/api/products/7/reviews")).isEqualTo(RateLimitGroup.REVIEWS);
+		assertThat(RateLimitGroup.of("GET", "/api/products/7/reviews")).isNull();
+		assertThat(RateLimitGroup.of("GET", "/api/products/7")).isNull();
+	}
+
+	@Test
+	void otherEndpointsAreNotLimited() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cart/s1");
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			filter.doFilter(request, response, new MockFilterChain());
+			assertThat(response.getStatus()).isEqualTo(200);
+		}
+		assertThat(filter.getBuckets()).isZero();
+	}
+
+	private MockHttpServletResponse search(String sessionId) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products/search");
+		request.addParameter("term", "phone");
+		request.addHeader(RateLimitFilter.SESSION_HEADER, sessionId);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.example.ecommerce;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ReactiveCatalogHandlerTests {
+
+	private final ReactiveCatalogHandler handler = new ReactiveCatalogHandler(mock(ReactiveProductsRepository.class),
+			mock(ReactiveCategoryRepository.class), new ObjectMapper(), mock(ProductImageService.class));
+
+	// both read paths must return the same JSON for a product
+	@Test
+	void productRowMapsLikeTheJpaEntity() {
+		ProductRow row = new ProductRow();
+		row.setId(7L);
+		row.setName("Phone");
+		row.setDescription("A phone");
+		row.setPrice(new BigDecimal("999.00"));
+		row.setOldPrice(new BigDecimal("1099.00"));
+		row.setCategory("Phones");
+		row.setImageUrl("/images/phone.jpg");
+		row.setStockQuantity(3);
+		row.setStockStatus("Low Stock");
+		row.setIsActive(true);
+		row.setCreatedAt(LocalDateTime.of(2026, 1, 1, 0, 0));
+		row.setUpdatedAt(LocalDateTime.of(2026, 1, 2, 0, 0));
+
+		Products entity = new Products();
+		entity.setId(7L);
+		entity.setName("Phone");
+		entity.setDescription("A phone");
+		entity.setPrice(new BigDecimal("999.00"));
+		entity.setOldPrice(new BigDecimal("1099.00"));
+		entity.setCategory("Phones");
+		entity.setImageUrl("/images/phone.jpg");
+		entity.setStockQuantity(3);
+		entity.setStockStatus("Low Stock");
+		entity.setIsActive(true);
+		entity.setCreatedAt(row.getCreatedAt());
+		entity.setUpdatedAt(row.getUpdatedAt());
+
+		ProductDTO reactive = handler.toDTO(row);
+		assertThat(reactive.getStockStatus()).isEqualTo("Low Stock");
+		assertThat(reactive).isEqualTo(new ProductService(null, null).convertToDTO(entity));
+	}
+
+}
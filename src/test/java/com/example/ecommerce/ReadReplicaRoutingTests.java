@@ -0,0 +1,162 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// two in-memory H2 databases stand in for the primary and one replica; the replica gets the schema
+// but no data, so what a read returns shows where it went
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"datasource.replicas.enabled=true",
+		"datasource.replicas.urls=" + ReadReplicaRoutingTests.REPLICA_URL,
+		"datasource.replicas.lag-query=SELECT lag_ms FROM replica_status",
+		"datasource.replicas.max-lag-ms=1000",
+		"datasource.replicas.health-check-interval-ms=3600000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// ReadReplicaRouting is a BeanPostProcessor, its @Value defaults need the placeholder configurer the slice leaves out
+@ImportAutoConfiguration({ PropertyPlaceholderAutoConfiguration.class, JacksonAutoConfiguration.class })
+@Import({ ReadReplicaRouting.class, ReadYourWrites.class, CartService.class, ProductService.class, ProductChangeStream.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReadReplicaRoutingTests {
+
+	static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+	@Autowired
+	private ReadReplicaRouting routing;
+
+	@Autowired
+	private ReadYourWrites readYourWrites;
+
+	@Autowired
+	private CartService cartService;
+
+	@Autowired
+	private ProductsRepository productsRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	void replicaIsUpAndCaughtUp() throws SQLException {
+		List<String> schema = new ArrayList<>();
+		try (Connection primary = DriverManager.getConnection("jdbc:h2:mem:primary", "sa", "");
+			 Statement statement = primary.createStatement();
+			 ResultSet script = statement.executeQuery("SCRIPT NODATA NOPASSWORDS NOSETTINGS")) {
+			while (script.next()) {
+				String sql = script.getString(1);
+				if (sql.startsWith("CREATE") && !sql.startsWith("CREATE USER")) {
+					schema.add(sql.replaceFirst("^CREATE (CACHED |MEMORY )?TABLE ", "CREATE $1TABLE IF NOT EXISTS "));
+				}
+			}
+		}
+		replica("DROP ALL OBJECTS");
+		for (String sql : schema) {
+			replica(sql);
+		}
+		replica("CREATE TABLE replica_status (lag_ms BIGINT)");
+		replica("INSERT INTO replica_status VALUES (0)");
+		routing.checkReplicas();
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplica() {
+		assertThat(databaseUsed(true)).isEqualTo("REPLICA");
+		assertThat(databaseUsed(false)).isEqualTo("PRIMARY");
+		assertThat(routing.getReplicaReads()).isPositive();
+	}
+
+	@Test
+	void laggingReplicaFallsBackToThePrimary() throws SQLException {
+		replica("UPDATE replica_status SET lag_ms = 60000");
+		routing.checkReplicas();
+
+		assertThat(routing.getHealthyReplicas()).isZero();
+		assertThat(databaseUsed(true)).isEqualTo("PRIMARY");
+	}
+
+	@Test
+	void failedHealthCheckFallsBackToThePrimary() throws SQLException {
+		replica("DROP TABLE replica_status");
+		routing.checkReplicas();
+
+		long fallbacks = routing.getPrimaryFallbacks();
+		assertThat(databaseUsed(true)).isEqualTo("PRIMARY");
+		assertThat(routing.getPrimaryFallbacks()).isEqualTo(fallbacks + 1);
+	}
+
+	// the replica has no rows at all, so the added item is only visible if the read went to the primary
+	@Test
+	void cartReadsFollowTheSessionsOwnWrites() {
+		Products product = new Products();
+		product.setName("Replica test product");
+		product.setPrice(BigDecimal.TEN);
+		product.setCategory("Test");
+		product.setStockQuantity(10);
+		Long productId = productsRepository.save(product).getId();
+
+		AddToCartRequest request = new AddToCartRequest();
+		request.setSessionId("writer");
+		request.setProductId(productId);
+		request.setQuantity(2);
+		cartService.addToCart(request);
+
+		assertThat(cartService.getCartBySessionId("writer").getCartItems()).hasSize(1);
+		assertThat(cartService.getCartItemCount("writer")).isEqualTo(1);
+		assertThat(routing.getPinnedReads()).isPositive();
+	}
+
+	@Test
+	void otherSessionsKeepReadingFromTheReplica() {
+		readYourWrites.recordWrite("writer");
+		long replicaReads = routing.getReplicaReads();
+
+		assertThat(cartService.getCartItemCount("someone-else")).isZero();
+		assertThat(routing.getReplicaReads()).isEqualTo(replicaReads + 1);
+	}
+
+	private String databaseUsed(boolean readOnly) {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		transaction.setReadOnly(readOnly);
+		return transaction.execute(status ->
+				(String) entityManager.createNativeQuery("SELECT DATABASE()").getSingleResult());
+	}
+
+	private static void replica(String sql) throws SQLException {
+		try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+			 Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// reviews commit for real (no test transaction), so the commit hook and the flush behave as in production
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(ReviewService.class)
+class ReviewServiceTests {
+
+	@Autowired
+	private ReviewService reviewService;
+
+	@Autowired
+	private ProductsRepository productsRepository;
+
+	@Autowired
+	private ProductReviewRepository productReviewRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Long phone;
+
+	@BeforeEach
+	void createProduct() {
+		Products product = new Products();
+		product.setName("Phone");
+		product.setCategory("Phones");
+		product.setPrice(BigDecimal.TEN);
+		product.setStockQuantity(10);
+		phone = productsRepository.save(product).getId();
+	}
+
+	@AfterEach
+	void cleanUp() {
+		productReviewRepository.deleteAll();
+		productsRepository.deleteAll();
+	}
+
+	@Test
+	void ratingIncludesNewReviewsBeforeTheProductIsUpdated() {
+		reviewService.submit(phone, review(5));
+		reviewService.submit(phone, review(4));
+		reviewService.submit(phone, review(4));
+
+		RatingSummary rating = reviewService.getRating(phone);
+		assertThat(rating.ratingCount()).isEqualTo(3);
+		assertThat(rating.rating()).isEqualByComparingTo("4.33");
+		assertThat(reviewService.getUnflushedProducts()).isEqualTo(1);
+		Products product = productsRepository.findById(phone).orElseThrow();
+		assertThat(product.getRatingCount()).isZero();
+	}
+
+	@Test
+	void flushWritesTheRatingColumnsAndKeepsTheTotals() {
+		reviewService.submit(phone, review(5));
+		reviewService.submit(phone, review(2));
+
+		reviewService.flush();
+
+		Products product = productsRepository.findById(phone).orElseThrow();
+		assertThat(product.getRatingCount()).isEqualTo(2);
+		assertThat(product.getRating()).isEqualByComparingTo("3.50");
+		assertThat(reviewService.getUnflushedProducts()).isZero();
+		assertThat(reviewService.getRating(phone).ratingCount()).isEqualTo(2);
+
+		reviewService.submit(phone, review(5));
+		assertThat(reviewService.getRating(phone).rating()).isEqualByComparingTo("4.00");
+		reviewService.flush();
+		assertThat(productsRepository.findById(phone).orElseThrow().getRatingCount()).isEqualTo(3);
+		assertThat(reviewService.getRating(phone).ratingCount()).isEqualTo(3);
+	}
+
+	@Test
+	void flushOnlyEvictsTheFlushedProductsFromTheCache() {
+		Products other = new Products();
+		other.setName("Charger");
+		other.setCategory("Accessories");
+		other.setPrice(BigDecimal.ONE);
+		other.setStockQuantity(10);
+		Long charger = productsRepository.save(other).getId();
+		Cache cache = entityManagerFactory.getCache();
+		cache.evictAll();
+		productsRepository.findById(phone);
+		productsRepository.findById(charger);
+		assertThat(cache.contains(Products.class, phone)).isTrue();
+
+		reviewService.submit(phone, review(3));
+		reviewService.flush();
+
+		assertThat(cache.contains(Products.class, phone)).isFalse();
+		assertThat(cache.contains(Products.class, charger)).isTrue();
+		assertThat(productsRepository.findById(phone).orElseThrow().getRating()).isEqualByComparingTo("3.00");
+	}
+
+	@Test
+	void ratingOfAProductReviewedBeforeStartupComesFromTheTable() {
+		ProductReview earlier = new ProductReview();
+		earlier.setProductId(phone);
+		earlier.setRating(3);
+		productReviewRepository.save(earlier);
+
+		reviewService.submit(phone, review(5));
+
+		assertThat(reviewService.getRating(phone).ratingCount()).isEqualTo(2);
+		assertThat(reviewService.getRating(phone).rating()).isEqualByComparingTo("4.00");
+	}
+
+	@Test
+	void reviewsOfUnknownProductsAreRejected() {
+		assertThatThrownBy(() -> reviewService.submit(phone + 1000, review(5)))
+				.hasMessageContaining("Product not found");
+		assertThatThrownBy(() -> reviewService.getRating(phone + 1000))
+				.hasMessageContaining("Product not found");
+		assertThat(productReviewRepository.count()).isZero();
+	}
+
+	private static ReviewRequest review(int stars) {
+		return new ReviewRequest(stars, "Jane", "Works well");
+	}
+
+}
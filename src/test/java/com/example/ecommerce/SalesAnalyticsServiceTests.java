@@ -0,0 +1,202 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+// orders commit for real (no test transaction), so the commit hooks and the flush behave as in production
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SalesAnalyticsServiceTests {
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private OrderItemRepository orderItemRepository;
+
+	@Autowired
+	private ProductsRepository productsRepository;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Autowired
+	private SalesRollupRepository salesRollupRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private SalesAnalyticsService analytics;
+	private TransactionTemplate transaction;
+	private Long phone;
+	private Long charger;
+
+	@BeforeEach
+	void createCatalog() {
+		analytics = service(5);
+		transaction = new TransactionTemplate(transactionManager);
+		phone = product("Phone", "Phones", "1000.00");
+		charger = product("Charger", "Accessories", "250.00");
+	}
+
+	@AfterEach
+	void cleanUp() {
+		salesRollupRepository.deleteAll();
+		orderItemRepository.deleteAll();
+		orderRepository.deleteAll();
+		customerRepository.deleteAll();
+		productsRepository.deleteAll();
+	}
+
+	@Test
+	void paidOrdersCountOnceCommittedAndAreTakenBackWhenTheyFail() {
+		Order order = transaction.execute(status -> {
+			Order created = order("SALES-1", "PENDING", phone, 1, charger, 3);
+			created.setPaymentStatus("COMPLETED");
+			analytics.recordPaymentStatusChange(created, "PENDING");
+			assertThat(analytics.top("product", "revenue", "5m", null, 10)).isEmpty();
+			return orderRepository.save(created);
+		});
+
+		List<SalesTotal> top = analytics.top("product", "revenue", "5m", null, 10);
+		assertThat(top).extracting(SalesTotal::productId).containsExactly(phone, charger);
+		assertThat(top.get(0).revenue()).isEqualByComparingTo("1000.00");
+		assertThat(top.get(1).units()).isEqualTo(3);
+
+		transaction.executeWithoutResult(status -> {
+			order.setPaymentStatus("FAILED");
+			analytics.recordPaymentStatusChange(order, "COMPLETED");
+			orderRepository.save(order);
+		});
+
+		assertThat(analytics.top("product", "revenue", "5m", null, 10)).isEmpty();
+	}
+
+	@Test
+	void rolledBackOrdersAreNotCounted() {
+		transaction.executeWithoutResult(status -> {
+			analytics.recordPaymentStatusChange(order("SALES-2", "COMPLETED", phone, 2, null, 0), null);
+			status.setRollbackOnly();
+		});
+
+		assertThat(analytics.top("category", "units", "5h", null, 10)).isEmpty();
+	}
+
+	@Test
+	void topAndSeriesComeFromTheMinuteBuckets() {
+		LocalDateTime now = LocalDateTime.of(2026, 3, 2, 10, 30);
+		analytics.record(now.minusMinutes(2), List.of(new Sale(phone, "Phones", 100_000, 1)));
+		analytics.record(now, List.of(new Sale(charger, "Accessories", 25_000, 4), new Sale(phone, "Phones", 100_000, 1)));
+
+		assertThat(analytics.top("category", "units", "5m", null, 10, now))
+				.extracting(SalesTotal::category, SalesTotal::units)
+				.containsExactly(tuple("Accessories", 4L), tuple("Phones", 2L));
+		assertThat(analytics.top("product", "revenue", "1m", "Phones", 10, now))
+				.extracting(SalesTotal::revenue).containsExactly(new BigDecimal("1000.00"));
+
+		List<SalesPoint> series = analytics.series("minute", now.minusMinutes(2), now, phone, null, now);
+		assertThat(series).extracting(SalesPoint::units).containsExactly(1L, 0L, 1L);
+		assertThat(series.get(0).bucketStart()).isEqualTo(now.minusMinutes(2));
+	}
+
+	@Test
+	void bucketsOlderThanTheRingAreDropped() {
+		LocalDateTime now = LocalDateTime.of(2026, 3, 2, 10, 30);
+		analytics.record(now.minusMinutes(10), List.of(new Sale(phone, "Phones", 100_000, 1)));
+		analytics.record(now, List.of(new Sale(charger, "Accessories", 25_000, 1)));
+		// the slot the old minute lived in has been reused since
+		analytics.record(now.minusMinutes(5), List.of(new Sale(phone, "Phones", 100_000, 1)));
+
+		assertThat(analytics.top("product", "units", "5m", null, 10, now))
+				.extracting(SalesTotal::productId).containsExactly(charger);
+		assertThatThrownBy(() -> analytics.series("minute", now.minusMinutes(10), now, null, null, now))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void flushAddsToTheRollupTableWhichServesLongWindowsAndRestarts() {
+		analytics.warmUp();
+		analytics.record(LocalDateTime.now(), List.of(new Sale(phone, "Phones", 100_000, 1)));
+		analytics.flush();
+		analytics.record(LocalDateTime.now(), List.of(new Sale(phone, "Phones", 200_000, 2)));
+		analytics.flush();
+
+		assertThat(salesRollupRepository.findAll())
+				.hasSize(2)
+				.allSatisfy(row -> assertThat(row.getUnits()).isEqualTo(3))
+				.extracting(SalesRollup::getGranularity).containsExactlyInAnyOrder("HOUR", "DAY");
+		assertThat(analytics.getUnflushedRollups()).isZero();
+
+		// a fresh instance starts from the table, and windows longer than its rings are summed there
+		SalesAnalyticsService restarted = service(5);
+		restarted.warmUp();
+		assertThat(restarted.top("product", "units", "2h", null, 10)).extracting(SalesTotal::units).containsExactly(3L);
+		assertThat(restarted.top("product", "revenue", "30d", null, 10))
+				.extracting(SalesTotal::revenue).containsExactly(new BigDecimal("3000.00"));
+		assertThat(restarted.series("day", LocalDateTime.now().minusDays(20), null, phone, null))
+				.hasSize(21)
+				.extracting(SalesPoint::units).endsWith(3L);
+	}
+
+	private SalesAnalyticsService service(int buckets) {
+		return new SalesAnalyticsService(orderItemRepository, productsRepository, salesRollupRepository,
+				transactionManager, buckets, buckets, buckets);
+	}
+
+	private Long product(String name, String category, String price) {
+		Products product = new Products();
+		product.setName(name);
+		product.setCategory(category);
+		product.setPrice(new BigDecimal(price));
+		product.setStockQuantity(100);
+		return productsRepository.save(product).getId();
+	}
+
+	private Order order(String apiRef, String status, Long first, int firstQuantity, Long second, int secondQuantity) {
+		Customer customer = new Customer();
+		customer.setCustomerFirstName("Sales");
+		customer.setCustomerLastName("Test");
+		customer.setCustomerEmail(apiRef.toLowerCase() + "@example.com");
+		customerRepository.save(customer);
+
+		Order order = new Order();
+		order.setApiRef(apiRef);
+		order.setCustomer(customer);
+		order.setPaymentStatus(status);
+		order.setTotalAmount(BigDecimal.ZERO);
+		orderRepository.save(order);
+		orderItemRepository.save(item(order, first, firstQuantity));
+		if (second != null) {
+			orderItemRepository.save(item(order, second, secondQuantity));
+		}
+		return order;
+	}
+
+	private OrderItem item(Order order, Long productId, int quantity) {
+		Products product = productsRepository.findById(productId).orElseThrow();
+		OrderItem item = new OrderItem();
+		item.setOrderId(order.getId());
+		item.setProductId(productId);
+		item.setProductName(product.getName());
+		item.setPrice(product.getPrice());
+		item.setQuantity(quantity);
+		item.setSubtotal(product.getPrice().multiply(BigDecimal.valueOf(quantity)));
+		return item;
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTests {
+
+	private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+	@AfterEach
+	void stop() {
+		callers.shutdownNow();
+	}
+
+	@Test
+	void concurrentCallsForTheSameKeyShareOneExecution() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>(5000);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger executions = new AtomicInteger();
+
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			results.add(callers.submit(() -> singleFlight.execute("search:phone", () -> {
+				executions.incrementAndGet();
+				await(release);
+				return "result";
+			})));
+		}
+		awaitWaiting(singleFlight, 7);
+		release.countDown();
+
+		for (Future<String> result : results) {
+			assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+		}
+		assertThat(executions.get()).isEqualTo(1);
+		assertThat(singleFlight.getExecuted()).isEqualTo(1);
+		assertThat(singleFlight.getShared()).isEqualTo(7);
+		assertThat(singleFlight.getInFlight()).isZero();
+	}
+
+	@Test
+	void nothingIsKeptOnceTheCallCompletes() {
+		SingleFlight<String, Integer> singleFlight = new SingleFlight<>(5000);
+		AtomicInteger executions = new AtomicInteger();
+
+		assertThat(singleFlight.execute("a", executions::incrementAndGet)).isEqualTo(1);
+		assertThat(singleFlight.execute("a", executions::incrementAndGet)).isEqualTo(2);
+		assertThat(singleFlight.execute("b", executions::incrementAndGet)).isEqualTo(3);
+	}
+
+	@Test
+	void failureReachesEveryWaitingCaller() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>(5000);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<String> first = callers.submit(() -> singleFlight.execute("k", () -> {
+			await(release);
+			throw new IllegalStateException("database unavailable");
+		}));
+		awaitInFlight(singleFlight);
+		Future<String> second = callers.submit(() -> singleFlight.execute("k", () -> "not run"));
+		awaitWaiting(singleFlight, 1);
+		release.countDown();
+
+		for (Future<String> result : List.of(first, second)) {
+			assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+					.hasCauseInstanceOf(IllegalStateException.class)
+					.hasMessageContaining("database unavailable");
+		}
+	}
+
+	@Test
+	void waitingCallerGivesUpAfterTheTimeout() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>(100);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<String> slow = callers.submit(() -> singleFlight.execute("k", () -> {
+			await(release);
+			return "late";
+		}));
+		awaitInFlight(singleFlight);
+
+		assertThatThrownBy(() -> singleFlight.execute("k", () -> "not run"))
+				.hasMessageContaining("Timed out");
+		release.countDown();
+		assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("late");
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void awaitInFlight(SingleFlight<?, ?> singleFlight) throws InterruptedException {
+		while (singleFlight.getInFlight() == 0) {
+			Thread.sleep(5);
+		}
+	}
+
+	private static void awaitWaiting(SingleFlight<?, ?> singleFlight, long callers) throws InterruptedException {
+		while (singleFlight.getShared() < callers) {
+			Thread.sleep(5);
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.example.ecommerce;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.session.events.auto=com.example.ecommerce.SqlStatementCounter$Listener"
+})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({ CartService.class, ProductService.class, ProductChangeStream.class, ReadYourWrites.class })
+class SqlStatementCounterTests {
+
+	@Autowired
+	private CartService cartService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@BeforeEach
+	void createCartWithFiveProducts() {
+		Cart cart = new Cart();
+		cart.setSessionId("n-plus-one");
+		entityManager.persist(cart);
+		for (int i = 0; i < 5; i++) {
+			Products product = new Products();
+			product.setName("Product " + i);
+			product.setPrice(BigDecimal.TEN);
+			product.setCategory("Test");
+			product.setStockQuantity(10);
+			entityManager.persist(product);
+
+			CartItem item = new CartItem();
+			item.setCart(cart);
+			item.setProduct(product);
+			item.setQuantity(1);
+			item.setPrice(BigDecimal.TEN);
+			item.setCreatedAt(LocalDateTime.now());
+			entityManager.persist(item);
+		}
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	// one query for the cart, one for its items with their products, regardless of cart size
+	@Test
+	void cartIsLoadedWithoutOneQueryPerItem() {
+		try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+			CartDTO cart = cartService.getCartBySessionId("n-plus-one");
+
+			assertThat(cart.getCartItems()).hasSize(5);
+			assertThat(cart.getTotalAmount()).isEqualByComparingTo("50");
+			assertThat(scope.getStatementCount()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	void assertAtMostFailsWhenTheBudgetIsExceeded() {
+		assertThat(SqlStatementCounter.assertAtMost(2, () -> cartService.getCartBySessionId("n-plus-one")))
+				.isNotNull();
+		entityManager.clear();
+		assertThatThrownBy(() -> SqlStatementCounter.assertAtMost(1, () -> cartService.getCartBySessionId("n-plus-one")))
+				.isInstanceOf(AssertionError.class)
+				.hasMessageContaining("at most 1");
+	}
+
+	@Test
+	void nestedScopesBothCount() {
+		try (SqlStatementCounter.Scope outer = SqlStatementCounter.open()) {
+			try (SqlStatementCounter.Scope inner = SqlStatementCounter.open()) {
+				cartService.getCartItemCount("n-plus-one");
+				assertThat(inner.getStatementCount()).isEqualTo(2);
+			}
+			cartService.getCartItemCount("missing");
+			assertThat(outer.getStatementCount()).isEqualTo(3);
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigUtils;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.support.GenericWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.DelegatingWebMvcConfiguration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StaticResourceConfigTests {
+
+	@TempDir
+	Path originals;
+
+	@Test
+	void productImagesAreCachedAndServedFromTheOriginalsDirFirst() throws Exception {
+		Files.writeString(originals.resolve("phone.jpg"), "uploaded");
+		MockMvc mockMvc = mockMvc(originals.toString());
+
+		mockMvc.perform(get("/images/phone.jpg"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Cache-Control", "max-age=604800, public"))
+				.andExpect(header().exists("Last-Modified"))
+				.andExpect(content().string("uploaded"));
+	}
+
+	@Test
+	void productImagesFallBackToTheClasspath() throws Exception {
+		mockMvc("").perform(get("/images/iphone 17.jpg"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Cache-Control", "max-age=604800, public"));
+	}
+
+	private static MockMvc mockMvc(String originalsDir) {
+		GenericWebApplicationContext context = new GenericWebApplicationContext(new MockServletContext());
+		AnnotationConfigUtils.registerAnnotationConfigProcessors(context);
+		context.registerBean(DelegatingWebMvcConfiguration.class);
+		context.registerBean(StaticResourceConfig.class, () -> new StaticResourceConfig(originalsDir, Duration.ofDays(7)));
+		context.refresh();
+		return MockMvcBuilders.webAppContextSetup(context).build();
+	}
+
+}
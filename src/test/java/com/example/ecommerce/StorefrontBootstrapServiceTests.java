@@ -0,0 +1,99 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorefrontBootstrapServiceTests {
+
+	private final ProductService productService = mock(ProductService.class);
+	private final CategoryService categoryService = mock(CategoryService.class);
+	private final CartService cartService = mock(CartService.class);
+
+	private StorefrontBootstrapService bootstrapService;
+
+	@BeforeEach
+	void catalog() {
+		bootstrapService = new StorefrontBootstrapService(productService, categoryService, cartService, 2, 60_000, 500, 4);
+		when(categoryService.getAllActiveCategories()).thenReturn(List.of(new CategoryDTO()));
+		when(productService.getActiveProductsPage(2)).thenReturn(new ProductPage(List.of(new ProductDTO(), new ProductDTO()), 3, true));
+		when(productService.getFeaturedProducts()).thenReturn(List.of(new ProductDTO()));
+		when(cartService.getCartBySessionId("s1")).thenReturn(cart("s1", 2));
+		when(cartService.getCartBySessionId("s2")).thenReturn(cart("s2", 0));
+	}
+
+	@AfterEach
+	void stop() {
+		bootstrapService.destroy();
+	}
+
+	@Test
+	void catalogPartsAreSharedAcrossSessionsAndTheCartIsNot() {
+		StorefrontBootstrap first = bootstrapService.bootstrap("s1");
+		StorefrontBootstrap second = bootstrapService.bootstrap("s2");
+
+		assertThat(first.missing()).isEmpty();
+		assertThat(first.categories()).hasSize(1);
+		assertThat(first.products().items()).hasSize(2);
+		assertThat(first.products().total()).isEqualTo(3);
+		assertThat(first.products().hasMore()).isTrue();
+		assertThat(first.featured()).hasSize(1);
+		assertThat(first.cart().totalItems()).isEqualTo(2);
+		assertThat(second.cart().sessionId()).isEqualTo("s2");
+		verify(categoryService, times(1)).getAllActiveCategories();
+		verify(productService, times(1)).getActiveProductsPage(2);
+	}
+
+	@Test
+	void noSessionMeansNoCart() {
+		StorefrontBootstrap bootstrap = bootstrapService.bootstrap(null);
+
+		assertThat(bootstrap.cart()).isNull();
+		assertThat(bootstrap.missing()).isEmpty();
+	}
+
+	@Test
+	void slowPartIsLeftOutInsteadOfHoldingUpTheRest() {
+		when(cartService.getCartBySessionId("slow")).thenAnswer(invocation -> {
+			Thread.sleep(2000);
+			return cart("slow", 1);
+		});
+
+		long started = System.nanoTime();
+		StorefrontBootstrap bootstrap = bootstrapService.bootstrap("slow");
+
+		assertThat(System.nanoTime() - started).isLessThan(1_500_000_000L);
+		assertThat(bootstrap.missing()).containsExactly(StorefrontBootstrapService.CART);
+		assertThat(bootstrap.cart()).isNull();
+		assertThat(bootstrap.products()).isNotNull();
+		assertThat(bootstrapService.getMissingParts()).isEqualTo(1);
+	}
+
+	@Test
+	void failedCatalogPartIsRetriedByTheNextRequest() {
+		when(productService.getFeaturedProducts())
+				.thenThrow(new RuntimeException("database unavailable"))
+				.thenReturn(List.of(new ProductDTO()));
+
+		assertThat(bootstrapService.bootstrap("s1").missing()).containsExactly(StorefrontBootstrapService.FEATURED);
+		assertThat(bootstrapService.bootstrap("s1").featured()).hasSize(1);
+	}
+
+	private static CartDTO cart(String sessionId, int items) {
+		CartDTO cart = new CartDTO();
+		cart.setSessionId(sessionId);
+		cart.setTotalItems(items);
+		cart.setTotalAmount(BigDecimal.valueOf(items * 100L));
+		return cart;
+	}
+
+}
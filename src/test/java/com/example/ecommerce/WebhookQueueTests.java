@@ -0,0 +1,108 @@
+package com.example.ecommerce;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.RabbitProperties;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class WebhookQueueTests {
+
+	private final OrderService orderService = mock(OrderService.class);
+	private final WebhookEventProcessor processor = new WebhookEventProcessor(orderService);
+
+	@Test
+	void batchIsDedupedByCheckoutAndAFinalStateWins() {
+		processor.process(List.of(
+				event("CHK-1", "PENDING"),
+				event("CHK-2", "PROCESSING"),
+				event("CHK-1", "COMPLETE"),
+				event("CHK-1", "PENDING"),
+				event("CHK-2", "FAILED")));
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<UpdateOrderStatusRequest>> updates = ArgumentCaptor.forClass(List.class);
+		verify(orderService).applyPaymentUpdates(updates.capture());
+		assertThat(updates.getValue())
+				.extracting(UpdateOrderStatusRequest::getIntasendCheckoutId, UpdateOrderStatusRequest::getPaymentStatus)
+				.containsExactly(tuple("CHK-1", "COMPLETED"), tuple("CHK-2", "FAILED"));
+		assertThat(processor.getProcessedEvents()).isEqualTo(5);
+		assertThat(processor.getDuplicateEvents()).isEqualTo(3);
+	}
+
+	@Test
+	void completedWinsOverAFailedAttemptInTheSameBatch() {
+		processor.process(List.of(event("CHK-1", "FAILED"), event("CHK-1", "COMPLETE"), event("CHK-1", "FAILED")));
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<UpdateOrderStatusRequest>> updates = ArgumentCaptor.forClass(List.class);
+		verify(orderService).applyPaymentUpdates(updates.capture());
+		assertThat(updates.getValue()).extracting(UpdateOrderStatusRequest::getPaymentStatus).containsExactly("COMPLETED");
+	}
+
+	@Test
+	void eventsWithoutAKnownStateOrKeyAreDropped() {
+		processor.process(List.of(event(null, "COMPLETE"), event("CHK-1", "UNKNOWN")));
+
+		verify(orderService, never()).applyPaymentUpdates(anyList());
+	}
+
+	@Test
+	void memoryQueueDrainsInBatchesAndDropsAFailedOne() {
+		List<Integer> batchSizes = new ArrayList<>();
+		WebhookEventProcessor failingSecondBatch = new WebhookEventProcessor(orderService) {
+			@Override
+			public void process(List<WebhookEvent> events) {
+				batchSizes.add(events.size());
+				if (batchSizes.size() == 2) {
+					throw new IllegalStateException("database down");
+				}
+			}
+		};
+		InMemoryWebhookQueue queue = new InMemoryWebhookQueue(failingSecondBatch, 10, 2);
+		for (int i = 0; i < 5; i++) {
+			queue.enqueue(event("CHK-" + i, "COMPLETE"));
+		}
+
+		queue.drain();
+
+		assertThat(batchSizes).containsExactly(2, 2, 1);
+		queue.drain();
+		assertThat(batchSizes).hasSize(3);
+	}
+
+	@Test
+	void rabbitBatchesAreRetriedThenDeadLettered() {
+		WebhookQueueConfig config = new WebhookQueueConfig();
+		SimpleRabbitListenerContainerFactory factory = config.webhookBatchContainerFactory(
+				new SimpleRabbitListenerContainerFactoryConfigurer(new RabbitProperties()),
+				mock(ConnectionFactory.class), 100, 3);
+
+		assertThat(ReflectionTestUtils.getField(factory, "defaultRequeueRejected")).isEqualTo(false);
+		assertThat(factory.getAdviceChain()).hasSize(1);
+
+		Queue queue = config.webhookQueue("intasend.webhooks");
+		assertThat(queue.getArguments())
+				.containsEntry("x-dead-letter-exchange", "")
+				.containsEntry("x-dead-letter-routing-key", "intasend.webhooks.dlq");
+		assertThat(config.webhookDeadLetterQueue("intasend.webhooks").getName()).isEqualTo("intasend.webhooks.dlq");
+	}
+
+	private static WebhookEvent event(String checkoutId, String state) {
+		return new WebhookEvent(checkoutId, null, null, state, "{}", 0L);
+	}
+
+}